@@ -1,8 +1,11 @@
 package com.remind101.auto.value.realm;
 
 import com.google.auto.service.AutoService;
+import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
@@ -10,32 +13,69 @@ import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
 
+import java.beans.Introspector;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 
 @AutoService(AutoValueExtension.class)
 public class AutoValueRealmExtension extends AutoValueExtension {
-    private static final String TO_REALM_OBJECT_METHOD_NAME = "toRealmObject";
+    static final String TO_REALM_OBJECT_METHOD_NAME = "toRealmObject";
+    static final String MODEL_CLASS_FIELD_NAME = "MODEL_CLASS";
     private static final String TO_MODEL_METHOD_NAME = "toModel";
+    private static final String TO_REALM_OBJECTS_METHOD_NAME = "toRealmObjects";
+    private static final String TO_MODELS_METHOD_NAME = "toModels";
+    private static final String CONVERSION_CONTEXT_PARAMETER_NAME = "conversionContext";
+    private static final String APPLY_TO_METHOD_NAME = "applyTo";
+    private static final String TO_LIVE_MODEL_METHOD_NAME = "toLiveModel";
+    private static final String FREEZE_METHOD_NAME = "freeze";
+    private static final String MEMOIZED_HASH_CODE_FIELD_NAME = "memoizedHashCode";
+    private static final String DIFF_METHOD_NAME = "diff";
+    private static final String FROM_JSON_METHOD_NAME = "fromJson";
+    private static final String JSON_READER_FIELD_NAME = "JSON_READER";
+    /** The number of properties written by each helper method of toRealmObject() and applyTo() for wide models */
+    private static final int PROPERTIES_PER_METHOD = 32;
 
-    private static final List<String> SUPPORTED_TYPES = Arrays.asList(String.class.getName(), Date.class.getName(), byte[].class.getName(), Boolean.class.getName(), Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Float.class.getName(), Long.class.getName(), Double.class.getName());
-    private ClassName avRealmHelper = ClassName.get("com.remind101.auto.value.realm", "AvRealmHelper");
+    private static final List<String> SUPPORTED_TYPES = Arrays.asList(String.class.getName(), Date.class.getName(), byte[].class.getCanonicalName(), Boolean.class.getName(), Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Float.class.getName(), Long.class.getName(), Double.class.getName());
+    private static final List<String> PACKED_ARRAY_TYPES = Arrays.asList(int[].class.getCanonicalName(), long[].class.getCanonicalName(), double[].class.getCanonicalName());
+    private ClassName avRealmHelper = ClassName.get(AvRealmHelper.class);
+    private ClassName avPackedArrays = ClassName.get(AvPackedArrays.class);
+    private ClassName realmList = ClassName.get("io.realm", "RealmList");
+    private ClassName realm = ClassName.get("io.realm", "Realm");
+    private ClassName realmResults = ClassName.get("io.realm", "RealmResults");
+    private ClassName sort = ClassName.get("io.realm", "Sort");
+    private ClassName avModelCache = ClassName.get(AvModelCache.class);
+    private ClassName avInternPool = ClassName.get(AvInternPool.class);
+    private ClassName avJsonImporter = ClassName.get(AvJsonImporter.class);
+    private ClassName avByteBuffers = ClassName.get(AvByteBuffers.class);
 
     @Override
     public boolean applicable(Context context) {
@@ -49,80 +89,391 @@ public class AutoValueRealmExtension extends AutoValueExtension {
 
     @Override
     public Set<ExecutableElement> consumeMethods(Context context) {
+        Set<ExecutableElement> methods = new HashSet<>();
         for (ExecutableElement method : context.abstractMethods()) {
-            if (method.getSimpleName().toString().equals(TO_REALM_OBJECT_METHOD_NAME)) {
-                return Collections.singleton(method);
+            String name = method.getSimpleName().toString();
+            if (name.equals(TO_REALM_OBJECT_METHOD_NAME)
+                    || name.equals(APPLY_TO_METHOD_NAME) && method.getParameters().size() == 2) {
+                methods.add(method);
             }
         }
-        return Collections.emptySet();
+        return methods;
     }
 
     @Override
     public String generateClass(Context context, String className, String classToExtend, boolean isFinal) {
-        verifyInput(context);
-        createRealmObjectClass(context);
+        List<RealmProperty> properties = getProperties(context);
+        verifyInput(context, properties);
+        createRealmObjectClass(context, properties);
+        if (isLive(context)) {
+            createLiveModelClass(context, properties);
+        }
+        if (isBinary(context)) {
+            createCodecClass(context, properties);
+        }
 
         String packageName = context.packageName();
-        TypeSpec subclass = TypeSpec.classBuilder(className)
+        TypeSpec.Builder subclass = TypeSpec.classBuilder(className)
                 .addModifiers(isFinal ? Modifier.FINAL : Modifier.ABSTRACT)
                 .superclass(ClassName.get(packageName, classToExtend))
-                .addMethod(createAutoValueConstructor(context))
-                .addMethod(createToRealmObjectMethod(context))
-                .build();
-        JavaFile javaFile = JavaFile.builder(packageName, subclass).build();
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(AvContextualModel.class), getRealmObjectType(context)))
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(AvDiffingModel.class), realm, getRealmObjectType(context)))
+                .addMethod(createAutoValueConstructor(properties));
+        addToRealmObjectMethod(subclass, context, properties, false);
+        addToRealmObjectMethod(subclass, context, properties, true);
+        addApplyToMethod(subclass, context, properties);
+        RealmProperty primaryKey = getPrimaryKey(properties);
+        if (primaryKey != null) {
+            subclass.addSuperinterface(AvKeyedModel.class)
+                    .addMethod(MethodSpec.methodBuilder("getAvPrimaryKey")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                            .returns(Object.class)
+                            .addStatement("return $N()", primaryKey.getterName())
+                            .build());
+        }
+        if (context.autoValueClass().getAnnotation(AvMemoizeHashCode.class) != null) {
+            addMemoizedHashCode(subclass);
+        }
+        JavaFile javaFile = JavaFile.builder(packageName, subclass.build()).build();
         return javaFile.toString();
     }
 
-    private void verifyInput(Context context) {
+    /**
+     * Overrides hashCode() to compute the hash code of the superclass once. Like String.hashCode(), 0 means not computed
+     * yet: the field is read and written once per call, and racing threads can only compute the same value.
+     */
+    private static void addMemoizedHashCode(TypeSpec.Builder subclass) {
+        subclass.addField(int.class, MEMOIZED_HASH_CODE_FIELD_NAME, Modifier.PRIVATE, Modifier.TRANSIENT)
+                .addMethod(MethodSpec.methodBuilder("hashCode")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(int.class)
+                        .addStatement("int hashCode = $N", MEMOIZED_HASH_CODE_FIELD_NAME)
+                        .beginControlFlow("if (hashCode == 0)")
+                        .addStatement("hashCode = super.hashCode()")
+                        .addStatement("$N = hashCode", MEMOIZED_HASH_CODE_FIELD_NAME)
+                        .endControlFlow()
+                        .addStatement("return hashCode")
+                        .build());
+    }
+
+    /**
+     * Classifies every property of the class being processed. This is the only place the type utilities are queried.
+     * The AvModel and List<? extends AvModel> mirrors are resolved once per class rather than kept in the extension:
+     * javac builds a new symbol table every round while the processing environment stays the same, so mirrors kept
+     * from an earlier round would misclassify the properties of classes generated since.
+     */
+    private List<RealmProperty> getProperties(Context context) {
+        ProcessingEnvironment processingEnvironment = context.processingEnvironment();
+        Types typeUtils = processingEnvironment.getTypeUtils();
+        TypeMirror avModelType = processingEnvironment.getElementUtils().getTypeElement(AvModel.class.getName()).asType();
+        TypeElement list = processingEnvironment.getElementUtils().getTypeElement("java.util.List");
+        TypeMirror listOfAvModelType = typeUtils.getDeclaredType(list, typeUtils.getWildcardType(avModelType, null));
+        List<RealmProperty> properties = new ArrayList<>(context.properties().size());
         for (Map.Entry<String, ExecutableElement> entry : context.properties().entrySet()) {
             TypeMirror returnType = entry.getValue().getReturnType();
-            if (!returnType.getKind().isPrimitive()
-                    && !SUPPORTED_TYPES.contains(returnType.toString())
-                    && !isOtherAvModel(context, entry.getValue())
-                    && !isListOfOtherAvModel(context, entry.getValue())) {
-                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + entry.getKey() +" is of a non supported type: " + entry.getValue().getReturnType().toString());
+            RealmProperty property;
+            if (typeUtils.isAssignable(returnType, avModelType) && entry.getValue().getAnnotation(AvEmbedded.class) != null) {
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.EMBEDDED, null, null);
+                addEmbeddedProperties(property, typeUtils);
+            } else if (typeUtils.isAssignable(returnType, avModelType)) {
+                TypeName otherRealmType = getRealmTypeName(returnType);
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.AV_MODEL, otherRealmType, otherRealmType);
+            } else if (typeUtils.isSubtype(returnType, listOfAvModelType)) {
+                TypeName otherRealmType = getRealmTypeName(getListGenericType(returnType));
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.AV_MODEL_LIST, ParameterizedTypeName.get(realmList, otherRealmType), otherRealmType);
+            } else if (PACKED_ARRAY_TYPES.contains(returnType.toString())) {
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.PACKED_ARRAY, TypeName.get(byte[].class), null);
+            } else if (isEnumType(returnType, typeUtils)) {
+                TypeName realmType = isNullable(entry.getValue()) ? TypeName.get(Integer.class) : TypeName.INT;
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.ENUM, realmType, null);
+                for (VariableElement constant : getEnumConstants(returnType, typeUtils)) {
+                    AvCode code = constant.getAnnotation(AvCode.class);
+                    if (code != null) {
+                        property.enumCodes.put(constant.getSimpleName().toString(), code.value());
+                    }
+                }
+            } else if (isValueType(returnType)) {
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.VALUE, TypeName.get(returnType), null);
+            } else {
+                property = new RealmProperty(entry.getKey(), entry.getValue(), RealmProperty.Kind.NOT_SUPPORTED, null, null);
+            }
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    /**
+     * Classifies the properties of the child of an @AvEmbedded property, in the order of the constructor of its
+     * AutoValue class. Like AutoValue, the get and is prefixes are dropped from the names if every getter has one.
+     */
+    private void addEmbeddedProperties(RealmProperty property, Types typeUtils) {
+        TypeElement child = (TypeElement) typeUtils.asElement(property.getter.getReturnType());
+        List<ExecutableElement> getters = getGetters(child, typeUtils);
+        boolean allPrefixed = true;
+        for (ExecutableElement getter : getters) {
+            allPrefixed &= getPrefixLength(getter) > 0;
+        }
+        for (ExecutableElement getter : getters) {
+            String name = getter.getSimpleName().toString();
+            if (allPrefixed) {
+                name = Introspector.decapitalize(name.substring(getPrefixLength(getter)));
+            }
+            TypeMirror returnType = getter.getReturnType();
+            RealmProperty.Kind kind = isValueType(returnType) ? RealmProperty.Kind.VALUE : RealmProperty.Kind.NOT_SUPPORTED;
+            property.embeddedProperties.add(new RealmProperty(property, name, getter, kind, TypeName.get(returnType)));
+        }
+    }
+
+    /**
+     * @return the abstract getters of an AutoValue class, in the order of its constructor
+     */
+    private static List<ExecutableElement> getGetters(TypeElement autoValueClass, Types typeUtils) {
+        List<ExecutableElement> getters = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(autoValueClass.getEnclosedElements())) {
+            String name = method.getSimpleName().toString();
+            Element returnElement = typeUtils.asElement(method.getReturnType());
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)
+                    || !method.getParameters().isEmpty()
+                    || method.getReturnType().getKind() == TypeKind.VOID
+                    || name.equals(TO_REALM_OBJECT_METHOD_NAME) || name.equals("hashCode") || name.equals("toString")
+                    || returnElement != null && returnElement.getAnnotation(AutoValue.Builder.class) != null) {
+                continue;
+            }
+            getters.add(method);
+        }
+        return getters;
+    }
+
+    private static int getPrefixLength(ExecutableElement getter) {
+        String name = getter.getSimpleName().toString();
+        if (name.startsWith("get") && name.length() > "get".length()) {
+            return "get".length();
+        }
+        if (name.startsWith("is") && name.length() > "is".length() && getter.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            return "is".length();
+        }
+        return 0;
+    }
+
+    private static boolean isEnumType(TypeMirror type, Types typeUtils) {
+        Element element = typeUtils.asElement(type);
+        return element != null && element.getKind() == ElementKind.ENUM;
+    }
+
+    private static List<VariableElement> getEnumConstants(TypeMirror type, Types typeUtils) {
+        List<VariableElement> constants = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(typeUtils.asElement(type).getEnclosedElements())) {
+            if (field.getKind() == ElementKind.ENUM_CONSTANT) {
+                constants.add(field);
+            }
+        }
+        return constants;
+    }
+
+    private static boolean isNullable(ExecutableElement getter) {
+        for (AnnotationMirror annotation : getter.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().asElement().getSimpleName().contentEquals("Nullable")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isValueType(TypeMirror type) {
+        return type.getKind().isPrimitive() || SUPPORTED_TYPES.contains(type.toString());
+    }
+
+    /**
+     * @return the fields of the Realm class: the properties, with @AvEmbedded ones replaced by the properties of their child
+     */
+    private static List<RealmProperty> getRealmFields(List<RealmProperty> properties) {
+        List<RealmProperty> fields = new ArrayList<>(properties.size());
+        for (RealmProperty property : properties) {
+            if (property.kind == RealmProperty.Kind.EMBEDDED) {
+                fields.addAll(property.embeddedProperties);
+            } else {
+                fields.add(property);
+            }
+        }
+        return fields;
+    }
+
+    private void verifyInput(Context context, List<RealmProperty> properties) {
+        for (RealmProperty property : getRealmFields(properties)) {
+            if (property.kind == RealmProperty.Kind.NOT_SUPPORTED) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name +" is of a non supported type: " + property.getter.getReturnType().toString());
+            }
+            if (property.isIntern && !(property.kind == RealmProperty.Kind.VALUE && property.type.equals(TypeName.get(String.class)))) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is annotated with @AvIntern but is not a String");
+            }
+        }
+        for (RealmProperty property : properties) {
+            if (property.timestampUnit != null && !property.type.equals(TypeName.LONG)) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is annotated with @AvTimestamp but is not a long");
+            }
+            if (property.isEmbedded && property.kind != RealmProperty.Kind.EMBEDDED) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is annotated with @AvEmbedded but is not an AvModel");
+            }
+            if (property.kind == RealmProperty.Kind.EMBEDDED) {
+                verifyEmbedded(context, property);
             }
+            if (property.kind == RealmProperty.Kind.ENUM && !property.enumCodes.isEmpty()) {
+                int constantCount = getEnumConstants(property.getter.getReturnType(), context.processingEnvironment().getTypeUtils()).size();
+                if (property.enumCodes.size() != constantCount) {
+                    throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is an enum with some constants missing an @AvCode");
+                }
+                if (new HashSet<>(property.enumCodes.values()).size() != constantCount) {
+                    throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is an enum with duplicate @AvCode values");
+                }
+            }
+            if (property.isLazy && property.kind != RealmProperty.Kind.AV_MODEL_LIST) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is annotated with @AvLazy but is not a List of AvModels");
+            }
+        }
+        if (isJson(context)) {
+            verifyJson(context, properties);
+        }
+        if (isBinary(context)) {
+            verifyLinksAnnotated(context, properties, AvBinary.class);
+        }
+        if (isCached(context) && getPrimaryKey(properties) == null) {
+            throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + " is annotated with @AvCached but has no @AvPrimaryKey");
         }
     }
 
-    private void createRealmObjectClass(Context context) {
+    private void verifyJson(Context context, List<RealmProperty> properties) {
+        for (RealmProperty property : getRealmFields(properties)) {
+            if (property.type.equals(TypeName.get(byte[].class))) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " is a byte[], which @AvJson models cannot read from JSON");
+            }
+        }
+        verifyLinksAnnotated(context, properties, AvJson.class);
+    }
+
+    /**
+     * Verifies that the models linked by the class being processed, alone or in lists, have the given annotation too
+     */
+    private void verifyLinksAnnotated(Context context, List<RealmProperty> properties, Class<? extends Annotation> annotation) {
+        Types typeUtils = context.processingEnvironment().getTypeUtils();
+        for (RealmProperty property : properties) {
+            TypeMirror otherAvType = null;
+            if (property.kind == RealmProperty.Kind.AV_MODEL) {
+                otherAvType = property.getter.getReturnType();
+            } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+                otherAvType = getListGenericType(property.getter.getReturnType());
+            }
+            if (otherAvType != null && typeUtils.asElement(otherAvType).getAnnotation(annotation) == null) {
+                throw new IllegalArgumentException(context.autoValueClass().getSimpleName().toString() + "." + property.name + " links to " + otherAvType + ", which is not annotated with @" + annotation.getSimpleName());
+            }
+        }
+    }
+
+    private void verifyEmbedded(Context context, RealmProperty property) {
+        String propertyName = context.autoValueClass().getSimpleName().toString() + "." + property.name;
+        if (property.isPrimaryKey || property.isIndex) {
+            throw new IllegalArgumentException(propertyName + " is annotated with @AvEmbedded and cannot be a primary key or an index");
+        }
+        if (isNullable(property.getter)) {
+            throw new IllegalArgumentException(propertyName + " is annotated with @AvEmbedded and cannot be @Nullable");
+        }
+        if (!getEmbeddedImplType(property).packageName().equals(context.packageName())) {
+            throw new IllegalArgumentException(propertyName + " is annotated with @AvEmbedded but " + property.type + " is not in the same package");
+        }
+    }
+
+    private void createRealmObjectClass(Context context, List<RealmProperty> properties) {
+        // The Realm class only depends on the AutoValue class it is created from, which keeps the extension isolating
         TypeSpec.Builder realmObjectClassBuilder = TypeSpec.classBuilder(getRealmObjectType(context).simpleName())
+                .addOriginatingElement(context.autoValueClass())
                 .addModifiers(Modifier.PUBLIC)
                 .superclass(ClassName.get("io.realm", "RealmObject"))
-                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(AvRealmModel.class), getAvObjectType(context)));
-
-        // Create the fields and the setters
-        for (Map.Entry<String, ExecutableElement> property : context.properties().entrySet()) {
-            boolean isPrimaryKey = property.getValue().getAnnotation(AvPrimaryKey.class) != null;
-            boolean isIndex = property.getValue().getAnnotation(AvIndex.class) != null;
-            TypeName propertyType;
-            if (isOtherAvModel(context, property.getValue())) {
-                propertyType = getRealmTypeName(property.getValue().getReturnType());
-
-            } else if (isListOfOtherAvModel(context, property.getValue())) {
-                TypeName otherRealmType = getRealmTypeName(getListGenericType(property.getValue().getReturnType()));
-                propertyType = ParameterizedTypeName.get(ClassName.get("io.realm", "RealmList"), otherRealmType);
-            } else {
-                propertyType = TypeName.get(property.getValue().getReturnType());
-            }
-            FieldSpec.Builder fieldBuilder = FieldSpec.builder(propertyType, property.getKey())
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(AvRealmModel.class), getAvObjectType(context)))
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(AvContextualRealmModel.class), getAvObjectType(context)));
+
+        // Create the fields, the getters and the setters
+        for (RealmProperty property : getRealmFields(properties)) {
+            realmObjectClassBuilder.addField(FieldSpec.builder(String.class, property.fieldConstantName())
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$S", property.name)
+                    .build());
+            FieldSpec.Builder fieldBuilder = FieldSpec.builder(property.realmType, property.name)
                     .addModifiers(Modifier.PRIVATE);
-            if (isPrimaryKey) {
+            if (property.isPrimaryKey) {
                 fieldBuilder.addAnnotation(ClassName.get("io.realm.annotations", "PrimaryKey"));
             }
-            if (isIndex) {
+            if (property.isIndex) {
                 fieldBuilder.addAnnotation(ClassName.get("io.realm.annotations", "Index"));
             }
-            MethodSpec setter = MethodSpec.methodBuilder(getSetterName(property.getKey()))
+            MethodSpec getter = MethodSpec.methodBuilder(property.realmGetterName())
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(property.realmType)
+                    .addStatement("return $N", property.name)
+                    .build();
+            MethodSpec setter = MethodSpec.methodBuilder(property.setterName())
                     .addModifiers(Modifier.PUBLIC)
-                    .addParameter(propertyType, property.getKey())
-                    .addStatement("this.$N = $N", property.getKey(), property.getKey())
+                    .addParameter(property.realmType, property.name)
+                    .addStatement("this.$N = $N", property.name, property.name)
                     .build();
             realmObjectClassBuilder.addField(fieldBuilder.build());
+            realmObjectClassBuilder.addMethod(getter);
             realmObjectClassBuilder.addMethod(setter);
+            if (property.kind == RealmProperty.Kind.ENUM) {
+                addEnumConversion(realmObjectClassBuilder, property);
+            }
+        }
+
+        if (!isPublic(context.autoValueClass())) {
+            // Lets code outside the package of the model, like the schema registry, refer to its class
+            realmObjectClassBuilder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)), MODEL_CLASS_FIELD_NAME)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.class", getAvObjectType(context))
+                    .build());
+        }
+        RealmProperty primaryKey = getPrimaryKey(properties);
+        if (primaryKey != null) {
+            // Lets applyTo() tell a linked row of the same key, updated in place, from another row, relinked
+            realmObjectClassBuilder.addSuperinterface(AvKeyedModel.class)
+                    .addMethod(MethodSpec.methodBuilder("getAvPrimaryKey")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(Object.class)
+                            .addStatement("return $N()", primaryKey.realmGetterName())
+                            .build());
         }
 
-        realmObjectClassBuilder.addMethod(createRealmToModelMethod(context));
+        realmObjectClassBuilder.addMethod(createRealmToModelMethod(context, properties, false));
+        realmObjectClassBuilder.addMethod(createRealmToModelMethod(context, properties, true));
+        realmObjectClassBuilder.addMethod(createToModelsMethod(context));
+        realmObjectClassBuilder.addMethod(createToRealmObjectsMethod(context));
+        if (isLive(context)) {
+            realmObjectClassBuilder.addMethod(MethodSpec.methodBuilder(TO_LIVE_MODEL_METHOD_NAME)
+                    .addJavadoc("@return a view of this object implementing the model, reading every property from it on demand\n")
+                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                    .returns(getAvObjectType(context))
+                    .addStatement("return new $T(this)", getLiveModelType(context))
+                    .build());
+        }
+        for (TypeElement projection : getProjections(context)) {
+            realmObjectClassBuilder.addMethod(createToProjectionMethod(context, properties, projection));
+        }
+        for (RealmProperty property : getRealmFields(properties)) {
+            if (property.isPrimaryKey || property.isIndex) {
+                realmObjectClassBuilder.addMethod(createFindMethod(context, property));
+            }
+            if (property.timestampUnit != null) {
+                addTimestampRangeMethods(context, realmObjectClassBuilder, property);
+            }
+        }
+        if (isCached(context)) {
+            realmObjectClassBuilder.addMethod(createFindModelMethod(context, getPrimaryKey(properties)));
+            realmObjectClassBuilder.addMethod(createSaveMethod(context, getPrimaryKey(properties)));
+        }
+        addDiff(context, realmObjectClassBuilder, properties);
+        if (isJson(context)) {
+            addFromJson(context, realmObjectClassBuilder, properties);
+        }
         JavaFile file = JavaFile.builder(context.packageName(), realmObjectClassBuilder.build()).build();
         try {
             file.writeTo(context.processingEnvironment().getFiler());
@@ -131,6 +482,640 @@ public class AutoValueRealmExtension extends AutoValueExtension {
         }
     }
 
+    /**
+     * Adds the static method reading the Realm object from a JSON object, calling the setters as the values are read,
+     * and the JSON_READER handing it to AvJsonImporter. Embedded models are read from nested JSON objects.
+     */
+    private void addFromJson(Context context, TypeSpec.Builder realmObjectClassBuilder, List<RealmProperty> properties) {
+        ClassName realmObjectType = getRealmObjectType(context);
+        MethodSpec.Builder fromJson = MethodSpec.methodBuilder(FROM_JSON_METHOD_NAME)
+                .addJavadoc("Reads a Realm object from the next JSON object, setting the fields of the properties it names\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(realmObjectType)
+                .addParameter(AvJsonReader.class, "reader")
+                .addException(IOException.class)
+                .addStatement("$T realmObject = new $T()", realmObjectType, realmObjectType);
+        beginJsonObject(fromJson, "name");
+        for (RealmProperty property : properties) {
+            fromJson.addCode("case $S:\n$>", property.jsonName());
+            if (property.kind == RealmProperty.Kind.EMBEDDED) {
+                beginJsonObject(fromJson, "childName");
+                for (RealmProperty embeddedProperty : property.embeddedProperties) {
+                    fromJson.addCode("case $S:\n$>", embeddedProperty.jsonName())
+                            .addStatement("realmObject.$N($L)", embeddedProperty.setterName(), getJsonValue(embeddedProperty, realmObjectType))
+                            .addStatement("break")
+                            .addCode("$<");
+                }
+                endJsonObject(fromJson);
+            } else {
+                fromJson.addStatement("realmObject.$N($L)", property.setterName(), getJsonValue(property, realmObjectType));
+            }
+            fromJson.addStatement("break")
+                    .addCode("$<");
+        }
+        endJsonObject(fromJson);
+        realmObjectClassBuilder.addMethod(fromJson.addStatement("return realmObject").build());
+
+        ParameterizedTypeName objectReaderType = ParameterizedTypeName.get(ClassName.get(AvJsonImporter.ObjectReader.class), realmObjectType);
+        TypeSpec objectReader = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(objectReaderType)
+                .addMethod(MethodSpec.methodBuilder("read")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(realmObjectType)
+                        .addParameter(AvJsonReader.class, "reader")
+                        .addException(IOException.class)
+                        .addStatement("return $N(reader)", FROM_JSON_METHOD_NAME)
+                        .build())
+                .build();
+        realmObjectClassBuilder.addField(FieldSpec.builder(objectReaderType, JSON_READER_FIELD_NAME, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$L", objectReader)
+                .build());
+    }
+
+    /**
+     * Begins the loop over the names of a JSON object and the switch on them. Null values are skipped.
+     */
+    private static void beginJsonObject(MethodSpec.Builder builder, String nameVariable) {
+        builder.addStatement("reader.beginObject()")
+                .beginControlFlow("while (reader.hasNext())")
+                .addStatement("$T $N = reader.nextName()", String.class, nameVariable)
+                .beginControlFlow("if (reader.peekNull())")
+                .addStatement("reader.nextNull()")
+                .addStatement("continue")
+                .endControlFlow()
+                .beginControlFlow("switch ($N)", nameVariable);
+    }
+
+    private static void endJsonObject(MethodSpec.Builder builder) {
+        builder.addCode("default:\n$>")
+                .addStatement("reader.skipValue()")
+                .addStatement("break")
+                .addCode("$<")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("reader.endObject()");
+    }
+
+    /**
+     * @return the next value of the JSON reader, converted to the type of the field of a property
+     */
+    private CodeBlock getJsonValue(RealmProperty property, ClassName realmObjectType) {
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            return CodeBlock.of("$T.$N(reader)", property.otherRealmType, FROM_JSON_METHOD_NAME);
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            return CodeBlock.of("new $T($T.nextArray(reader, $T.$N, $T.class))", property.realmType, avJsonImporter, property.otherRealmType, JSON_READER_FIELD_NAME, property.otherRealmType);
+        } else if (property.kind == RealmProperty.Kind.PACKED_ARRAY) {
+            return CodeBlock.of("$T.pack($T.$N(reader))", avPackedArrays, avJsonImporter, property.nextArrayMethodName());
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            return CodeBlock.of("$N($T.valueOf(reader.nextString()))", property.encoderName(), property.type);
+        }
+        TypeName type = property.type.isBoxedPrimitive() ? property.type.unbox() : property.type;
+        if (type.equals(TypeName.BOOLEAN)) {
+            return CodeBlock.of("reader.nextBoolean()");
+        } else if (type.equals(TypeName.INT)) {
+            return CodeBlock.of("reader.nextInt()");
+        } else if (type.equals(TypeName.SHORT) || type.equals(TypeName.BYTE)) {
+            return CodeBlock.of("($T) reader.nextInt()", type);
+        } else if (type.equals(TypeName.LONG)) {
+            return CodeBlock.of("reader.nextLong()");
+        } else if (type.equals(TypeName.DOUBLE)) {
+            return CodeBlock.of("reader.nextDouble()");
+        } else if (type.equals(TypeName.FLOAT)) {
+            return CodeBlock.of("($T) reader.nextDouble()", type);
+        } else if (type.equals(TypeName.CHAR)) {
+            return CodeBlock.of("$T.nextChar(reader)", avJsonImporter);
+        } else if (type.equals(TypeName.get(Date.class))) {
+            return CodeBlock.of("new $T(reader.nextLong())", Date.class);
+        }
+        return CodeBlock.of("reader.nextString()");
+    }
+
+    /**
+     * Adds a CHANGED_ index per property of the model, and the static method comparing two models property by property
+     * into a BitSet of these indices. The same API is generated for every width, so that adding a property never
+     * changes it. Linked models and lists are compared with equals(), which compares their properties and elements in
+     * turn. The comparisons of wide models are split into helper methods of {@link #PROPERTIES_PER_METHOD} properties.
+     */
+    private void addDiff(Context context, TypeSpec.Builder realmObjectClassBuilder, List<RealmProperty> properties) {
+        TypeName avObjectType = getAvObjectType(context);
+        MethodSpec.Builder diff = MethodSpec.methodBuilder(DIFF_METHOD_NAME)
+                .addJavadoc("Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n\n")
+                .addJavadoc("@return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(BitSet.class)
+                .addParameter(avObjectType, "previous")
+                .addParameter(avObjectType, "current")
+                .addStatement("$T changed = new $T($L)", BitSet.class, BitSet.class, properties.size())
+                .beginControlFlow("if (previous == null || current == null)")
+                .beginControlFlow("if (previous != current)")
+                .addStatement("changed.set(0, $L)", properties.size())
+                .endControlFlow()
+                .addStatement("return changed")
+                .endControlFlow();
+        for (int i = 0; i < properties.size(); i++) {
+            realmObjectClassBuilder.addField(FieldSpec.builder(int.class, properties.get(i).changedConstantName())
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$L", i)
+                    .build());
+        }
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder chunkBuilder = diff;
+            if (chunks.size() > 1) {
+                chunkBuilder = MethodSpec.methodBuilder(DIFF_METHOD_NAME + i)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(avObjectType, "previous")
+                        .addParameter(avObjectType, "current")
+                        .addParameter(BitSet.class, "changed");
+                diff.addStatement("$N(previous, current, changed)", DIFF_METHOD_NAME + i);
+            }
+            for (RealmProperty property : chunks.get(i)) {
+                String getter = property.getterName();
+                chunkBuilder.beginControlFlow("if ($L)", getChangedCondition(property, CodeBlock.of("previous.$N()", getter), CodeBlock.of("current.$N()", getter)))
+                        .addStatement("changed.set($N)", property.changedConstantName())
+                        .endControlFlow();
+            }
+            if (chunks.size() > 1) {
+                realmObjectClassBuilder.addMethod(chunkBuilder.build());
+            }
+        }
+        realmObjectClassBuilder.addMethod(diff.addStatement("return changed").build());
+    }
+
+    /**
+     * Adds the static methods converting an enum to the int stored in its field and back. Enums without codes are
+     * decoded through a cached copy of values(), as values() creates a new array on every call.
+     */
+    private void addEnumConversion(TypeSpec.Builder realmObjectClassBuilder, RealmProperty property) {
+        MethodSpec.Builder encoder = MethodSpec.methodBuilder(property.encoderName())
+                .addModifiers(Modifier.STATIC)
+                .returns(property.realmType)
+                .addParameter(property.type, property.name);
+        MethodSpec.Builder decoder = MethodSpec.methodBuilder(property.decoderName())
+                .addModifiers(Modifier.STATIC)
+                .returns(property.type)
+                .addParameter(property.realmType, property.name);
+        if (!property.realmType.isPrimitive()) {
+            encoder.beginControlFlow("if ($N == null)", property.name).addStatement("return null").endControlFlow();
+            decoder.beginControlFlow("if ($N == null)", property.name).addStatement("return null").endControlFlow();
+        }
+        if (property.enumCodes.isEmpty()) {
+            TypeName valuesType = ArrayTypeName.of(property.type);
+            realmObjectClassBuilder.addField(FieldSpec.builder(valuesType, property.enumValuesConstantName())
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.values()", property.type)
+                    .build());
+            encoder.addStatement("return $N.ordinal()", property.name);
+            decoder.addStatement("return $N[$N]", property.enumValuesConstantName(), property.name);
+        } else {
+            encoder.beginControlFlow("switch ($N)", property.name);
+            decoder.beginControlFlow("switch ($N)", property.name);
+            for (Map.Entry<String, Integer> code : property.enumCodes.entrySet()) {
+                encoder.addCode("case $N:\n$>return $L;\n$<", code.getKey(), code.getValue());
+                decoder.addCode("case $L:\n$>return $T.$N;\n$<", code.getValue(), property.type, code.getKey());
+            }
+            encoder.addCode("default:\n$>throw new $T($S + $N);\n$<", IllegalArgumentException.class, "No @AvCode for ", property.name)
+                    .endControlFlow();
+            decoder.addCode("default:\n$>throw new $T($S + $N);\n$<", IllegalArgumentException.class, "No constant for @AvCode ", property.name)
+                    .endControlFlow();
+        }
+        realmObjectClassBuilder.addMethod(encoder.build());
+        realmObjectClassBuilder.addMethod(decoder.build());
+    }
+
+    /**
+     * Creates $LiveFoo for models annotated with @AvLive, a subclass of the AvModel whose getters read from the Realm
+     * object backing it. Every other abstract method of the model works on a frozen copy.
+     */
+    private void createLiveModelClass(Context context, List<RealmProperty> properties) {
+        ClassName avObjectType = getAvObjectType(context);
+        ClassName realmObjectType = getRealmObjectType(context);
+        TypeSpec.Builder liveModelClassBuilder = TypeSpec.classBuilder(getLiveModelType(context).simpleName())
+                .addOriginatingElement(context.autoValueClass())
+                .addModifiers(Modifier.FINAL)
+                .superclass(avObjectType)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(AvLiveModel.class), avObjectType))
+                .addField(realmObjectType, "realmObject", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(realmObjectType, "realmObject")
+                        .addStatement("this.realmObject = realmObject")
+                        .build());
+
+        // Resolve inherited methods against the model, so type variables of generic supertypes like AvModel<T> are
+        // replaced with their actual type arguments
+        DeclaredType autoValueType = (DeclaredType) context.autoValueClass().asType();
+        Types typeUtils = context.processingEnvironment().getTypeUtils();
+        Set<ExecutableElement> getters = new HashSet<>();
+        for (RealmProperty property : properties) {
+            getters.add(property.getter);
+            MethodSpec.Builder getter = MethodSpec.overriding(property.getter, autoValueType, typeUtils);
+            if (property.kind == RealmProperty.Kind.AV_MODEL) {
+                boolean isLinkLive = typeUtils.asElement(property.getter.getReturnType()).getAnnotation(AvLive.class) != null;
+                getter.addStatement("$T value = realmObject.$N()", property.realmType, property.realmGetterName())
+                        .addStatement("return value == null ? null : value.$N()", isLinkLive ? TO_LIVE_MODEL_METHOD_NAME : TO_MODEL_METHOD_NAME);
+            } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+                getter.addStatement("return $T.lazyFromRealmModels(realmObject.$N())", avRealmHelper, property.realmGetterName());
+            } else if (property.kind == RealmProperty.Kind.EMBEDDED) {
+                CodeBlock.Builder arguments = CodeBlock.builder();
+                for (int i = 0; i < property.embeddedProperties.size(); i++) {
+                    arguments.add(i == 0 ? "realmObject.$N()" : ", realmObject.$N()", property.embeddedProperties.get(i).realmGetterName());
+                }
+                getter.addStatement("return new $T($L)", getEmbeddedImplType(property), arguments.build());
+            } else if (property.kind == RealmProperty.Kind.PACKED_ARRAY) {
+                getter.addStatement("return $T.$N(realmObject.$N())", avPackedArrays, property.unpackMethodName(), property.realmGetterName());
+            } else if (property.kind == RealmProperty.Kind.ENUM) {
+                getter.addStatement("return $T.$N(realmObject.$N())", realmObjectType, property.decoderName(), property.realmGetterName());
+            } else {
+                getter.addStatement("return realmObject.$N()", property.realmGetterName());
+            }
+            liveModelClassBuilder.addMethod(getter.build());
+        }
+
+        liveModelClassBuilder.addMethod(MethodSpec.methodBuilder(FREEZE_METHOD_NAME)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(avObjectType)
+                .addStatement("return realmObject.$N()", TO_MODEL_METHOD_NAME)
+                .build());
+
+        // toRealmObject(), toBuilder() and the like
+        for (ExecutableElement method : context.abstractMethods()) {
+            String name = method.getSimpleName().toString();
+            if (getters.contains(method) || name.equals("equals") || name.equals("hashCode") || name.equals("toString")) {
+                continue;
+            }
+            CodeBlock.Builder call = CodeBlock.builder().add("$N().$N(", FREEZE_METHOD_NAME, name);
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                call.add(i == 0 ? "$N" : ", $N", parameters.get(i).getSimpleName().toString());
+            }
+            call.add(")");
+            MethodSpec.Builder delegate = MethodSpec.overriding(method, autoValueType, typeUtils);
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                delegate.addStatement("$L", call.build());
+            } else {
+                delegate.addStatement("return $L", call.build());
+            }
+            liveModelClassBuilder.addMethod(delegate.build());
+        }
+
+        // Same results as the methods of AutoValue_Foo, read from the getters rather than from a frozen copy
+        if (!isImplementedByModel(context, "equals")) {
+            addLiveEqualsMethod(liveModelClassBuilder, avObjectType, properties);
+        }
+        if (!isImplementedByModel(context, "hashCode")) {
+            addLiveHashCodeMethod(liveModelClassBuilder, properties);
+        }
+        if (!isImplementedByModel(context, "toString")) {
+            addLiveToStringMethod(liveModelClassBuilder, context, properties);
+        }
+
+        JavaFile file = JavaFile.builder(context.packageName(), liveModelClassBuilder.build()).build();
+        try {
+            file.writeTo(context.processingEnvironment().getFiler());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return true if the model or one of its superclasses other than Object implements the method, in which case
+     * AutoValue keeps that implementation
+     */
+    private static boolean isImplementedByModel(Context context, String name) {
+        Elements elementUtils = context.processingEnvironment().getElementUtils();
+        for (ExecutableElement method : ElementFilter.methodsIn(elementUtils.getAllMembers(context.autoValueClass()))) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == (name.equals("equals") ? 1 : 0)) {
+                TypeElement enclosingType = (TypeElement) method.getEnclosingElement();
+                return !method.getModifiers().contains(Modifier.ABSTRACT)
+                        && !enclosingType.getQualifiedName().contentEquals(Object.class.getName());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds equals(), split into helper methods comparing {@link #PROPERTIES_PER_METHOD} properties each.
+     */
+    private static void addLiveEqualsMethod(TypeSpec.Builder liveModelClassBuilder, ClassName avObjectType, List<RealmProperty> properties) {
+        MethodSpec.Builder equals = MethodSpec.methodBuilder("equals")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addParameter(Object.class, "o")
+                .beginControlFlow("if (o == this)")
+                .addStatement("return true")
+                .endControlFlow()
+                .beginControlFlow("if (!(o instanceof $T))", avObjectType)
+                .addStatement("return false")
+                .endControlFlow()
+                .addStatement("$T that = ($T) o", avObjectType, avObjectType);
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        if (chunks.size() <= 1) {
+            equals.addStatement("return $L", getLiveEqualsCondition(properties));
+            liveModelClassBuilder.addMethod(equals.build());
+            return;
+        }
+        CodeBlock.Builder chunkCalls = CodeBlock.builder();
+        for (int i = 0; i < chunks.size(); i++) {
+            chunkCalls.add(i == 0 ? "$N(that)" : "\n&& $N(that)", "equals" + i);
+            liveModelClassBuilder.addMethod(MethodSpec.methodBuilder("equals" + i)
+                    .addModifiers(Modifier.PRIVATE)
+                    .returns(boolean.class)
+                    .addParameter(avObjectType, "that")
+                    .addStatement("return $L", getLiveEqualsCondition(chunks.get(i)))
+                    .build());
+        }
+        liveModelClassBuilder.addMethod(equals.addStatement("return $L", chunkCalls.build()).build());
+    }
+
+    private static CodeBlock getLiveEqualsCondition(List<RealmProperty> properties) {
+        CodeBlock.Builder condition = CodeBlock.builder();
+        if (properties.isEmpty()) {
+            condition.add("true");
+        }
+        for (int i = 0; i < properties.size(); i++) {
+            RealmProperty property = properties.get(i);
+            String getter = property.getterName();
+            if (i > 0) {
+                condition.add("\n&& ");
+            }
+            TypeKind kind = property.getter.getReturnType().getKind();
+            if (kind == TypeKind.FLOAT) {
+                condition.add("$T.floatToIntBits($N()) == $T.floatToIntBits(that.$N())", Float.class, getter, Float.class, getter);
+            } else if (kind == TypeKind.DOUBLE) {
+                condition.add("$T.doubleToLongBits($N()) == $T.doubleToLongBits(that.$N())", Double.class, getter, Double.class, getter);
+            } else if (kind.isPrimitive()) {
+                condition.add("$N() == that.$N()", getter, getter);
+            } else if (kind == TypeKind.ARRAY) {
+                condition.add("$T.equals($N(), that.$N())", Arrays.class, getter, getter);
+            } else {
+                condition.add("$T.equal($N(), that.$N())", ClassName.get(AvRealmHelper.class), getter, getter);
+            }
+        }
+        return condition.build();
+    }
+
+    /**
+     * Adds hashCode(), computed like the one of AutoValue so that a live view and its frozen copy can be mixed in sets
+     * and maps, and split into helper methods hashing {@link #PROPERTIES_PER_METHOD} properties each.
+     */
+    private static void addLiveHashCodeMethod(TypeSpec.Builder liveModelClassBuilder, List<RealmProperty> properties) {
+        MethodSpec.Builder hashCode = MethodSpec.methodBuilder("hashCode")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addStatement("int h = 1");
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder chunkBuilder = hashCode;
+            if (chunks.size() > 1) {
+                chunkBuilder = MethodSpec.methodBuilder("hashCode" + i)
+                        .addModifiers(Modifier.PRIVATE)
+                        .returns(int.class)
+                        .addParameter(int.class, "h");
+                hashCode.addStatement("h = $N(h)", "hashCode" + i);
+            }
+            for (RealmProperty property : chunks.get(i)) {
+                addLiveHashCodeStatements(chunkBuilder, property);
+            }
+            if (chunks.size() > 1) {
+                liveModelClassBuilder.addMethod(chunkBuilder.addStatement("return h").build());
+            }
+        }
+        liveModelClassBuilder.addMethod(hashCode.addStatement("return h").build());
+    }
+
+    private static void addLiveHashCodeStatements(MethodSpec.Builder builder, RealmProperty property) {
+        String getter = property.getterName();
+        builder.addStatement("h *= 1000003");
+        switch (property.getter.getReturnType().getKind()) {
+            case BOOLEAN:
+                builder.addStatement("h ^= $N() ? 1231 : 1237", getter);
+                break;
+            case LONG:
+                builder.addStatement("h ^= ($N() >>> 32) ^ $N()", getter, getter);
+                break;
+            case FLOAT:
+                builder.addStatement("h ^= $T.floatToIntBits($N())", Float.class, getter);
+                break;
+            case DOUBLE:
+                builder.addStatement("h ^= ($T.doubleToLongBits($N()) >>> 32) ^ $T.doubleToLongBits($N())", Double.class, getter, Double.class, getter);
+                break;
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+                builder.addStatement("h ^= $N()", getter);
+                break;
+            case ARRAY:
+                builder.addStatement("h ^= $T.hashCode($N())", Arrays.class, getter);
+                break;
+            default:
+                builder.addStatement("h ^= $T.hashCode($N())", ClassName.get(AvRealmHelper.class), getter);
+                break;
+        }
+    }
+
+    /**
+     * Adds toString(), in the format of AutoValue, split into helper methods appending
+     * {@link #PROPERTIES_PER_METHOD} properties each.
+     */
+    private static void addLiveToStringMethod(TypeSpec.Builder liveModelClassBuilder, Context context, List<RealmProperty> properties) {
+        MethodSpec.Builder toString = MethodSpec.methodBuilder("toString")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(String.class)
+                .addStatement("$T builder = new $T($S)", StringBuilder.class, StringBuilder.class, context.autoValueClass().getSimpleName().toString() + "{");
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder chunkBuilder = toString;
+            if (chunks.size() > 1) {
+                chunkBuilder = MethodSpec.methodBuilder("toString" + i)
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(StringBuilder.class, "builder");
+                toString.addStatement("$N(builder)", "toString" + i);
+            }
+            for (RealmProperty property : chunks.get(i)) {
+                String label = (property == properties.get(0) ? "" : ", ") + property.name + "=";
+                if (property.getter.getReturnType().getKind() == TypeKind.ARRAY) {
+                    chunkBuilder.addStatement("builder.append($S).append($T.toString($N()))", label, Arrays.class, property.getterName());
+                } else {
+                    chunkBuilder.addStatement("builder.append($S).append($N())", label, property.getterName());
+                }
+            }
+            if (chunks.size() > 1) {
+                liveModelClassBuilder.addMethod(chunkBuilder.build());
+            }
+        }
+        liveModelClassBuilder.addMethod(toString.addStatement("return builder.append('}').toString()").build());
+    }
+
+    /**
+     * Creates a static query helper looking up Realm objects by their primary key, or by an indexed field.
+     * Example: {@code $RealmFoo.findByName(realm, "bar")}
+     */
+    private MethodSpec createFindMethod(Context context, RealmProperty property) {
+        ClassName realmObjectType = getRealmObjectType(context);
+        String capitalizedName = property.realmGetterName().substring("get".length());
+        MethodSpec.Builder builder = MethodSpec.methodBuilder((property.isPrimaryKey ? "findBy" : "findAllBy") + capitalizedName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(realm, "realm")
+                .addParameter(getQueryType(property), property.name);
+        CodeBlock value = property.kind == RealmProperty.Kind.ENUM ? CodeBlock.of("$N($N)", property.encoderName(), property.name) : CodeBlock.of("$N", property.name);
+        if (property.isPrimaryKey) {
+            builder.returns(realmObjectType)
+                    .addStatement("return realm.where($T.class).equalTo($N, $L).findFirst()", realmObjectType, property.fieldConstantName(), value);
+        } else {
+            builder.returns(ParameterizedTypeName.get(realmResults, realmObjectType))
+                    .addStatement("return realm.where($T.class).equalTo($N, $L).findAll()", realmObjectType, property.fieldConstantName(), value);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Adds the static query helpers returning the Realm objects whose timestamp is in a range, sorted by it. The range
+     * includes its start and excludes its end, so that consecutive ranges don't overlap.
+     * Example: {@code $RealmFoo.findAllByCreatedAtBetween(realm, from, to, Sort.DESCENDING)}
+     */
+    private void addTimestampRangeMethods(Context context, TypeSpec.Builder realmObjectClassBuilder, RealmProperty property) {
+        ClassName realmObjectType = getRealmObjectType(context);
+        String methodName = "findAllBy" + property.realmGetterName().substring("get".length()) + "Between";
+        TypeName returnType = ParameterizedTypeName.get(realmResults, realmObjectType);
+        realmObjectClassBuilder.addMethod(MethodSpec.methodBuilder(methodName)
+                .addJavadoc("@param from the start of the range, in $L, included\n", property.timestampUnit.name().toLowerCase())
+                .addJavadoc("@param to the end of the range, in $L, excluded\n", property.timestampUnit.name().toLowerCase())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(returnType)
+                .addParameter(realm, "realm")
+                .addParameter(long.class, "from")
+                .addParameter(long.class, "to")
+                .addParameter(sort, "sortOrder")
+                .addStatement("return realm.where($T.class).greaterThanOrEqualTo($N, from).lessThan($N, to).findAllSorted($N, sortOrder)",
+                        realmObjectType, property.fieldConstantName(), property.fieldConstantName(), property.fieldConstantName())
+                .build());
+        CodeBlock from = CodeBlock.of("from.getTime()");
+        CodeBlock to = CodeBlock.of("to.getTime()");
+        if (property.timestampUnit != TimeUnit.MILLISECONDS) {
+            from = CodeBlock.of("$T.$L.convert($L, $T.MILLISECONDS)", TimeUnit.class, property.timestampUnit.name(), from, TimeUnit.class);
+            to = CodeBlock.of("$T.$L.convert($L, $T.MILLISECONDS)", TimeUnit.class, property.timestampUnit.name(), to, TimeUnit.class);
+        }
+        realmObjectClassBuilder.addMethod(MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(returnType)
+                .addParameter(realm, "realm")
+                .addParameter(Date.class, "from")
+                .addParameter(Date.class, "to")
+                .addParameter(sort, "sortOrder")
+                .addStatement("return $N(realm, $L, $L, sortOrder)", methodName, from, to)
+                .build());
+    }
+
+    /**
+     * Creates a static method looking up a model by its primary key through the {@link AvModelCache}, only querying
+     * Realm and converting the result on a cache miss. The result is only cached if the cache was not written while it
+     * was read, so a model read before a save() commits cannot replace the one save() cached.
+     * Example: {@code $RealmFoo.findModelByName(realm, "bar")}
+     */
+    private MethodSpec createFindModelMethod(Context context, RealmProperty primaryKey) {
+        ClassName avObjectType = getAvObjectType(context);
+        ClassName realmObjectType = getRealmObjectType(context);
+        String capitalizedName = primaryKey.realmGetterName().substring("get".length());
+        return MethodSpec.methodBuilder("findModelBy" + capitalizedName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(avObjectType)
+                .addParameter(realm, "realm")
+                .addParameter(getQueryType(primaryKey), primaryKey.name)
+                .addStatement("$T model = $T.getInstance().get($T.class, $N)", avObjectType, avModelCache, avObjectType, primaryKey.name)
+                .beginControlFlow("if (model == null)")
+                .addStatement("long version = $T.getInstance().getVersion()", avModelCache)
+                .addStatement("$T realmObject = findBy$L(realm, $N)", realmObjectType, capitalizedName, primaryKey.name)
+                .beginControlFlow("if (realmObject == null)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("model = realmObject.$N()", TO_MODEL_METHOD_NAME)
+                .addStatement("$T.getInstance().putIfUnchanged($T.class, $N, model, version)", avModelCache, avObjectType, primaryKey.name)
+                .endControlFlow()
+                .addStatement("return model")
+                .build();
+    }
+
+    /**
+     * Creates a static method writing a model in its own transaction, and putting it in the {@link AvModelCache} once
+     * the transaction is committed, so that a read made before the commit cannot cache the previous values over it.
+     * Example: {@code $RealmFoo.save(realm, foo)}
+     */
+    private MethodSpec createSaveMethod(Context context, RealmProperty primaryKey) {
+        ClassName avObjectType = getAvObjectType(context);
+        ClassName realmObjectType = getRealmObjectType(context);
+        String capitalizedName = primaryKey.realmGetterName().substring("get".length());
+        return MethodSpec.methodBuilder("save")
+                .addJavadoc("Writes the model in a transaction of its own, updating the row of the same primary key in place if there\n"
+                        + "is one, then caches the model.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(realm, "realm")
+                .addParameter(avObjectType, "model")
+                .addStatement("model = $T.freeze(model)", avRealmHelper)
+                .addStatement("realm.beginTransaction()")
+                .beginControlFlow("try")
+                .addStatement("$T existing = findBy$L(realm, model.$N())", realmObjectType, capitalizedName, primaryKey.getterName())
+                .beginControlFlow("if (!$T.applyTo(realm, model, existing))", avRealmHelper)
+                .addStatement("realm.copyToRealmOrUpdate(model.$N())", TO_REALM_OBJECT_METHOD_NAME)
+                .endControlFlow()
+                .addStatement("realm.commitTransaction()")
+                .nextControlFlow("catch ($T e)", RuntimeException.class)
+                .addStatement("realm.cancelTransaction()")
+                .addStatement("throw e")
+                .endControlFlow()
+                .addStatement("$T.getInstance().put($T.class, model.$N(), model)", avModelCache, avObjectType, primaryKey.getterName())
+                .build();
+    }
+
+    /**
+     * @return the type the query helpers take for a property: the enum itself for enums, the type of the field otherwise
+     */
+    private static TypeName getQueryType(RealmProperty property) {
+        return property.kind == RealmProperty.Kind.ENUM ? property.type : property.realmType;
+    }
+
+    /**
+     * @return true if a type can be referred to from any package, meaning it and its enclosing types are public
+     */
+    static boolean isPublic(TypeElement type) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isCached(Context context) {
+        return context.autoValueClass().getAnnotation(AvCached.class) != null;
+    }
+
+    private boolean isBinary(Context context) {
+        return context.autoValueClass().getAnnotation(AvBinary.class) != null;
+    }
+
+    private boolean isLive(Context context) {
+        return context.autoValueClass().getAnnotation(AvLive.class) != null;
+    }
+
+    private boolean isJson(Context context) {
+        return context.autoValueClass().getAnnotation(AvJson.class) != null;
+    }
+
+    private RealmProperty getPrimaryKey(List<RealmProperty> properties) {
+        for (RealmProperty property : properties) {
+            if (property.isPrimaryKey) {
+                return property;
+            }
+        }
+        return null;
+    }
+
     private TypeMirror getListGenericType(TypeMirror type) {
         if (!type.getKind().equals(TypeKind.DECLARED)) {
             throw new RuntimeException("Cannot find list generic type");
@@ -148,6 +1133,17 @@ public class AutoValueRealmExtension extends AutoValueExtension {
      * @return example: my.other.package.$RealmFoo_Inner
      */
     private TypeName getRealmTypeName(TypeMirror otherAvType) {
+        return getGeneratedTypeName(otherAvType, "$Realm");
+    }
+
+    /**
+     * @return the AutoValue class of the child of an @AvEmbedded property, example: my.package.AutoValue_Foo_Info
+     */
+    private ClassName getEmbeddedImplType(RealmProperty property) {
+        return getGeneratedTypeName(property.getter.getReturnType(), "AutoValue_");
+    }
+
+    private ClassName getGeneratedTypeName(TypeMirror otherAvType, String prefix) {
         String avTypeString = otherAvType.toString();
         int packageNameLength = -1;
         for (int i = 0; i < avTypeString.length(); i++) {
@@ -160,31 +1156,19 @@ public class AutoValueRealmExtension extends AutoValueExtension {
             throw new RuntimeException("Could not figure out package name for class " + avTypeString + ". This should never happen");
         }
         String enclosedName = avTypeString.substring(packageNameLength).replaceAll("\\.", "_");
-        return ClassName.get(avTypeString.substring(0, packageNameLength - 1), "$Realm" + enclosedName);
-    }
-
-    private boolean isOtherAvModel(Context context, ExecutableElement getter) {
-        TypeMirror avModel = context.processingEnvironment().getElementUtils().getTypeElement("com.remind101.auto.value.realm.AvModel").asType();
-        return context.processingEnvironment().getTypeUtils().isAssignable(getter.getReturnType(), avModel);
-    }
-
-    private boolean isListOfOtherAvModel(Context context, ExecutableElement getter) {
-        Types typeUtils = context.processingEnvironment().getTypeUtils();
-        TypeElement list = context.processingEnvironment().getElementUtils().getTypeElement("java.util.List");
-        TypeMirror avModel = context.processingEnvironment().getElementUtils().getTypeElement("com.remind101.auto.value.realm.AvModel").asType();
-        TypeMirror parameterizedList = typeUtils.getDeclaredType(list, typeUtils.getWildcardType(avModel, null));
-        return context.processingEnvironment().getTypeUtils().isSubtype(getter.getReturnType(), parameterizedList);
+        return ClassName.get(avTypeString.substring(0, packageNameLength - 1), prefix + enclosedName);
     }
 
-    private static MethodSpec createAutoValueConstructor(Context context) {
+    private static MethodSpec createAutoValueConstructor(List<RealmProperty> properties) {
         List<ParameterSpec> params = new ArrayList<>();
-        for (Map.Entry<String, ExecutableElement> entry : context.properties().entrySet()) {
-            TypeName typeName = TypeName.get(entry.getValue().getReturnType());
-            params.add(ParameterSpec.builder(typeName, entry.getKey()).build());
+        List<String> names = new ArrayList<>();
+        for (RealmProperty property : properties) {
+            params.add(ParameterSpec.builder(property.type, property.name).build());
+            names.add(property.name);
         }
 
         StringBuilder body = new StringBuilder("super(");
-        for (int i = context.properties().size(); i > 0; i--) {
+        for (int i = properties.size(); i > 0; i--) {
             body.append("$N");
             if (i > 1) body.append(", ");
         }
@@ -192,72 +1176,633 @@ public class AutoValueRealmExtension extends AutoValueExtension {
 
         return MethodSpec.constructorBuilder()
                 .addParameters(params)
-                .addStatement(body.toString(), context.properties().keySet().toArray())
+                .addStatement(body.toString(), names.toArray())
                 .build();
     }
 
-    private MethodSpec createRealmToModelMethod(Context context) {
-        StringBuilder returnStatement = new StringBuilder("return new $T(");
-        List<String> arguments = new ArrayList<>();
-        List<ClassName> externalClassesNames = new ArrayList<>();
-        externalClassesNames.add(getAvImplType(context));
-        for (Map.Entry<String, ExecutableElement> entry : context.properties().entrySet()) {
-            String arg;
-            if (isOtherAvModel(context, entry.getValue())) {
-                arg = entry.getKey() + ".toModel()"; // We need to transform the field
-            } else if (isListOfOtherAvModel(context, entry.getValue())) {
-                externalClassesNames.add(avRealmHelper);
-                arg = "$T.fromRealmModels(" + entry.getKey() + ")";
+    /**
+     * @param withConversionContext true to create the overload converting nested Realm objects through an
+     *                              {@link AvConversionContext}
+     */
+    private MethodSpec createRealmToModelMethod(Context context, List<RealmProperty> properties, boolean withConversionContext) {
+        CodeBlock.Builder arguments = CodeBlock.builder();
+        for (int i = 0; i < properties.size(); i++) {
+            arguments.add(i == 0 ? "$L" : ", $L", getToModelValue(properties.get(i), withConversionContext));
+        }
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(TO_MODEL_METHOD_NAME)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .returns(getAvObjectType(context));
+        if (withConversionContext) {
+            builder.addParameter(AvConversionContext.class, CONVERSION_CONTEXT_PARAMETER_NAME);
+        }
+        builder.addStatement("return new $T($L)", getAvImplType(context), arguments.build());
+        return builder.build();
+    }
+
+    /**
+     * @return the value of a property read from the fields of the Realm class, as passed to the AutoValue constructor
+     */
+    private CodeBlock getToModelValue(RealmProperty property, boolean withConversionContext) {
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            // We need to transform the field
+            return withConversionContext
+                    ? CodeBlock.of("$N.toModel($N)", CONVERSION_CONTEXT_PARAMETER_NAME, property.name)
+                    : CodeBlock.of("$N.toModel()", property.name);
+        } else if (property.kind == RealmProperty.Kind.EMBEDDED) {
+            // Rebuild the child from its fields
+            CodeBlock.Builder embeddedValue = CodeBlock.builder().add("new $T(", getEmbeddedImplType(property));
+            for (int i = 0; i < property.embeddedProperties.size(); i++) {
+                embeddedValue.add(i == 0 ? "$L" : ", $L", getToModelValue(property.embeddedProperties.get(i), withConversionContext));
+            }
+            return embeddedValue.add(")").build();
+        } else if (property.kind == RealmProperty.Kind.PACKED_ARRAY) {
+            return CodeBlock.of("$T.$N($N)", avPackedArrays, property.unpackMethodName(), property.name);
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            return CodeBlock.of("$N($N)", property.decoderName(), property.name);
+        } else if (property.isIntern) {
+            return CodeBlock.of("$T.getInstance().intern($N)", avInternPool, property.name);
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            if (property.isLazy) {
+                return CodeBlock.of("$T.lazyFromRealmModels($N)", avRealmHelper, property.name);
+            } else if (withConversionContext) {
+                return CodeBlock.of("$T.fromRealmModels($N, $N)", avRealmHelper, property.name, CONVERSION_CONTEXT_PARAMETER_NAME);
+            }
+            return CodeBlock.of("$T.fromRealmModels($N)", avRealmHelper, property.name);
+        }
+        return CodeBlock.of("$N", property.name); // Just use the field
+    }
+
+    /**
+     * Creates $CodecFoo, writing the models to a ByteBuffer and reading them back. The version of the layout is the
+     * hash of the names and types of the properties, so that adding, removing or changing a property changes it.
+     */
+    private void createCodecClass(Context context, List<RealmProperty> properties) {
+        ClassName avObjectType = getAvObjectType(context);
+        ClassName codecType = getCodecType(context);
+        StringBuilder layout = new StringBuilder();
+        for (RealmProperty property : getRealmFields(properties)) {
+            layout.append(property.name).append(':').append(property.type).append(';');
+        }
+
+        MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(avObjectType, "model")
+                .addParameter(ByteBuffer.class, "buffer")
+                .beginControlFlow("if (model == null)")
+                .addStatement("buffer.put((byte) 0)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("buffer.put((byte) 1)")
+                .addStatement("buffer.putInt(VERSION)")
+                .addStatement("int lengthPosition = buffer.position()")
+                .addStatement("buffer.putInt(0)");
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        List<MethodSpec> chunkMethods = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder chunkBuilder = write;
+            if (chunks.size() > 1) {
+                chunkBuilder = MethodSpec.methodBuilder("write" + i)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameter(avObjectType, "model")
+                        .addParameter(ByteBuffer.class, "buffer");
+                write.addStatement("$N(model, buffer)", "write" + i);
+            }
+            for (RealmProperty property : chunks.get(i)) {
+                CodeBlock value = CodeBlock.of("model.$N()", property.getterName());
+                if (property.kind == RealmProperty.Kind.EMBEDDED) {
+                    for (RealmProperty embeddedProperty : property.embeddedProperties) {
+                        chunkBuilder.addStatement("$L", getBinaryWrite(context, embeddedProperty, CodeBlock.of("$L.$N()", value, embeddedProperty.getterName())));
+                    }
+                } else {
+                    chunkBuilder.addStatement("$L", getBinaryWrite(context, property, value));
+                }
+            }
+            if (chunks.size() > 1) {
+                chunkMethods.add(chunkBuilder.build());
+            }
+        }
+        write.addStatement("buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4)");
+
+        CodeBlock.Builder arguments = CodeBlock.builder();
+        int fixedSize = 1 + 4 + 4;
+        List<CodeBlock> sizes = new ArrayList<>();
+        for (int i = 0; i < properties.size(); i++) {
+            RealmProperty property = properties.get(i);
+            CodeBlock value = CodeBlock.of("model.$N()", property.getterName());
+            if (property.kind == RealmProperty.Kind.EMBEDDED) {
+                CodeBlock.Builder embeddedArguments = CodeBlock.builder();
+                for (int j = 0; j < property.embeddedProperties.size(); j++) {
+                    RealmProperty embeddedProperty = property.embeddedProperties.get(j);
+                    embeddedArguments.add(j == 0 ? "$L" : ", $L", getBinaryRead(context, embeddedProperty));
+                    fixedSize += getFixedBinarySize(embeddedProperty);
+                    if (getFixedBinarySize(embeddedProperty) == 0) {
+                        sizes.add(getBinarySize(context, embeddedProperty, CodeBlock.of("$L.$N()", value, embeddedProperty.getterName())));
+                    }
+                }
+                arguments.add(i == 0 ? "new $T($L)" : ", new $T($L)", getEmbeddedImplType(property), embeddedArguments.build());
             } else {
-                arg = entry.getKey(); // Just use the field
+                arguments.add(i == 0 ? "$L" : ", $L", getBinaryRead(context, property));
+                fixedSize += getFixedBinarySize(property);
+                if (getFixedBinarySize(property) == 0) {
+                    sizes.add(getBinarySize(context, property, value));
+                }
+            }
+        }
+        MethodSpec.Builder sizeOf = MethodSpec.methodBuilder("sizeOf")
+                .addJavadoc("@return the number of bytes written by write()\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(int.class)
+                .addParameter(avObjectType, "model")
+                .beginControlFlow("if (model == null)")
+                .addStatement("return 1")
+                .endControlFlow()
+                .addStatement("int size = $L", fixedSize);
+        for (CodeBlock size : sizes) {
+            sizeOf.addStatement("size += $L", size);
+        }
+
+        ParameterizedTypeName codecInterfaceType = ParameterizedTypeName.get(ClassName.get(AvBinaryCodec.class), avObjectType);
+        TypeSpec codec = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(codecInterfaceType)
+                .addMethod(MethodSpec.methodBuilder("write")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(avObjectType, "model")
+                        .addParameter(ByteBuffer.class, "buffer")
+                        .addStatement("$T.write(model, buffer)", codecType)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("read")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(avObjectType)
+                        .addParameter(ByteBuffer.class, "buffer")
+                        .addStatement("return $T.read(buffer)", codecType)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("sizeOf")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(int.class)
+                        .addParameter(avObjectType, "model")
+                        .addStatement("return $T.sizeOf(model)", codecType)
+                        .build())
+                .build();
+
+        TypeSpec.Builder codecClassBuilder = TypeSpec.classBuilder(codecType.simpleName())
+                .addOriginatingElement(context.autoValueClass())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(int.class, "VERSION", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", layout.toString().hashCode())
+                        .build())
+                .addField(FieldSpec.builder(codecInterfaceType, "CODEC", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", codec)
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(write.build())
+                .addMethods(chunkMethods)
+                .addMethod(MethodSpec.methodBuilder("read")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(avObjectType)
+                        .addParameter(ByteBuffer.class, "buffer")
+                        .beginControlFlow("if (buffer.get() == 0)")
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .addStatement("int version = buffer.getInt()")
+                        .addStatement("int length = buffer.getInt()")
+                        .beginControlFlow("if (version != VERSION)")
+                        .addStatement("buffer.position(buffer.position() + length)")
+                        .addStatement("throw new $T($S + version + $S + VERSION)", IllegalStateException.class, avObjectType.simpleName() + " was written with version ", " instead of ")
+                        .endControlFlow()
+                        .addStatement("return new $T($L)", getAvImplType(context), arguments.build())
+                        .build())
+                .addMethod(sizeOf.addStatement("return size").build());
+        JavaFile file = JavaFile.builder(context.packageName(), codecClassBuilder.build()).build();
+        try {
+            file.writeTo(context.processingEnvironment().getFiler());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the statement writing a value of a property to the buffer
+     */
+    private CodeBlock getBinaryWrite(Context context, RealmProperty property, CodeBlock value) {
+        TypeName type = property.type;
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            return CodeBlock.of("$T.write($L, buffer)", getGeneratedTypeName(property.getter.getReturnType(), "$Codec"), value);
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            return CodeBlock.of("$T.putList(buffer, $L, $T.CODEC)", avByteBuffers, value, getGeneratedTypeName(getListGenericType(property.getter.getReturnType()), "$Codec"));
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            // Enums are written like they are stored, as their codes or ordinals
+            value = CodeBlock.of("$T.$N($L)", getRealmObjectType(context), property.encoderName(), value);
+            type = property.realmType;
+        }
+        if (type.equals(TypeName.BOOLEAN)) {
+            return CodeBlock.of("buffer.put($L ? (byte) 1 : (byte) 0)", value);
+        } else if (type.isPrimitive()) {
+            return CodeBlock.of("buffer.$N($L)", type.equals(TypeName.BYTE) ? "put" : "put" + getPrimitiveName(type), value);
+        }
+        return CodeBlock.of("$T.put(buffer, $L)", avByteBuffers, value);
+    }
+
+    /**
+     * @return the expression reading a value of a property from the buffer
+     */
+    private CodeBlock getBinaryRead(Context context, RealmProperty property) {
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            return CodeBlock.of("$T.read(buffer)", getGeneratedTypeName(property.getter.getReturnType(), "$Codec"));
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            return CodeBlock.of("$T.getList(buffer, $T.CODEC)", avByteBuffers, getGeneratedTypeName(getListGenericType(property.getter.getReturnType()), "$Codec"));
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            CodeBlock value = property.realmType.isPrimitive() ? CodeBlock.of("buffer.getInt()") : CodeBlock.of("$T.getInteger(buffer)", avByteBuffers);
+            return CodeBlock.of("$T.$N($L)", getRealmObjectType(context), property.decoderName(), value);
+        }
+        TypeName type = property.type;
+        if (type.equals(TypeName.BOOLEAN)) {
+            return CodeBlock.of("buffer.get() != 0");
+        } else if (type.isPrimitive()) {
+            return CodeBlock.of("buffer.$N()", type.equals(TypeName.BYTE) ? "get" : "get" + getPrimitiveName(type));
+        }
+        CodeBlock value;
+        if (type instanceof ArrayTypeName) {
+            TypeName componentType = ((ArrayTypeName) type).componentType;
+            value = CodeBlock.of("$T.$N(buffer)", avByteBuffers, componentType.equals(TypeName.BYTE) ? "getBytes" : "get" + getPrimitiveName(componentType) + "Array");
+        } else {
+            value = CodeBlock.of("$T.$N(buffer)", avByteBuffers, "get" + ((ClassName) type).simpleName());
+        }
+        return property.isIntern ? CodeBlock.of("$T.getInstance().intern($L)", avInternPool, value) : value;
+    }
+
+    /**
+     * @return the number of bytes a property always takes, or 0 if it depends on its value
+     */
+    private static int getFixedBinarySize(RealmProperty property) {
+        TypeName type = property.kind == RealmProperty.Kind.ENUM ? property.realmType : property.type;
+        if (property.kind == RealmProperty.Kind.VALUE || property.kind == RealmProperty.Kind.ENUM) {
+            if (type.equals(TypeName.BOOLEAN) || type.equals(TypeName.BYTE)) {
+                return 1;
+            } else if (type.equals(TypeName.SHORT) || type.equals(TypeName.CHAR)) {
+                return 2;
+            } else if (type.equals(TypeName.INT) || type.equals(TypeName.FLOAT)) {
+                return 4;
+            } else if (type.equals(TypeName.LONG) || type.equals(TypeName.DOUBLE)) {
+                return 8;
             }
-            arguments.add(arg);
         }
-        for (int i = 0; i < context.properties().size(); i++) {
-            if (i != 0) {
-                returnStatement.append(", ");
+        return 0;
+    }
+
+    /**
+     * @return the size of a value of a property whose size is not fixed
+     */
+    private CodeBlock getBinarySize(Context context, RealmProperty property, CodeBlock value) {
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            return CodeBlock.of("$T.sizeOf($L)", getGeneratedTypeName(property.getter.getReturnType(), "$Codec"), value);
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            return CodeBlock.of("$T.sizeOfList($L, $T.CODEC)", avByteBuffers, value, getGeneratedTypeName(getListGenericType(property.getter.getReturnType()), "$Codec"));
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            return CodeBlock.of("$T.sizeOf($T.$N($L))", avByteBuffers, getRealmObjectType(context), property.encoderName(), value);
+        }
+        return CodeBlock.of("$T.sizeOf($L)", avByteBuffers, value);
+    }
+
+    /**
+     * @return the name of a primitive type as used by the ByteBuffer methods, example: Int
+     */
+    private static String getPrimitiveName(TypeName type) {
+        String name = type.toString();
+        return name.substring(0, 1).toUpperCase() + name.substring(1);
+    }
+
+    /**
+     * @return the AutoValue classes nested in the class being processed that are annotated with @AvProjection
+     */
+    private static List<TypeElement> getProjections(Context context) {
+        List<TypeElement> projections = new ArrayList<>();
+        for (TypeElement type : ElementFilter.typesIn(context.autoValueClass().getEnclosedElements())) {
+            if (type.getAnnotation(AvProjection.class) != null) {
+                projections.add(type);
             }
-            returnStatement.append(arguments.get(i));
         }
-        returnStatement.append(")");
-        MethodSpec.Builder builder = MethodSpec.methodBuilder(TO_MODEL_METHOD_NAME)
-                .addAnnotation(Override.class)
+        return projections;
+    }
+
+    /**
+     * Creates the method converting the Realm object into a projection. Only the fields of the properties of the
+     * projection are read, each getter of the projection being matched with the getter of the same name of the model.
+     */
+    private MethodSpec createToProjectionMethod(Context context, List<RealmProperty> properties, TypeElement projection) {
+        Types typeUtils = context.processingEnvironment().getTypeUtils();
+        String projectionName = context.autoValueClass().getSimpleName() + "." + projection.getSimpleName();
+        if (projection.getAnnotation(AutoValue.class) == null) {
+            throw new IllegalArgumentException(projectionName + " is annotated with @AvProjection but is not an AutoValue class");
+        }
+        CodeBlock.Builder arguments = CodeBlock.builder();
+        List<ExecutableElement> getters = getGetters(projection, typeUtils);
+        for (int i = 0; i < getters.size(); i++) {
+            ExecutableElement getter = getters.get(i);
+            RealmProperty property = null;
+            for (RealmProperty candidate : properties) {
+                if (candidate.getterName().equals(getter.getSimpleName().toString())) {
+                    property = candidate;
+                    break;
+                }
+            }
+            String getterName = projectionName + "." + getter.getSimpleName() + "()";
+            if (property == null) {
+                throw new IllegalArgumentException(getterName + " does not match a property of " + context.autoValueClass().getSimpleName());
+            }
+            if (!typeUtils.isSameType(getter.getReturnType(), property.getter.getReturnType())) {
+                throw new IllegalArgumentException(getterName + " returns " + getter.getReturnType() + " but " + context.autoValueClass().getSimpleName() + "." + property.getterName() + "() returns " + property.type);
+            }
+            if (isNullable(property.getter) && !isNullable(getter)) {
+                throw new IllegalArgumentException(getterName + " projects a @Nullable property but is not @Nullable");
+            }
+            arguments.add(i == 0 ? "$L" : ", $L", getToModelValue(property, false));
+        }
+        return MethodSpec.methodBuilder("to" + projection.getSimpleName())
+                .addJavadoc("@return a $L read from the fields of its properties only\n", projectionName)
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .returns(getAvObjectType(context))
-                .addStatement(returnStatement.toString(), externalClassesNames.toArray());
-        return builder.build();
+                .returns(ClassName.get(projection))
+                .addStatement("return new $T($L)", getGeneratedTypeName(projection.asType(), "AutoValue_"), arguments.build())
+                .build();
+    }
+
+    /**
+     * Splits the properties of wide models into chunks, each one written by a helper method of its own. HotSpot does
+     * not compile methods of more than 8000 bytes of bytecode (HugeMethodLimit) and only inlines small ones, so a
+     * statement per property would leave the conversions of models with a few hundred properties interpreted.
+     */
+    private static List<List<RealmProperty>> getChunks(List<RealmProperty> properties) {
+        List<List<RealmProperty>> chunks = new ArrayList<>();
+        for (int i = 0; i < properties.size(); i += PROPERTIES_PER_METHOD) {
+            chunks.add(properties.subList(i, Math.min(i + PROPERTIES_PER_METHOD, properties.size())));
+        }
+        return chunks;
     }
 
-    private MethodSpec createToRealmObjectMethod(Context context) {
+    /**
+     * @param withConversionContext true to create the overload converting nested models through an
+     *                              {@link AvConversionContext}
+     */
+    private void addToRealmObjectMethod(TypeSpec.Builder subclass, Context context, List<RealmProperty> properties, boolean withConversionContext) {
         TypeName realmObjectType = getRealmObjectType(context);
         MethodSpec.Builder builder = MethodSpec.methodBuilder(TO_REALM_OBJECT_METHOD_NAME)
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .returns(realmObjectType)
-                .addStatement("$T realmObject = new $T()", realmObjectType, realmObjectType);
+                .returns(realmObjectType);
+        if (withConversionContext) {
+            builder.addParameter(AvConversionContext.class, CONVERSION_CONTEXT_PARAMETER_NAME);
+        }
+        builder.addStatement("$T realmObject = new $T()", realmObjectType, realmObjectType);
 
-        for (Map.Entry<String, ExecutableElement> property : context.properties().entrySet()) {
-            if (isOtherAvModel(context, property.getValue())) {
-                builder.addStatement("realmObject.$N($N().toRealmObject())", getSetterName(property.getKey()), property.getValue().getSimpleName().toString());
-            } else if (isListOfOtherAvModel(context, property.getValue())) {
-                builder.addStatement("realmObject.$N($T.toRealmModels($N()))", getSetterName(property.getKey()), avRealmHelper, property.getValue().getSimpleName().toString());
-            } else {
-                builder.addStatement("realmObject.$N($N())", getSetterName(property.getKey()), property.getValue().getSimpleName().toString());
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        List<MethodSpec> chunkMethods = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder chunkBuilder = builder;
+            if (chunks.size() > 1) {
+                String chunkMethodName = TO_REALM_OBJECT_METHOD_NAME + i;
+                chunkBuilder = MethodSpec.methodBuilder(chunkMethodName)
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(realmObjectType, "realmObject");
+                if (withConversionContext) {
+                    chunkBuilder.addParameter(AvConversionContext.class, CONVERSION_CONTEXT_PARAMETER_NAME);
+                    builder.addStatement("$N(realmObject, $N)", chunkMethodName, CONVERSION_CONTEXT_PARAMETER_NAME);
+                } else {
+                    builder.addStatement("$N(realmObject)", chunkMethodName);
+                }
+            }
+            for (RealmProperty property : chunks.get(i)) {
+                addToRealmObjectStatements(chunkBuilder, context, property, withConversionContext);
+            }
+            if (chunks.size() > 1) {
+                chunkMethods.add(chunkBuilder.build());
             }
         }
 
         builder.addStatement("return realmObject");
-        return builder.build();
+        subclass.addMethod(builder.build()).addMethods(chunkMethods);
     }
 
-    private String getSetterName(String propertyName) {
-        return "set" + propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1);
+    private void addToRealmObjectStatements(MethodSpec.Builder builder, Context context, RealmProperty property, boolean withConversionContext) {
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            if (withConversionContext) {
+                builder.addStatement("realmObject.$N($N.toRealmObject($N()))", property.setterName(), CONVERSION_CONTEXT_PARAMETER_NAME, property.getterName());
+            } else {
+                builder.addStatement("realmObject.$N($N().toRealmObject())", property.setterName(), property.getterName());
+            }
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            if (withConversionContext) {
+                builder.addStatement("realmObject.$N(new $T($T.toRealmModels($N(), $T.class, $N)))", property.setterName(), property.realmType, avRealmHelper, property.getterName(), property.otherRealmType, CONVERSION_CONTEXT_PARAMETER_NAME);
+            } else {
+                builder.addStatement("realmObject.$N(new $T($T.toRealmModels($N(), $T.class)))", property.setterName(), property.realmType, avRealmHelper, property.getterName(), property.otherRealmType);
+            }
+        } else if (property.kind == RealmProperty.Kind.EMBEDDED) {
+            for (RealmProperty embeddedProperty : property.embeddedProperties) {
+                builder.addStatement("realmObject.$N($N().$N())", embeddedProperty.setterName(), property.getterName(), embeddedProperty.getterName());
+            }
+        } else if (property.kind == RealmProperty.Kind.PACKED_ARRAY) {
+            builder.addStatement("realmObject.$N($T.pack($N()))", property.setterName(), avPackedArrays, property.getterName());
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            builder.addStatement("realmObject.$N($T.$N($N()))", property.setterName(), getRealmObjectType(context), property.encoderName(), property.getterName());
+        } else {
+            builder.addStatement("realmObject.$N($N())", property.setterName(), property.getterName());
+        }
+    }
+
+    /**
+     * Creates the method updating an existing Realm object from the model. Each property is compared with the Realm
+     * object first, and only written if it changed. Linked Realm objects and lists of the same size are updated in place,
+     * other links are replaced by Realm objects copied into the Realm, as a managed target only accepts managed links.
+     */
+    private void addApplyToMethod(TypeSpec.Builder subclass, Context context, List<RealmProperty> properties) {
+        TypeName realmObjectType = getRealmObjectType(context);
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(APPLY_TO_METHOD_NAME)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addParameter(realm, "realm")
+                .addParameter(realmObjectType, "target");
+
+        List<List<RealmProperty>> chunks = getChunks(properties);
+        List<MethodSpec> chunkMethods = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            MethodSpec.Builder chunkBuilder = builder;
+            if (chunks.size() > 1) {
+                String chunkMethodName = APPLY_TO_METHOD_NAME + i;
+                chunkBuilder = MethodSpec.methodBuilder(chunkMethodName)
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(realm, "realm")
+                        .addParameter(realmObjectType, "target");
+                builder.addStatement("$N(realm, target)", chunkMethodName);
+            }
+            for (RealmProperty property : chunks.get(i)) {
+                addApplyToStatements(chunkBuilder, context, property);
+            }
+            if (chunks.size() > 1) {
+                chunkMethods.add(chunkBuilder.build());
+            }
+        }
+        subclass.addMethod(builder.build()).addMethods(chunkMethods);
+    }
+
+    private void addApplyToStatements(MethodSpec.Builder builder, Context context, RealmProperty property) {
+        if (property.isPrimaryKey) {
+            // The target is the row of the same key, and Realm rejects changing the key of a managed object
+            return;
+        }
+        String getter = property.getterName();
+        String realmGetter = property.realmGetterName();
+        if (property.kind == RealmProperty.Kind.AV_MODEL) {
+            String copyMethodName = getCopyToRealmMethodName(context, property.getter.getReturnType());
+            builder.beginControlFlow("if (!$T.applyTo(realm, $N(), target.$N()))", avRealmHelper, getter, realmGetter)
+                    .addStatement("target.$N($N() == null ? null : realm.$N($N().toRealmObject()))", property.setterName(), getter, copyMethodName, getter);
+        } else if (property.kind == RealmProperty.Kind.AV_MODEL_LIST) {
+            String copyMethodName = getCopyToRealmMethodName(context, getListGenericType(property.getter.getReturnType()));
+            String realmObjects = property.name + "RealmObjects";
+            builder.addStatement("$T[] $N = $T.applyToAll(realm, $N(), target.$N(), $T.class)", property.otherRealmType, realmObjects, avRealmHelper, getter, realmGetter, property.otherRealmType)
+                    .beginControlFlow("if ($N != null)", realmObjects)
+                    .beginControlFlow("for (int i = 0; i < $N.length; i++)", realmObjects)
+                    .beginControlFlow("if ($N[i] == null)", realmObjects)
+                    .addStatement("$N[i] = realm.$N($N().get(i).toRealmObject())", realmObjects, copyMethodName, getter)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("target.$N(new $T($N))", property.setterName(), property.realmType, realmObjects);
+        } else if (property.kind == RealmProperty.Kind.EMBEDDED) {
+            for (RealmProperty embeddedProperty : property.embeddedProperties) {
+                addApplyValue(builder, embeddedProperty, CodeBlock.of("$N().$N()", getter, embeddedProperty.getterName()));
+            }
+            return;
+        } else if (property.kind == RealmProperty.Kind.PACKED_ARRAY) {
+            // Compares with the packed field without unpacking it
+            builder.beginControlFlow("if (!$T.equal($N(), target.$N()))", avPackedArrays, getter, realmGetter)
+                    .addStatement("target.$N($T.pack($N()))", property.setterName(), avPackedArrays, getter);
+        } else if (property.kind == RealmProperty.Kind.ENUM) {
+            // Enum constants are compared by identity, decoding the field is an array or a switch lookup
+            builder.beginControlFlow("if ($N() != $T.$N(target.$N()))", getter, getRealmObjectType(context), property.decoderName(), realmGetter)
+                    .addStatement("target.$N($T.$N($N()))", property.setterName(), getRealmObjectType(context), property.encoderName(), getter);
+        } else {
+            addApplyValue(builder, property, CodeBlock.of("$N()", getter));
+            return;
+        }
+        builder.endControlFlow();
+    }
+
+    /**
+     * @return the method of Realm copying a linked Realm object into it: copyToRealmOrUpdate() if the linked model has a
+     * primary key, so that an existing row is updated, copyToRealm() otherwise as Realm rejects updates without one
+     */
+    private static String getCopyToRealmMethodName(Context context, TypeMirror avType) {
+        Types typeUtils = context.processingEnvironment().getTypeUtils();
+        Elements elementUtils = context.processingEnvironment().getElementUtils();
+        TypeElement avElement = (TypeElement) typeUtils.asElement(avType);
+        for (ExecutableElement method : ElementFilter.methodsIn(elementUtils.getAllMembers(avElement))) {
+            if (method.getAnnotation(AvPrimaryKey.class) != null) {
+                return "copyToRealmOrUpdate";
+            }
+        }
+        return "copyToRealm";
+    }
+
+    /**
+     * Adds the statements writing a value to the target of applyTo() if it differs from the value in the model.
+     */
+    private void addApplyValue(MethodSpec.Builder builder, RealmProperty property, CodeBlock value) {
+        builder.beginControlFlow("if ($L)", getChangedCondition(property, value, CodeBlock.of("target.$N()", property.realmGetterName())))
+                .addStatement("target.$N($L)", property.setterName(), value)
+                .endControlFlow();
+    }
+
+    /**
+     * @return the condition comparing two values of a property, true if they differ. Floating point values are
+     * compared like their boxed equals(), arrays by content and other objects with equals()
+     */
+    private CodeBlock getChangedCondition(RealmProperty property, CodeBlock a, CodeBlock b) {
+        TypeKind kind = property.getter.getReturnType().getKind();
+        if (kind == TypeKind.FLOAT || kind == TypeKind.DOUBLE) {
+            return CodeBlock.of("$T.compare($L, $L) != 0", kind == TypeKind.FLOAT ? Float.class : Double.class, a, b);
+        } else if (kind.isPrimitive()) {
+            return CodeBlock.of("$L != $L", a, b);
+        } else if (kind == TypeKind.ARRAY) {
+            return CodeBlock.of("!$T.equals($L, $L)", Arrays.class, a, b);
+        }
+        return CodeBlock.of("!$T.equal($L, $L)", avRealmHelper, a, b);
+    }
+
+    /**
+     * Creates a static method of the public Realm class converting a batch of models, so that code outside the package
+     * of the model, like a datastore, can call it. The loop calls toRealmObject() on a single concrete type, so the call
+     * site stays monomorphic, unlike a shared loop going through the AvModel interface. Like
+     * {@link AvRealmHelper#toRealmModels(List, Class)}, random access lists are indexed rather than iterated.
+     */
+    private MethodSpec createToRealmObjectsMethod(Context context) {
+        ClassName avObjectType = getAvObjectType(context);
+        ClassName realmObjectType = getRealmObjectType(context);
+        TypeName realmObjectListType = ParameterizedTypeName.get(ClassName.get(List.class), realmObjectType);
+        return MethodSpec.methodBuilder(TO_REALM_OBJECTS_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(realmObjectListType)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(List.class), avObjectType), "models")
+                .addStatement("int size = models.size()")
+                .addStatement("$T realmObjects = new $T(size)", realmObjectListType, ParameterizedTypeName.get(ClassName.get(ArrayList.class), realmObjectType))
+                .beginControlFlow("if (models instanceof $T)", RandomAccess.class)
+                .beginControlFlow("for (int i = 0; i < size; i++)")
+                .addStatement("realmObjects.add(models.get(i).$N())", TO_REALM_OBJECT_METHOD_NAME)
+                .endControlFlow()
+                .nextControlFlow("else")
+                .beginControlFlow("for ($T model : models)", avObjectType)
+                .addStatement("realmObjects.add(model.$N())", TO_REALM_OBJECT_METHOD_NAME)
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return realmObjects")
+                .build();
+    }
+
+    /**
+     * Creates a static method converting a batch of Realm objects. toModel() is final on the Realm object class, so
+     * the calls in the loop are not dispatched through the AvRealmModel interface. Random access lists are indexed
+     * rather than iterated, like in toRealmObjects().
+     */
+    private MethodSpec createToModelsMethod(Context context) {
+        ClassName avObjectType = getAvObjectType(context);
+        ClassName realmObjectType = getRealmObjectType(context);
+        TypeName modelListType = ParameterizedTypeName.get(ClassName.get(List.class), avObjectType);
+        TypeName modelArrayListType = ParameterizedTypeName.get(ClassName.get(ArrayList.class), avObjectType);
+        TypeName realmObjectListType = ParameterizedTypeName.get(ClassName.get(List.class), realmObjectType);
+        return MethodSpec.methodBuilder(TO_MODELS_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(modelListType)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Iterable.class), realmObjectType), "realmObjects")
+                .beginControlFlow("if (realmObjects instanceof $T && realmObjects instanceof $T)", RandomAccess.class, List.class)
+                .addStatement("$T list = ($T) realmObjects", realmObjectListType, realmObjectListType)
+                .addStatement("int size = list.size()")
+                .addStatement("$T models = new $T(size)", modelListType, modelArrayListType)
+                .beginControlFlow("for (int i = 0; i < size; i++)")
+                .addStatement("models.add(list.get(i).$N())", TO_MODEL_METHOD_NAME)
+                .endControlFlow()
+                .addStatement("return models")
+                .endControlFlow()
+                .addStatement("$T models = realmObjects instanceof $T ? new $T((($T<?>) realmObjects).size()) : new $T()",
+                        modelListType, Collection.class, modelArrayListType, Collection.class, modelArrayListType)
+                .beginControlFlow("for ($T realmObject : realmObjects)", realmObjectType)
+                .addStatement("models.add(realmObject.$N())", TO_MODEL_METHOD_NAME)
+                .endControlFlow()
+                .addStatement("return models")
+                .build();
     }
 
     private ClassName getRealmObjectType(Context context) {
         return ClassName.get(context.packageName(), "$Realm" + getClassNameWithEnclosingClasses(context.autoValueClass(), "_"));
     }
 
+    private ClassName getLiveModelType(Context context) {
+        return ClassName.get(context.packageName(), "$Live" + getClassNameWithEnclosingClasses(context.autoValueClass(), "_"));
+    }
+
+    private ClassName getCodecType(Context context) {
+        return ClassName.get(context.packageName(), "$Codec" + getClassNameWithEnclosingClasses(context.autoValueClass(), "_"));
+    }
+
     private ClassName getAvObjectType(Context context) {
         return ClassName.get(context.packageName(), getClassNameWithEnclosingClasses(context.autoValueClass(), "."));
     }
@@ -0,0 +1,271 @@
+package com.remind101.auto.value.realm;
+
+import com.google.auto.service.AutoService;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the {@link AvSchemaRegistry} of a compilation. The Realm classes written by {@link AutoValueRealmExtension}
+ * are collected as they show up in the rounds following the AutoValue ones, and the registry is written in the first
+ * round where every AutoValue model seen so far has its Realm class, so it is still compiled like any other source
+ * instead of being generated in the last round. Nothing is processed unless the {@value #REGISTRY_OPTION} option names
+ * the registry class, as the registry depends on every model of the compilation.
+ */
+@AutoService(Processor.class)
+public class AvSchemaRegistryProcessor extends AbstractProcessor {
+    static final String REGISTRY_OPTION = "avrealm.registry";
+    private static final String AUTO_VALUE_ANNOTATION = "com.google.auto.value.AutoValue";
+    private static final String GRADLE_ISOLATING_OPTION = "org.gradle.annotation.processing.isolating";
+    private static final String GRADLE_AGGREGATING_OPTION = "org.gradle.annotation.processing.aggregating";
+
+    /**
+     * The schemas of the Realm classes found so far, by class name so the registry does not depend on the order of the
+     * rounds. They are created as soon as a class is found, elements are not meant to outlive their round
+     */
+    private final TreeMap<String, Schema> schemas = new TreeMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+    /**
+     * The names of the Realm classes the AutoValue models found so far will get
+     */
+    private final Set<String> expectedSchemas = new HashSet<>();
+    private boolean written;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        if (!processingEnv.getOptions().containsKey(REGISTRY_OPTION)) {
+            return Collections.emptySet();
+        }
+        // The Realm classes are generated without annotations the processor could ask for
+        return Collections.singleton("*");
+    }
+
+    /**
+     * Declared as a dynamic processor to Gradle in META-INF/gradle/incremental.annotation.processors: it does nothing,
+     * so it is isolating, unless the registry is requested, which depends on every model
+     */
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> options = new HashSet<>();
+        options.add(REGISTRY_OPTION);
+        boolean aggregating = processingEnv != null && processingEnv.getOptions().containsKey(REGISTRY_OPTION);
+        options.add(aggregating ? GRADLE_AGGREGATING_OPTION : GRADLE_ISOLATING_OPTION);
+        return options;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        String registryName = processingEnv.getOptions().get(REGISTRY_OPTION);
+        if (registryName == null || written) {
+            return false;
+        }
+        if (!roundEnv.processingOver()) {
+            TypeElement autoValue = processingEnv.getElementUtils().getTypeElement(AUTO_VALUE_ANNOTATION);
+            if (autoValue != null) {
+                for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(autoValue))) {
+                    if (hasToRealmObjectMethod(type)) {
+                        expectedSchemas.add(getRealmClassName(type));
+                    }
+                }
+            }
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                if (getModelType(type) != null) {
+                    schemas.put(type.getQualifiedName().toString(), createSchema(type));
+                    originatingElements.add(type);
+                }
+            }
+            if (!schemas.keySet().containsAll(expectedSchemas)) {
+                // Realm classes are still to come from the AutoValue rounds
+                return false;
+            }
+        }
+        // Only falls back to the last round when a model never got its Realm class, which already failed the build
+        written = true;
+        int lastDot = registryName.lastIndexOf('.');
+        if (lastDot == -1) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, REGISTRY_OPTION + " must be a fully qualified class name: " + registryName);
+            return false;
+        }
+        writeRegistry(registryName.substring(0, lastDot), registryName.substring(lastDot + 1));
+        return false;
+    }
+
+    private void writeRegistry(String packageName, String simpleName) {
+        CodeBlock.Builder arguments = CodeBlock.builder();
+        boolean first = true;
+        for (Schema schema : schemas.values()) {
+            arguments.add(first ? "\n$L" : ",\n$L", schema.toCode(packageName));
+            first = false;
+        }
+        ClassName registry = ClassName.get(AvSchemaRegistry.class);
+        TypeSpec.Builder registryClass = TypeSpec.classBuilder(simpleName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(registry, "REGISTRY", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T($>$>$L$<$<)", registry, arguments.build())
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+        for (Element element : originatingElements) {
+            registryClass.addOriginatingElement(element);
+        }
+        try {
+            JavaFile.builder(packageName, registryClass.build()).build().writeTo(processingEnv.getFiler());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + packageName + "." + simpleName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the AvModelSchema of a Realm class, read from its instance fields and their annotations
+     */
+    private Schema createSchema(TypeElement realmClass) {
+        Types typeUtils = processingEnv.getTypeUtils();
+        String primaryKey = null;
+        List<String> indexedFields = new ArrayList<>();
+        List<String> fieldNames = new ArrayList<>();
+        List<TypeName> fieldTypes = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(realmClass.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            if (hasAnnotation(field, "io.realm.annotations.PrimaryKey")) {
+                primaryKey = name;
+            }
+            if (hasAnnotation(field, "io.realm.annotations.Index")) {
+                indexedFields.add(name);
+            }
+            fieldNames.add(name);
+            fieldTypes.add(TypeName.get(typeUtils.erasure(field.asType())));
+        }
+
+        CodeBlock.Builder schema = CodeBlock.builder()
+                .add(", $T.class, ", ClassName.get(realmClass))
+                .add(primaryKey == null ? "null" : "$S", primaryKey)
+                .add(", new $T[]{", String.class);
+        for (int i = 0; i < indexedFields.size(); i++) {
+            schema.add(i == 0 ? "$S" : ", $S", indexedFields.get(i));
+        }
+        schema.add("}, new $T[]{", String.class);
+        for (int i = 0; i < fieldNames.size(); i++) {
+            schema.add(i == 0 ? "$S" : ", $S", fieldNames.get(i));
+        }
+        schema.add("}, new $T<?>[]{", Class.class);
+        for (int i = 0; i < fieldTypes.size(); i++) {
+            schema.add(i == 0 ? "$T.class" : ", $T.class", fieldTypes.get(i));
+        }
+        TypeElement modelClass = (TypeElement) typeUtils.asElement(getModelType(realmClass));
+        String modelPackage = processingEnv.getElementUtils().getPackageOf(modelClass).getQualifiedName().toString();
+        CodeBlock modelClassReference = CodeBlock.of("$T.class", ClassName.get(modelClass));
+        if (!AutoValueRealmExtension.isPublic(modelClass)) {
+            modelClassReference = CodeBlock.of("$T.$N", ClassName.get(realmClass), AutoValueRealmExtension.MODEL_CLASS_FIELD_NAME);
+        }
+        return new Schema(modelPackage, CodeBlock.of("$T.class", ClassName.get(modelClass)), modelClassReference, schema.add("}").build());
+    }
+
+    /**
+     * @return the model type of a class implementing AvRealmModel, or null for other classes
+     */
+    private TypeMirror getModelType(TypeElement type) {
+        for (TypeMirror superinterface : type.getInterfaces()) {
+            DeclaredType declaredType = (DeclaredType) superinterface;
+            Element element = declaredType.asElement();
+            if (element instanceof TypeElement
+                    && ((TypeElement) element).getQualifiedName().contentEquals(AvRealmModel.class.getName())
+                    && declaredType.getTypeArguments().size() == 1) {
+                return declaredType.getTypeArguments().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if AutoValueRealmExtension applies to an AutoValue class, see
+     * {@link AutoValueRealmExtension#applicable}
+     */
+    private boolean hasToRealmObjectMethod(TypeElement type) {
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.ABSTRACT)
+                    && method.getSimpleName().contentEquals(AutoValueRealmExtension.TO_REALM_OBJECT_METHOD_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the qualified name of the Realm class written for an AutoValue class, example: my.package.$RealmFoo_Info
+     */
+    private String getRealmClassName(TypeElement type) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String enclosedName = type.getSimpleName().toString();
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            enclosedName = enclosing.getSimpleName() + "_" + enclosedName;
+        }
+        return (packageName.isEmpty() ? "" : packageName + ".") + "$Realm" + enclosedName;
+    }
+
+    /**
+     * The creation of an AvModelSchema, which refers to a model the registry cannot access, like a package-private
+     * AutoValue class in another package, through the constant its public Realm class holds.
+     */
+    private static final class Schema {
+        final String modelPackage;
+        final CodeBlock modelClass;
+        final CodeBlock publicModelClass;
+        final CodeBlock arguments;
+
+        Schema(String modelPackage, CodeBlock modelClass, CodeBlock publicModelClass, CodeBlock arguments) {
+            this.modelPackage = modelPackage;
+            this.modelClass = modelClass;
+            this.publicModelClass = publicModelClass;
+            this.arguments = arguments;
+        }
+
+        CodeBlock toCode(String registryPackage) {
+            CodeBlock model = modelPackage.equals(registryPackage) ? modelClass : publicModelClass;
+            return CodeBlock.of("new $T($L$L)", AvModelSchema.class, model, arguments);
+        }
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+package com.remind101.auto.value.realm;
+
+import com.squareup.javapoet.TypeName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.ArrayType;
+
+/**
+ * A property of the AvModel being processed. Properties are classified once per class, so that the code generators
+ * don't query the type utilities again for every method they create.
+ */
+final class RealmProperty {
+    enum Kind {
+        /** A primitive or a type Realm supports natively, stored as is */
+        VALUE,
+        /** Another AvModel, stored as a link to its Realm class */
+        AV_MODEL,
+        /** A List of other AvModels, stored as a RealmList of their Realm class */
+        AV_MODEL_LIST,
+        /** Another AvModel annotated with @AvEmbedded, stored in prefixed fields of the Realm class */
+        EMBEDDED,
+        /** An int[], long[] or double[], packed into a byte[] field by AvPackedArrays */
+        PACKED_ARRAY,
+        /** An enum, stored as an int: the @AvCode of the constant if the enum has codes, its ordinal otherwise */
+        ENUM,
+        NOT_SUPPORTED
+    }
+
+    final String name;
+    final ExecutableElement getter;
+    final Kind kind;
+    /** The type of the property in the AutoValue class */
+    final TypeName type;
+    /** The type of the field in the Realm class */
+    final TypeName realmType;
+    /** The Realm class of the linked AvModel, or of the elements of the list. Null for values */
+    final TypeName otherRealmType;
+    final boolean isPrimaryKey;
+    final boolean isIndex;
+    final boolean isLazy;
+    final boolean isEmbedded;
+    final boolean isIntern;
+    /** The unit of a property annotated with @AvTimestamp, null for other properties */
+    final TimeUnit timestampUnit;
+    /** The properties of the child of an @AvEmbedded property, stored as fields of the Realm class. Empty otherwise */
+    final List<RealmProperty> embeddedProperties;
+    /** The @AvEmbedded property this property is a child of. Null for the properties of the class being processed */
+    final RealmProperty embeddingProperty;
+    /** The @AvCode of each constant of an enum, by constant name. Empty for enums stored by ordinal and other kinds */
+    final Map<String, Integer> enumCodes;
+
+    RealmProperty(String name, ExecutableElement getter, Kind kind, TypeName realmType, TypeName otherRealmType) {
+        this.name = name;
+        this.getter = getter;
+        this.kind = kind;
+        this.type = TypeName.get(getter.getReturnType());
+        this.realmType = realmType;
+        this.otherRealmType = otherRealmType;
+        this.isPrimaryKey = getter.getAnnotation(AvPrimaryKey.class) != null;
+        AvTimestamp timestamp = getter.getAnnotation(AvTimestamp.class);
+        // Timestamps are indexed, as they are mostly range filtered and sorted on
+        this.isIndex = getter.getAnnotation(AvIndex.class) != null || (timestamp != null && !isPrimaryKey);
+        this.isLazy = getter.getAnnotation(AvLazy.class) != null;
+        this.isEmbedded = getter.getAnnotation(AvEmbedded.class) != null;
+        this.isIntern = getter.getAnnotation(AvIntern.class) != null;
+        this.timestampUnit = timestamp == null ? null : timestamp.unit();
+        this.embeddedProperties = new ArrayList<>();
+        this.embeddingProperty = null;
+        this.enumCodes = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates a property of the child of an @AvEmbedded property. Its name is prefixed with the name of the
+     * embedding property, example: info_title
+     */
+    RealmProperty(RealmProperty embeddingProperty, String name, ExecutableElement getter, Kind kind, TypeName realmType) {
+        this.name = embeddingProperty.name + "_" + name;
+        this.getter = getter;
+        this.kind = kind;
+        this.type = TypeName.get(getter.getReturnType());
+        this.realmType = realmType;
+        this.otherRealmType = null;
+        this.isPrimaryKey = false;
+        this.isIndex = false;
+        this.isLazy = false;
+        this.isEmbedded = false;
+        this.isIntern = getter.getAnnotation(AvIntern.class) != null;
+        this.timestampUnit = null;
+        this.embeddedProperties = Collections.emptyList();
+        this.embeddingProperty = embeddingProperty;
+        this.enumCodes = Collections.emptyMap();
+    }
+
+    String getterName() {
+        return getter.getSimpleName().toString();
+    }
+
+    String setterName() {
+        return "set" + capitalizedName();
+    }
+
+    /**
+     * @return the name of the getter of the field in the Realm class
+     */
+    String realmGetterName() {
+        return "get" + capitalizedName();
+    }
+
+    /**
+     * @return the name of the constant holding the name of the field in the Realm class, example: FIELD_NUM_APP_LAUNCHES
+     */
+    String fieldConstantName() {
+        StringBuilder builder = new StringBuilder("FIELD_");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))) {
+                builder.append('_');
+            }
+            builder.append(Character.toUpperCase(c));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the name of the constant holding the bit of the property in the result of diff(), example: CHANGED_STATUS
+     */
+    String changedConstantName() {
+        return "CHANGED_" + fieldConstantName().substring("FIELD_".length());
+    }
+
+    /**
+     * @return the name of the constant holding the cached values() of an enum, example: STATUS_VALUES
+     */
+    String enumValuesConstantName() {
+        return fieldConstantName().substring("FIELD_".length()) + "_VALUES";
+    }
+
+    /**
+     * @return the name of the static method of the Realm class converting an enum to the int stored in its field
+     */
+    String encoderName() {
+        return "encode" + capitalizedName();
+    }
+
+    /**
+     * @return the name of the static method of the Realm class converting the int stored in the field of an enum back
+     */
+    String decoderName() {
+        return "decode" + capitalizedName();
+    }
+
+    /**
+     * @return the name of the AvPackedArrays method decoding the field of a packed array, example: unpackInts
+     */
+    String unpackMethodName() {
+        return "unpack" + capitalizedComponentName() + "s";
+    }
+
+    /**
+     * @return the name of the AvJsonImporter method reading a packed array from JSON, example: nextIntArray
+     */
+    String nextArrayMethodName() {
+        return "next" + capitalizedComponentName() + "Array";
+    }
+
+    /**
+     * @return the name of the property in JSON: its name, without the prefix of the embedding property for embedded ones
+     */
+    String jsonName() {
+        return embeddingProperty == null ? name : name.substring(embeddingProperty.name.length() + 1);
+    }
+
+    private String capitalizedComponentName() {
+        String componentName = ((ArrayType) getter.getReturnType()).getComponentType().getKind().name().toLowerCase();
+        return componentName.substring(0, 1).toUpperCase() + componentName.substring(1);
+    }
+
+    private String capitalizedName() {
+        return name.substring(0, 1).toUpperCase() + name.substring(1);
+    }
+}
@@ -3,16 +3,58 @@ package com.remind101.auto.value.realm;
 import com.google.auto.value.processor.AutoValueProcessor;
 import com.google.testing.compile.JavaFileObjects;
 
+import io.realm.Realm;
+import io.realm.RealmList;
+import io.realm.RealmModel;
+import io.realm.RealmQuery;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
 
 import static com.google.common.truth.Truth.assertAbout;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
 
 public class AutoValueRealmExtensionTest {
+    /** Close to the 255 parameters the constructor AutoValue generates is limited to */
+    private static final int WIDE_MODEL_PROPERTY_COUNT = 250;
+    /** The bytecode size every generated method must stay under, far below the 8000 bytes of HugeMethodLimit */
+    private static final int MAX_METHOD_CODE_LENGTH = 2000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testEmptyClass() throws Exception {
         JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
@@ -27,24 +69,89 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
                 + "    @Override\n"
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test();\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test();\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(0);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 0);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test() {\n"
                 + "        super();\n"
                 + "    }\n"
@@ -54,6 +161,16 @@ public class AutoValueRealmExtensionTest {
                 + "        $RealmTest realmObject = new $RealmTest();\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -119,13 +236,28 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -134,15 +266,75 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -153,6 +345,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -164,6 +370,119 @@ public class AutoValueRealmExtensionTest {
                 .generatesSources(expectedRealmObject, expectedSource);
     }
 
+    @Test
+    public void testByteArray() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @SuppressWarnings(\"mutable\") abstract byte[] getData();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.Arrays;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_DATA = \"data\";\n"
+                + "    public static final int CHANGED_DATA = 0;\n"
+                + "    private byte[] data;\n"
+                + "\n"
+                + "    public byte[] getData() {\n"
+                + "        return data;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setData(byte[] data) {\n"
+                + "        this.data = data;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(data);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(data);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(previous.getData(), current.getData())) {\n"
+                + "            changed.set(CHANGED_DATA);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
     @Test
     public void testWeirdNames() throws Exception {
         JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
@@ -179,13 +498,28 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -194,15 +528,75 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -213,6 +607,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -242,24 +650,51 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
                 + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final String FIELD_NAME = \"name\";\n"
+                + "    public static final String FIELD_IS_VALID = \"isValid\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
+                + "    public static final int CHANGED_NAME = 1;\n"
+                + "    public static final int CHANGED_IS_VALID = 2;\n"
                 + "    private int value;\n"
                 + "    private String name;\n"
                 + "    private boolean isValid;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
                 + "\n"
+                + "    public String getName() {\n"
+                + "        return name;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setName(String name) {\n"
                 + "        this.name = name;\n"
                 + "    }\n"
                 + "\n"
+                + "    public boolean getIsValid() {\n"
+                + "        return isValid;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setIsValid(boolean isValid) {\n"
                 + "        this.isValid = isValid;\n"
                 + "    }\n"
@@ -268,16 +703,83 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value, name, isValid);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value, name, isValid);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(3);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 3);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getName(), current.getName())) {\n"
+                + "            changed.set(CHANGED_NAME);\n"
+                + "        }\n"
+                + "        if (previous.getIsValid() != current.getIsValid()) {\n"
+                + "            changed.set(CHANGED_IS_VALID);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "import java.lang.String;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test(int value, String name, boolean isValid) {\n"
                 + "        super(value, name, isValid);\n"
                 + "    }\n"
@@ -290,6 +792,28 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setIsValid(getIsValid());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setIsValid(getIsValid());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(getName(), target.getName())) {\n"
+                + "            target.setName(getName());\n"
+                + "        }\n"
+                + "        if (getIsValid() != target.getIsValid()) {\n"
+                + "            target.setIsValid(getIsValid());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -317,32 +841,121 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvKeyedModel;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import io.realm.RealmObject;\n"
                 + "import io.realm.annotations.PrimaryKey;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Object;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test>, AvKeyedModel {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    @PrimaryKey\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
                 + "\n"
                 + "    @Override\n"
+                + "    public Object getAvPrimaryKey() {\n"
+                + "        return getValue();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static $RealmTest findByValue(Realm realm, int value) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_VALUE, value).findFirst();\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvKeyedModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Object;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest>, AvKeyedModel {\n"
                 + "    AutoValue_Test(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -353,6 +966,22 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Object getAvPrimaryKey() {\n"
+                + "        return getValue();\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -380,15 +1009,32 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import io.realm.RealmResults;\n"
                 + "import io.realm.annotations.Index;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    @Index\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -397,15 +1043,79 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static RealmResults<$RealmTest> findAllByValue(Realm realm, int value) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_VALUE, value).findAll();\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -416,6 +1126,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -444,34 +1168,123 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvKeyedModel;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import io.realm.RealmObject;\n"
                 + "import io.realm.annotations.Index;\n"
                 + "import io.realm.annotations.PrimaryKey;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Object;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test>, AvKeyedModel {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    @PrimaryKey\n"
                 + "    @Index\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
                 + "\n"
                 + "    @Override\n"
+                + "    public Object getAvPrimaryKey() {\n"
+                + "        return getValue();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static $RealmTest findByValue(Realm realm, int value) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_VALUE, value).findFirst();\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvKeyedModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Object;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest>, AvKeyedModel {\n"
                 + "    AutoValue_Test(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -482,6 +1295,22 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Object getAvPrimaryKey() {\n"
+                + "        return getValue();\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -512,13 +1341,28 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -527,19 +1371,90 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedRealmObjectInner = JavaFileObjects.forSourceString("test/$RealmTest_Inner", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest_Inner extends RealmObject implements AvRealmModel<Test.Inner> {\n"
+                + "public class $RealmTest_Inner extends RealmObject implements AvRealmModel<Test.Inner>, AvContextualRealmModel<Test.Inner> {\n"
+                + "    public static final String FIELD_COUNT = \"count\";\n"
+                + "    public static final int CHANGED_COUNT = 0;\n"
                 + "    private long count;\n"
                 + "\n"
+                + "    public long getCount() {\n"
+                + "        return count;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setCount(long count) {\n"
                 + "        this.count = count;\n"
                 + "    }\n"
@@ -548,15 +1463,75 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test.Inner toModel() {\n"
                 + "        return new AutoValue_Test_Inner(count);\n"
                 + "    }\n"
-                + "}\n"
-        );
-
-        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
-                + "package test;\n"
-                + "\n"
-                + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "    @Override\n"
+                + "    public final Test.Inner toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test_Inner(count);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test.Inner> toModels(Iterable<$RealmTest_Inner> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest_Inner> list = (List<$RealmTest_Inner>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test.Inner> models = new ArrayList<Test.Inner>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test.Inner> models = realmObjects instanceof Collection ? new ArrayList<Test.Inner>(((Collection<?>) realmObjects).size()) : new ArrayList<Test.Inner>();\n"
+                + "        for ($RealmTest_Inner realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest_Inner> toRealmObjects(List<Test.Inner> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest_Inner> realmObjects = new ArrayList<$RealmTest_Inner>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test.Inner model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test.Inner previous, Test.Inner current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getCount() != current.getCount()) {\n"
+                + "            changed.set(CHANGED_COUNT);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Override;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -567,15 +1542,33 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSourceInner = JavaFileObjects.forSourceString("test/AutoValue_Test_Inner", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test_Inner extends $AutoValue_Test_Inner {\n"
+                + "final class AutoValue_Test_Inner extends $AutoValue_Test_Inner implements AvContextualModel<$RealmTest_Inner>, AvDiffingModel<Realm, $RealmTest_Inner> {\n"
                 + "    AutoValue_Test_Inner(long count) {\n"
                 + "        super(count);\n"
                 + "    }\n"
@@ -586,6 +1579,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setCount(getCount());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest_Inner toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest_Inner realmObject = new $RealmTest_Inner();\n"
+                + "        realmObject.setCount(getCount());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest_Inner target) {\n"
+                + "        if (getCount() != target.getCount()) {\n"
+                + "            target.setCount(getCount());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -616,13 +1623,29 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test> {\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private $RealmTest_Inner value;\n"
                 + "\n"
+                + "    public $RealmTest_Inner getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue($RealmTest_Inner value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -631,19 +1654,90 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test toModel() {\n"
                 + "        return new AutoValue_Test(value.toModel());\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(conversionContext.toModel(value));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getValue(), current.getValue())) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedRealmObjectInner = JavaFileObjects.forSourceString("test/$RealmTest_Inner", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmTest_Inner extends RealmObject implements AvRealmModel<Test.Inner> {\n"
+                + "public class $RealmTest_Inner extends RealmObject implements AvRealmModel<Test.Inner>, AvContextualRealmModel<Test.Inner> {\n"
+                + "    public static final String FIELD_COUNT = \"count\";\n"
+                + "    public static final int CHANGED_COUNT = 0;\n"
                 + "    private long count;\n"
                 + "\n"
+                + "    public long getCount() {\n"
+                + "        return count;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setCount(long count) {\n"
                 + "        this.count = count;\n"
                 + "    }\n"
@@ -652,15 +1746,76 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Test.Inner toModel() {\n"
                 + "        return new AutoValue_Test_Inner(count);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test.Inner toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test_Inner(count);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test.Inner> toModels(Iterable<$RealmTest_Inner> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest_Inner> list = (List<$RealmTest_Inner>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test.Inner> models = new ArrayList<Test.Inner>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test.Inner> models = realmObjects instanceof Collection ? new ArrayList<Test.Inner>(((Collection<?>) realmObjects).size()) : new ArrayList<Test.Inner>();\n"
+                + "        for ($RealmTest_Inner realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest_Inner> toRealmObjects(List<Test.Inner> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest_Inner> realmObjects = new ArrayList<$RealmTest_Inner>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test.Inner model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test.Inner previous, Test.Inner current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getCount() != current.getCount()) {\n"
+                + "            changed.set(CHANGED_COUNT);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
                 + "    AutoValue_Test(Test.Inner value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -671,15 +1826,33 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue().toRealmObject());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setValue(conversionContext.toRealmObject(getValue()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (!AvRealmHelper.applyTo(realm, getValue(), target.getValue())) {\n"
+                + "            target.setValue(getValue() == null ? null : realm.copyToRealm(getValue().toRealmObject()));\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSourceInner = JavaFileObjects.forSourceString("test/AutoValue_Test_Inner", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Test_Inner extends $AutoValue_Test_Inner {\n"
+                + "final class AutoValue_Test_Inner extends $AutoValue_Test_Inner implements AvContextualModel<$RealmTest_Inner>, AvDiffingModel<Realm, $RealmTest_Inner> {\n"
                 + "    AutoValue_Test_Inner(long count) {\n"
                 + "        super(count);\n"
                 + "    }\n"
@@ -690,6 +1863,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setCount(getCount());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest_Inner toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest_Inner realmObject = new $RealmTest_Inner();\n"
+                + "        realmObject.setCount(getCount());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest_Inner target) {\n"
+                + "        if (getCount() != target.getCount()) {\n"
+                + "            target.setCount(getCount());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -726,13 +1913,29 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject1 = JavaFileObjects.forSourceString("test/$RealmFoo", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo> {\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_BAR = \"bar\";\n"
+                + "    public static final int CHANGED_BAR = 0;\n"
                 + "    private $RealmBar bar;\n"
                 + "\n"
+                + "    public $RealmBar getBar() {\n"
+                + "        return bar;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setBar($RealmBar bar) {\n"
                 + "        this.bar = bar;\n"
                 + "    }\n"
@@ -741,19 +1944,90 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Foo toModel() {\n"
                 + "        return new AutoValue_Foo(bar.toModel());\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(conversionContext.toModel(bar));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBar(), current.getBar())) {\n"
+                + "            changed.set(CHANGED_BAR);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedRealmObject2 = JavaFileObjects.forSourceString("test/$RealmBar", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmBar extends RealmObject implements AvRealmModel<Bar> {\n"
+                + "public class $RealmBar extends RealmObject implements AvRealmModel<Bar>, AvContextualRealmModel<Bar> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -762,15 +2036,76 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Bar toModel() {\n"
                 + "        return new AutoValue_Bar(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Bar toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Bar(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Bar> toModels(Iterable<$RealmBar> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmBar> list = (List<$RealmBar>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Bar> models = new ArrayList<Bar>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Bar> models = realmObjects instanceof Collection ? new ArrayList<Bar>(((Collection<?>) realmObjects).size()) : new ArrayList<Bar>();\n"
+                + "        for ($RealmBar realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmBar> toRealmObjects(List<Bar> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmBar> realmObjects = new ArrayList<$RealmBar>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Bar model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Bar previous, Bar current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource1 = JavaFileObjects.forSourceString("test/AutoValue_Foo", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Foo extends $AutoValue_Foo {\n"
+                + "final class AutoValue_Foo extends $AutoValue_Foo implements AvContextualModel<$RealmFoo>, AvDiffingModel<Realm, $RealmFoo> {\n"
                 + "    AutoValue_Foo(Bar bar) {\n"
                 + "        super(bar);\n"
                 + "    }\n"
@@ -781,15 +2116,33 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setBar(getBar().toRealmObject());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmFoo toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmFoo realmObject = new $RealmFoo();\n"
+                + "        realmObject.setBar(conversionContext.toRealmObject(getBar()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmFoo target) {\n"
+                + "        if (!AvRealmHelper.applyTo(realm, getBar(), target.getBar())) {\n"
+                + "            target.setBar(getBar() == null ? null : realm.copyToRealm(getBar().toRealmObject()));\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource2 = JavaFileObjects.forSourceString("test/AutoValue_Bar", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Bar extends $AutoValue_Bar {\n"
+                + "final class AutoValue_Bar extends $AutoValue_Bar implements AvContextualModel<$RealmBar>, AvDiffingModel<Realm, $RealmBar> {\n"
                 + "    AutoValue_Bar(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -800,6 +2153,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmBar toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmBar realmObject = new $RealmBar();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmBar target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -837,14 +2204,30 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject1 = JavaFileObjects.forSourceString("test/$RealmFoo", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "import test2.$RealmBar;\n"
                 + "\n"
-                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo> {\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_BAR = \"bar\";\n"
+                + "    public static final int CHANGED_BAR = 0;\n"
                 + "    private $RealmBar bar;\n"
                 + "\n"
+                + "    public $RealmBar getBar() {\n"
+                + "        return bar;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setBar($RealmBar bar) {\n"
                 + "        this.bar = bar;\n"
                 + "    }\n"
@@ -853,19 +2236,90 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Foo toModel() {\n"
                 + "        return new AutoValue_Foo(bar.toModel());\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(conversionContext.toModel(bar));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBar(), current.getBar())) {\n"
+                + "            changed.set(CHANGED_BAR);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedRealmObject2 = JavaFileObjects.forSourceString("test2/$RealmBar", ""
                 + "package test2;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmBar extends RealmObject implements AvRealmModel<Bar> {\n"
+                + "public class $RealmBar extends RealmObject implements AvRealmModel<Bar>, AvContextualRealmModel<Bar> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -874,16 +2328,77 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Bar toModel() {\n"
                 + "        return new AutoValue_Bar(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Bar toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Bar(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Bar> toModels(Iterable<$RealmBar> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmBar> list = (List<$RealmBar>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Bar> models = new ArrayList<Bar>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Bar> models = realmObjects instanceof Collection ? new ArrayList<Bar>(((Collection<?>) realmObjects).size()) : new ArrayList<Bar>();\n"
+                + "        for ($RealmBar realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmBar> toRealmObjects(List<Bar> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmBar> realmObjects = new ArrayList<$RealmBar>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Bar model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Bar previous, Bar current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource1 = JavaFileObjects.forSourceString("test/AutoValue_Foo", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "import test2.Bar;\n"
                 + "\n"
-                + "final class AutoValue_Foo extends $AutoValue_Foo {\n"
+                + "final class AutoValue_Foo extends $AutoValue_Foo implements AvContextualModel<$RealmFoo>, AvDiffingModel<Realm, $RealmFoo> {\n"
                 + "    AutoValue_Foo(Bar bar) {\n"
                 + "        super(bar);\n"
                 + "    }\n"
@@ -894,15 +2409,33 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setBar(getBar().toRealmObject());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmFoo toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmFoo realmObject = new $RealmFoo();\n"
+                + "        realmObject.setBar(conversionContext.toRealmObject(getBar()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmFoo target) {\n"
+                + "        if (!AvRealmHelper.applyTo(realm, getBar(), target.getBar())) {\n"
+                + "            target.setBar(getBar() == null ? null : realm.copyToRealm(getBar().toRealmObject()));\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource2 = JavaFileObjects.forSourceString("test/AutoValue_Bar", ""
                 + "package test2;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Bar extends $AutoValue_Bar {\n"
+                + "final class AutoValue_Bar extends $AutoValue_Bar implements AvContextualModel<$RealmBar>, AvDiffingModel<Realm, $RealmBar> {\n"
                 + "    AutoValue_Bar(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -913,6 +2446,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmBar toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmBar realmObject = new $RealmBar();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmBar target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -950,15 +2497,30 @@ public class AutoValueRealmExtensionTest {
         JavaFileObject expectedRealmObject1 = JavaFileObjects.forSourceString("test/$RealmFoo", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmList;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo> {\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_BARS = \"bars\";\n"
+                + "    public static final int CHANGED_BARS = 0;\n"
                 + "    private RealmList<$RealmBar> bars;\n"
                 + "\n"
+                + "    public RealmList<$RealmBar> getBars() {\n"
+                + "        return bars;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setBars(RealmList<$RealmBar> bars) {\n"
                 + "        this.bars = bars;\n"
                 + "    }\n"
@@ -967,19 +2529,90 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Foo toModel() {\n"
                 + "        return new AutoValue_Foo(AvRealmHelper.fromRealmModels(bars));\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(AvRealmHelper.fromRealmModels(bars, conversionContext));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBars(), current.getBars())) {\n"
+                + "            changed.set(CHANGED_BARS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedRealmObject2 = JavaFileObjects.forSourceString("test/$RealmBar", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
                 + "import com.remind101.auto.value.realm.AvRealmModel;\n"
                 + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
                 + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
                 + "\n"
-                + "public class $RealmBar extends RealmObject implements AvRealmModel<Bar> {\n"
+                + "public class $RealmBar extends RealmObject implements AvRealmModel<Bar>, AvContextualRealmModel<Bar> {\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_VALUE = 0;\n"
                 + "    private int value;\n"
                 + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
                 + "    public void setValue(int value) {\n"
                 + "        this.value = value;\n"
                 + "    }\n"
@@ -988,17 +2621,78 @@ public class AutoValueRealmExtensionTest {
                 + "    public final Bar toModel() {\n"
                 + "        return new AutoValue_Bar(value);\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Bar toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Bar(value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Bar> toModels(Iterable<$RealmBar> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmBar> list = (List<$RealmBar>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Bar> models = new ArrayList<Bar>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Bar> models = realmObjects instanceof Collection ? new ArrayList<Bar>(((Collection<?>) realmObjects).size()) : new ArrayList<Bar>();\n"
+                + "        for ($RealmBar realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmBar> toRealmObjects(List<Bar> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmBar> realmObjects = new ArrayList<$RealmBar>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Bar model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Bar previous, Bar current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource1 = JavaFileObjects.forSourceString("test/AutoValue_Foo", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
                 + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
+                + "import io.realm.RealmList;\n"
                 + "import java.lang.Override;\n"
                 + "import java.util.List;\n"
                 + "\n"
-                + "final class AutoValue_Foo extends $AutoValue_Foo {\n"
+                + "final class AutoValue_Foo extends $AutoValue_Foo implements AvContextualModel<$RealmFoo>, AvDiffingModel<Realm, $RealmFoo> {\n"
                 + "    AutoValue_Foo(List<Bar> bars) {\n"
                 + "        super(bars);\n"
                 + "    }\n"
@@ -1006,18 +2700,42 @@ public class AutoValueRealmExtensionTest {
                 + "    @Override\n"
                 + "    public final $RealmFoo toRealmObject() {\n"
                 + "        $RealmFoo realmObject = new $RealmFoo();\n"
-                + "        realmObject.setBars(AvRealmHelper.toRealmModels(getBars()));\n"
+                + "        realmObject.setBars(new RealmList<$RealmBar>(AvRealmHelper.toRealmModels(getBars(), $RealmBar.class)));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmFoo toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmFoo realmObject = new $RealmFoo();\n"
+                + "        realmObject.setBars(new RealmList<$RealmBar>(AvRealmHelper.toRealmModels(getBars(), $RealmBar.class, conversionContext)));\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmFoo target) {\n"
+                + "        $RealmBar[] barsRealmObjects = AvRealmHelper.applyToAll(realm, getBars(), target.getBars(), $RealmBar.class);\n"
+                + "        if (barsRealmObjects != null) {\n"
+                + "            for (int i = 0; i < barsRealmObjects.length; i++) {\n"
+                + "                if (barsRealmObjects[i] == null) {\n"
+                + "                    barsRealmObjects[i] = realm.copyToRealm(getBars().get(i).toRealmObject());\n"
+                + "                }\n"
+                + "            }\n"
+                + "            target.setBars(new RealmList<$RealmBar>(barsRealmObjects));\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
         JavaFileObject expectedSource2 = JavaFileObjects.forSourceString("test/AutoValue_Bar", ""
                 + "package test;\n"
                 + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
                 + "import java.lang.Override;\n"
                 + "\n"
-                + "final class AutoValue_Bar extends $AutoValue_Bar {\n"
+                + "final class AutoValue_Bar extends $AutoValue_Bar implements AvContextualModel<$RealmBar>, AvDiffingModel<Realm, $RealmBar> {\n"
                 + "    AutoValue_Bar(int value) {\n"
                 + "        super(value);\n"
                 + "    }\n"
@@ -1028,6 +2746,20 @@ public class AutoValueRealmExtensionTest {
                 + "        realmObject.setValue(getValue());\n"
                 + "        return realmObject;\n"
                 + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmBar toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmBar realmObject = new $RealmBar();\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmBar target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
                 + "}\n"
         );
 
@@ -1038,4 +2770,3346 @@ public class AutoValueRealmExtensionTest {
                 .and()
                 .generatesSources(expectedRealmObject1, expectedSource1, expectedRealmObject2, expectedSource2);
     }
+
+    @Test
+    public void testOneToManyRelationshipLazy() throws Exception {
+        JavaFileObject source1 = JavaFileObjects.forSourceString("test.Foo", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvLazy;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import java.util.List;\n"
+                + "@AutoValue public abstract class Foo implements AvModel<$RealmFoo> {\n"
+                + "    @AvLazy abstract List<Bar> getBars();\n"
+                + "    @Override public abstract $RealmFoo toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject source2 = JavaFileObjects.forSourceString("test.Bar", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Bar implements AvModel<$RealmBar> {\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmBar toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject1 = JavaFileObjects.forSourceString("test/$RealmFoo", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmList;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_BARS = \"bars\";\n"
+                + "    public static final int CHANGED_BARS = 0;\n"
+                + "    private RealmList<$RealmBar> bars;\n"
+                + "\n"
+                + "    public RealmList<$RealmBar> getBars() {\n"
+                + "        return bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBars(RealmList<$RealmBar> bars) {\n"
+                + "        this.bars = bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel() {\n"
+                + "        return new AutoValue_Foo(AvRealmHelper.lazyFromRealmModels(bars));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(AvRealmHelper.lazyFromRealmModels(bars));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBars(), current.getBars())) {\n"
+                + "            changed.set(CHANGED_BARS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source1, source2))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject1);
+    }
+
+    @Test
+    public void testLazyNotAList() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvLazy;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvLazy abstract String getFoo();"
+                + "    public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.foo is annotated with @AvLazy but is not a List of AvModels");
+    }
+
+    @Test
+    public void testOriginatingElements() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvLive;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvLive @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract int getValue();\n"
+                + "    abstract Inner getInner();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    @AvLive @AutoValue public abstract static class Inner implements AvModel<$RealmTest_Inner> {\n"
+                + "        abstract long getCount();\n"
+                + "        @Override public abstract $RealmTest_Inner toRealmObject();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        OriginatingElementsRecorder recorder = new OriginatingElementsRecorder(new AutoValueProcessor());
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(recorder)
+                .compilesWithoutError();
+
+        // Every generated Realm class must come from exactly one AutoValue class for the extension to be isolating
+        assertThat(recorder.originatingElements("test.$RealmTest")).containsExactly("test.Test");
+        assertThat(recorder.originatingElements("test.$RealmTest_Inner")).containsExactly("test.Test.Inner");
+        assertThat(recorder.originatingElements("test.$LiveTest")).containsExactly("test.Test");
+        assertThat(recorder.originatingElements("test.$LiveTest_Inner")).containsExactly("test.Test.Inner");
+    }
+
+    @Test
+    public void testApplyTo() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import io.realm.Realm;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract String getName();\n"
+                + "    abstract double getScore();\n"
+                + "    @SuppressWarnings(\"mutable\") abstract byte[] getData();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    public abstract void applyTo(Realm realm, $RealmTest target);\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Double;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.Arrays;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
+                + "    AutoValue_Test(String name, double score, byte[] data) {\n"
+                + "        super(name, score, data);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject() {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setScore(getScore());\n"
+                + "        realmObject.setData(getData());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setScore(getScore());\n"
+                + "        realmObject.setData(getData());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (!AvRealmHelper.equal(getName(), target.getName())) {\n"
+                + "            target.setName(getName());\n"
+                + "        }\n"
+                + "        if (Double.compare(getScore(), target.getScore()) != 0) {\n"
+                + "            target.setScore(getScore());\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(getData(), target.getData())) {\n"
+                + "            target.setData(getData());\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedSource);
+    }
+
+    @Test
+    public void testLiveModel() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvLive;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.util.List;\n"
+                + "@AvLive @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract String getName();\n"
+                + "    abstract Other getOther();\n"
+                + "    abstract List<Other> getOthers();\n"
+                + "    abstract Plain getPlain();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    public abstract void applyTo(Realm realm, $RealmTest target);\n"
+                + "    @AvLive @AutoValue public abstract static class Other implements AvModel<$RealmTest_Other> {\n"
+                + "        abstract long getCount();\n"
+                + "        @Override public abstract $RealmTest_Other toRealmObject();\n"
+                + "    }\n"
+                + "    @AutoValue public abstract static class Plain implements AvModel<$RealmTest_Plain> {\n"
+                + "        abstract long getCount();\n"
+                + "        @Override public abstract $RealmTest_Plain toRealmObject();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/$LiveTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvLiveModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Object;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.lang.StringBuilder;\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "final class $LiveTest extends Test implements AvLiveModel<Test> {\n"
+                + "    private final $RealmTest realmObject;\n"
+                + "\n"
+                + "    $LiveTest($RealmTest realmObject) {\n"
+                + "        this.realmObject = realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    String getName() {\n"
+                + "        return realmObject.getName();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    Test.Other getOther() {\n"
+                + "        $RealmTest_Other value = realmObject.getOther();\n"
+                + "        return value == null ? null : value.toLiveModel();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    List<Test.Other> getOthers() {\n"
+                + "        return AvRealmHelper.lazyFromRealmModels(realmObject.getOthers());\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    Test.Plain getPlain() {\n"
+                + "        $RealmTest_Plain value = realmObject.getPlain();\n"
+                + "        return value == null ? null : value.toModel();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public Test freeze() {\n"
+                + "        return realmObject.toModel();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public $RealmTest toRealmObject() {\n"
+                + "        return freeze().toRealmObject();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        freeze().applyTo(realm, target);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public boolean equals(Object o) {\n"
+                + "        if (o == this) {\n"
+                + "            return true;\n"
+                + "        }\n"
+                + "        if (!(o instanceof Test)) {\n"
+                + "            return false;\n"
+                + "        }\n"
+                + "        Test that = (Test) o;\n"
+                + "        return AvRealmHelper.equal(getName(), that.getName())\n"
+                + "                && AvRealmHelper.equal(getOther(), that.getOther())\n"
+                + "                && AvRealmHelper.equal(getOthers(), that.getOthers())\n"
+                + "                && AvRealmHelper.equal(getPlain(), that.getPlain());\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public int hashCode() {\n"
+                + "        int h = 1;\n"
+                + "        h *= 1000003;\n"
+                + "        h ^= AvRealmHelper.hashCode(getName());\n"
+                + "        h *= 1000003;\n"
+                + "        h ^= AvRealmHelper.hashCode(getOther());\n"
+                + "        h *= 1000003;\n"
+                + "        h ^= AvRealmHelper.hashCode(getOthers());\n"
+                + "        h *= 1000003;\n"
+                + "        h ^= AvRealmHelper.hashCode(getPlain());\n"
+                + "        return h;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public String toString() {\n"
+                + "        StringBuilder builder = new StringBuilder(\"Test{\");\n"
+                + "        builder.append(\"name=\").append(getName());\n"
+                + "        builder.append(\", other=\").append(getOther());\n"
+                + "        builder.append(\", others=\").append(getOthers());\n"
+                + "        builder.append(\", plain=\").append(getPlain());\n"
+                + "        return builder.append('}').toString();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedSource);
+    }
+
+    @Test
+    public void testLiveModelInheritedToRealmObject() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvLive;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvLive @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract String getName();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/$LiveTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvLiveModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import java.lang.Object;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.lang.StringBuilder;\n"
+                + "\n"
+                + "final class $LiveTest extends Test implements AvLiveModel<Test> {\n"
+                + "    private final $RealmTest realmObject;\n"
+                + "\n"
+                + "    $LiveTest($RealmTest realmObject) {\n"
+                + "        this.realmObject = realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    String getName() {\n"
+                + "        return realmObject.getName();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public Test freeze() {\n"
+                + "        return realmObject.toModel();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public $RealmTest toRealmObject() {\n"
+                + "        return freeze().toRealmObject();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public boolean equals(Object o) {\n"
+                + "        if (o == this) {\n"
+                + "            return true;\n"
+                + "        }\n"
+                + "        if (!(o instanceof Test)) {\n"
+                + "            return false;\n"
+                + "        }\n"
+                + "        Test that = (Test) o;\n"
+                + "        return AvRealmHelper.equal(getName(), that.getName());\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public int hashCode() {\n"
+                + "        int h = 1;\n"
+                + "        h *= 1000003;\n"
+                + "        h ^= AvRealmHelper.hashCode(getName());\n"
+                + "        return h;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public String toString() {\n"
+                + "        StringBuilder builder = new StringBuilder(\"Test{\");\n"
+                + "        builder.append(\"name=\").append(getName());\n"
+                + "        return builder.append('}').toString();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedSource);
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvCached;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvPrimaryKey;\n"
+                + "@AvCached @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvPrimaryKey abstract String getName();\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvKeyedModel;\n"
+                + "import com.remind101.auto.value.realm.AvModelCache;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import io.realm.annotations.PrimaryKey;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Object;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.RuntimeException;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test>, AvKeyedModel {\n"
+                + "    public static final String FIELD_NAME = \"name\";\n"
+                + "    public static final String FIELD_VALUE = \"value\";\n"
+                + "    public static final int CHANGED_NAME = 0;\n"
+                + "    public static final int CHANGED_VALUE = 1;\n"
+                + "    @PrimaryKey\n"
+                + "    private String name;\n"
+                + "    private int value;\n"
+                + "\n"
+                + "    public String getName() {\n"
+                + "        return name;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setName(String name) {\n"
+                + "        this.name = name;\n"
+                + "    }\n"
+                + "\n"
+                + "    public int getValue() {\n"
+                + "        return value;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setValue(int value) {\n"
+                + "        this.value = value;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public Object getAvPrimaryKey() {\n"
+                + "        return getName();\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(name, value);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(name, value);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static $RealmTest findByName(Realm realm, String name) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_NAME, name).findFirst();\n"
+                + "    }\n"
+                + "\n"
+                + "    public static Test findModelByName(Realm realm, String name) {\n"
+                + "        Test model = AvModelCache.getInstance().get(Test.class, name);\n"
+                + "        if (model == null) {\n"
+                + "            long version = AvModelCache.getInstance().getVersion();\n"
+                + "            $RealmTest realmObject = findByName(realm, name);\n"
+                + "            if (realmObject == null) {\n"
+                + "                return null;\n"
+                + "            }\n"
+                + "            model = realmObject.toModel();\n"
+                + "            AvModelCache.getInstance().putIfUnchanged(Test.class, name, model, version);\n"
+                + "        }\n"
+                + "        return model;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Writes the model in a transaction of its own, updating the row of the same primary key in place if there\n"
+                + "      * is one, then caches the model.\n"
+                + "      */\n"
+                + "    public static void save(Realm realm, Test model) {\n"
+                + "        model = AvRealmHelper.freeze(model);\n"
+                + "        realm.beginTransaction();\n"
+                + "        try {\n"
+                + "            $RealmTest existing = findByName(realm, model.getName());\n"
+                + "            if (!AvRealmHelper.applyTo(realm, model, existing)) {\n"
+                + "                realm.copyToRealmOrUpdate(model.toRealmObject());\n"
+                + "            }\n"
+                + "            realm.commitTransaction();\n"
+                + "        } catch (RuntimeException e) {\n"
+                + "            realm.cancelTransaction();\n"
+                + "            throw e;\n"
+                + "        }\n"
+                + "        AvModelCache.getInstance().put(Test.class, model.getName(), model);\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(2);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 2);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getName(), current.getName())) {\n"
+                + "            changed.set(CHANGED_NAME);\n"
+                + "        }\n"
+                + "        if (previous.getValue() != current.getValue()) {\n"
+                + "            changed.set(CHANGED_VALUE);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvKeyedModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Object;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest>, AvKeyedModel {\n"
+                + "    AutoValue_Test(String name, int value) {\n"
+                + "        super(name, value);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject() {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setValue(getValue());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getValue() != target.getValue()) {\n"
+                + "            target.setValue(getValue());\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Object getAvPrimaryKey() {\n"
+                + "        return getName();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject, expectedSource);
+    }
+
+    @Test
+    public void testCachedWithoutPrimaryKey() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvCached;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvCached @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test is annotated with @AvCached but has no @AvPrimaryKey");
+    }
+
+    @Test
+    public void testEmbedded() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvEmbedded;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import io.realm.Realm;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract String getName();\n"
+                + "    @AvEmbedded abstract Info getInfo();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    public abstract void applyTo(Realm realm, $RealmTest target);\n"
+                + "    @AutoValue public abstract static class Info implements AvModel<$RealmTest_Info> {\n"
+                + "        abstract String getTitle();\n"
+                + "        abstract double getScore();\n"
+                + "        @Override public abstract $RealmTest_Info toRealmObject();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_NAME = \"name\";\n"
+                + "    public static final String FIELD_INFO_TITLE = \"info_title\";\n"
+                + "    public static final String FIELD_INFO_SCORE = \"info_score\";\n"
+                + "    public static final int CHANGED_NAME = 0;\n"
+                + "    public static final int CHANGED_INFO = 1;\n"
+                + "    private String name;\n"
+                + "    private String info_title;\n"
+                + "    private double info_score;\n"
+                + "\n"
+                + "    public String getName() {\n"
+                + "        return name;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setName(String name) {\n"
+                + "        this.name = name;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String getInfo_title() {\n"
+                + "        return info_title;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setInfo_title(String info_title) {\n"
+                + "        this.info_title = info_title;\n"
+                + "    }\n"
+                + "\n"
+                + "    public double getInfo_score() {\n"
+                + "        return info_score;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setInfo_score(double info_score) {\n"
+                + "        this.info_score = info_score;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(name, new AutoValue_Test_Info(info_title, info_score));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(name, new AutoValue_Test_Info(info_title, info_score));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(2);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 2);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getName(), current.getName())) {\n"
+                + "            changed.set(CHANGED_NAME);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getInfo(), current.getInfo())) {\n"
+                + "            changed.set(CHANGED_INFO);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Double;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
+                + "    AutoValue_Test(String name, Test.Info info) {\n"
+                + "        super(name, info);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject() {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setInfo_title(getInfo().getTitle());\n"
+                + "        realmObject.setInfo_score(getInfo().getScore());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setName(getName());\n"
+                + "        realmObject.setInfo_title(getInfo().getTitle());\n"
+                + "        realmObject.setInfo_score(getInfo().getScore());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (!AvRealmHelper.equal(getName(), target.getName())) {\n"
+                + "            target.setName(getName());\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(getInfo().getTitle(), target.getInfo_title())) {\n"
+                + "            target.setInfo_title(getInfo().getTitle());\n"
+                + "        }\n"
+                + "        if (Double.compare(getInfo().getScore(), target.getInfo_score()) != 0) {\n"
+                + "            target.setInfo_score(getInfo().getScore());\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject, expectedSource);
+    }
+
+    @Test
+    public void testEmbeddedNotAnAvModel() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvEmbedded;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvEmbedded abstract String getFoo();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.foo is annotated with @AvEmbedded but is not an AvModel");
+    }
+
+    @Test
+    public void testEmbeddedWithLink() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvEmbedded;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvEmbedded abstract Test getParent();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.parent_parent is of a non supported type: test.Test");
+    }
+
+    @Test
+    public void testPackedArrays() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import io.realm.Realm;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @SuppressWarnings(\"mutable\") abstract int[] getIds();\n"
+                + "    @SuppressWarnings(\"mutable\") abstract long[] getTimestamps();\n"
+                + "    @SuppressWarnings(\"mutable\") abstract double[] getValues();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    public abstract void applyTo(Realm realm, $RealmTest target);\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvPackedArrays;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.Arrays;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_IDS = \"ids\";\n"
+                + "    public static final String FIELD_TIMESTAMPS = \"timestamps\";\n"
+                + "    public static final String FIELD_VALUES = \"values\";\n"
+                + "    public static final int CHANGED_IDS = 0;\n"
+                + "    public static final int CHANGED_TIMESTAMPS = 1;\n"
+                + "    public static final int CHANGED_VALUES = 2;\n"
+                + "    private byte[] ids;\n"
+                + "    private byte[] timestamps;\n"
+                + "    private byte[] values;\n"
+                + "\n"
+                + "    public byte[] getIds() {\n"
+                + "        return ids;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setIds(byte[] ids) {\n"
+                + "        this.ids = ids;\n"
+                + "    }\n"
+                + "\n"
+                + "    public byte[] getTimestamps() {\n"
+                + "        return timestamps;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setTimestamps(byte[] timestamps) {\n"
+                + "        this.timestamps = timestamps;\n"
+                + "    }\n"
+                + "\n"
+                + "    public byte[] getValues() {\n"
+                + "        return values;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setValues(byte[] values) {\n"
+                + "        this.values = values;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(AvPackedArrays.unpackInts(ids), AvPackedArrays.unpackLongs(timestamps), AvPackedArrays.unpackDoubles(values));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(AvPackedArrays.unpackInts(ids), AvPackedArrays.unpackLongs(timestamps), AvPackedArrays.unpackDoubles(values));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(3);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 3);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(previous.getIds(), current.getIds())) {\n"
+                + "            changed.set(CHANGED_IDS);\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(previous.getTimestamps(), current.getTimestamps())) {\n"
+                + "            changed.set(CHANGED_TIMESTAMPS);\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(previous.getValues(), current.getValues())) {\n"
+                + "            changed.set(CHANGED_VALUES);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import com.remind101.auto.value.realm.AvPackedArrays;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Override;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
+                + "    AutoValue_Test(int[] ids, long[] timestamps, double[] values) {\n"
+                + "        super(ids, timestamps, values);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject() {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setIds(AvPackedArrays.pack(getIds()));\n"
+                + "        realmObject.setTimestamps(AvPackedArrays.pack(getTimestamps()));\n"
+                + "        realmObject.setValues(AvPackedArrays.pack(getValues()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setIds(AvPackedArrays.pack(getIds()));\n"
+                + "        realmObject.setTimestamps(AvPackedArrays.pack(getTimestamps()));\n"
+                + "        realmObject.setValues(AvPackedArrays.pack(getValues()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (!AvPackedArrays.equal(getIds(), target.getIds())) {\n"
+                + "            target.setIds(AvPackedArrays.pack(getIds()));\n"
+                + "        }\n"
+                + "        if (!AvPackedArrays.equal(getTimestamps(), target.getTimestamps())) {\n"
+                + "            target.setTimestamps(AvPackedArrays.pack(getTimestamps()));\n"
+                + "        }\n"
+                + "        if (!AvPackedArrays.equal(getValues(), target.getValues())) {\n"
+                + "            target.setValues(AvPackedArrays.pack(getValues()));\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject, expectedSource);
+    }
+
+    @Test
+    public void testEnumOrdinal() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvIndex;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import io.realm.Realm;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    enum Status { ACTIVE, DONE }\n"
+                + "    @AvIndex abstract Status getStatus();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    public abstract void applyTo(Realm realm, $RealmTest target);\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import io.realm.RealmResults;\n"
+                + "import io.realm.annotations.Index;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_STATUS = \"status\";\n"
+                + "\n"
+                + "    private static final Test.Status[] STATUS_VALUES = Test.Status.values();\n"
+                + "\n"
+                + "    public static final int CHANGED_STATUS = 0;\n"
+                + "    @Index\n"
+                + "    private int status;\n"
+                + "\n"
+                + "    public int getStatus() {\n"
+                + "        return status;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setStatus(int status) {\n"
+                + "        this.status = status;\n"
+                + "    }\n"
+                + "\n"
+                + "    static int encodeStatus(Test.Status status) {\n"
+                + "        return status.ordinal();\n"
+                + "    }\n"
+                + "\n"
+                + "    static Test.Status decodeStatus(int status) {\n"
+                + "        return STATUS_VALUES[status];\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(decodeStatus(status));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(decodeStatus(status));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static RealmResults<$RealmTest> findAllByStatus(Realm realm, Test.Status status) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_STATUS, encodeStatus(status)).findAll();\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getStatus(), current.getStatus())) {\n"
+                + "            changed.set(CHANGED_STATUS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Override;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
+                + "    AutoValue_Test(Test.Status status) {\n"
+                + "        super(status);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject() {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setStatus($RealmTest.encodeStatus(getStatus()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setStatus($RealmTest.encodeStatus(getStatus()));\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (getStatus() != $RealmTest.decodeStatus(target.getStatus())) {\n"
+                + "            target.setStatus($RealmTest.encodeStatus(getStatus()));\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject, expectedSource);
+    }
+
+    @Test
+    public void testEnumCode() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvCode;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @interface Nullable {}\n"
+                + "    enum Status { @AvCode(10) ACTIVE, @AvCode(20) DONE }\n"
+                + "    @Nullable abstract Status getStatus();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.IllegalArgumentException;\n"
+                + "import java.lang.Integer;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_STATUS = \"status\";\n"
+                + "    public static final int CHANGED_STATUS = 0;\n"
+                + "    private Integer status;\n"
+                + "\n"
+                + "    public Integer getStatus() {\n"
+                + "        return status;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setStatus(Integer status) {\n"
+                + "        this.status = status;\n"
+                + "    }\n"
+                + "\n"
+                + "    static Integer encodeStatus(Test.Status status) {\n"
+                + "        if (status == null) {\n"
+                + "            return null;\n"
+                + "        }\n"
+                + "        switch (status) {\n"
+                + "            case ACTIVE:\n"
+                + "                return 10;\n"
+                + "            case DONE:\n"
+                + "                return 20;\n"
+                + "            default:\n"
+                + "                throw new IllegalArgumentException(\"No @AvCode for \" + status);\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    static Test.Status decodeStatus(Integer status) {\n"
+                + "        if (status == null) {\n"
+                + "            return null;\n"
+                + "        }\n"
+                + "        switch (status) {\n"
+                + "            case 10:\n"
+                + "                return Test.Status.ACTIVE;\n"
+                + "            case 20:\n"
+                + "                return Test.Status.DONE;\n"
+                + "            default:\n"
+                + "                throw new IllegalArgumentException(\"No constant for @AvCode \" + status);\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(decodeStatus(status));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(decodeStatus(status));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(1);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 1);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getStatus(), current.getStatus())) {\n"
+                + "            changed.set(CHANGED_STATUS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
+    @Test
+    public void testEnumMissingCode() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvCode;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    enum Status { @AvCode(10) ACTIVE, DONE }\n"
+                + "    abstract Status getStatus();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.status is an enum with some constants missing an @AvCode");
+    }
+
+    @Test
+    public void testIntern() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvIntern;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract String getBody();\n"
+                + "    @AvIntern abstract String getCountry();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvInternPool;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_BODY = \"body\";\n"
+                + "    public static final String FIELD_COUNTRY = \"country\";\n"
+                + "    public static final int CHANGED_BODY = 0;\n"
+                + "    public static final int CHANGED_COUNTRY = 1;\n"
+                + "    private String body;\n"
+                + "    private String country;\n"
+                + "\n"
+                + "    public String getBody() {\n"
+                + "        return body;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBody(String body) {\n"
+                + "        this.body = body;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String getCountry() {\n"
+                + "        return country;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setCountry(String country) {\n"
+                + "        this.country = country;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(body, AvInternPool.getInstance().intern(country));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(body, AvInternPool.getInstance().intern(country));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(2);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 2);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBody(), current.getBody())) {\n"
+                + "            changed.set(CHANGED_BODY);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getCountry(), current.getCountry())) {\n"
+                + "            changed.set(CHANGED_COUNTRY);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
+    @Test
+    public void testInternNotAString() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvIntern;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvIntern abstract long getCount();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.count is annotated with @AvIntern but is not a String");
+    }
+
+    @Test
+    public void testTimestamp() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvTimestamp;\n"
+                + "import java.util.concurrent.TimeUnit;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvTimestamp abstract long getCreatedAt();\n"
+                + "    @AvTimestamp(unit = TimeUnit.SECONDS) abstract long getExpiresAt();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmTest", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import io.realm.RealmResults;\n"
+                + "import io.realm.Sort;\n"
+                + "import io.realm.annotations.Index;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.Date;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "import java.util.concurrent.TimeUnit;\n"
+                + "\n"
+                + "public class $RealmTest extends RealmObject implements AvRealmModel<Test>, AvContextualRealmModel<Test> {\n"
+                + "    public static final String FIELD_CREATED_AT = \"createdAt\";\n"
+                + "    public static final String FIELD_EXPIRES_AT = \"expiresAt\";\n"
+                + "    public static final int CHANGED_CREATED_AT = 0;\n"
+                + "    public static final int CHANGED_EXPIRES_AT = 1;\n"
+                + "    @Index\n"
+                + "    private long createdAt;\n"
+                + "    @Index\n"
+                + "    private long expiresAt;\n"
+                + "\n"
+                + "    public long getCreatedAt() {\n"
+                + "        return createdAt;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setCreatedAt(long createdAt) {\n"
+                + "        this.createdAt = createdAt;\n"
+                + "    }\n"
+                + "\n"
+                + "    public long getExpiresAt() {\n"
+                + "        return expiresAt;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setExpiresAt(long expiresAt) {\n"
+                + "        this.expiresAt = expiresAt;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel() {\n"
+                + "        return new AutoValue_Test(createdAt, expiresAt);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Test toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Test(createdAt, expiresAt);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Test> toModels(Iterable<$RealmTest> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmTest> list = (List<$RealmTest>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Test> models = new ArrayList<Test>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Test> models = realmObjects instanceof Collection ? new ArrayList<Test>(((Collection<?>) realmObjects).size()) : new ArrayList<Test>();\n"
+                + "        for ($RealmTest realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmTest> toRealmObjects(List<Test> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmTest> realmObjects = new ArrayList<$RealmTest>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Test model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static RealmResults<$RealmTest> findAllByCreatedAt(Realm realm, long createdAt) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_CREATED_AT, createdAt).findAll();\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * @param from the start of the range, in milliseconds, included\n"
+                + "      * @param to the end of the range, in milliseconds, excluded\n"
+                + "      */\n"
+                + "    public static RealmResults<$RealmTest> findAllByCreatedAtBetween(Realm realm, long from, long to, Sort sortOrder) {\n"
+                + "        return realm.where($RealmTest.class).greaterThanOrEqualTo(FIELD_CREATED_AT, from).lessThan(FIELD_CREATED_AT, to).findAllSorted(FIELD_CREATED_AT, sortOrder);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static RealmResults<$RealmTest> findAllByCreatedAtBetween(Realm realm, Date from, Date to, Sort sortOrder) {\n"
+                + "        return findAllByCreatedAtBetween(realm, from.getTime(), to.getTime(), sortOrder);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static RealmResults<$RealmTest> findAllByExpiresAt(Realm realm, long expiresAt) {\n"
+                + "        return realm.where($RealmTest.class).equalTo(FIELD_EXPIRES_AT, expiresAt).findAll();\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * @param from the start of the range, in seconds, included\n"
+                + "      * @param to the end of the range, in seconds, excluded\n"
+                + "      */\n"
+                + "    public static RealmResults<$RealmTest> findAllByExpiresAtBetween(Realm realm, long from, long to, Sort sortOrder) {\n"
+                + "        return realm.where($RealmTest.class).greaterThanOrEqualTo(FIELD_EXPIRES_AT, from).lessThan(FIELD_EXPIRES_AT, to).findAllSorted(FIELD_EXPIRES_AT, sortOrder);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static RealmResults<$RealmTest> findAllByExpiresAtBetween(Realm realm, Date from, Date to, Sort sortOrder) {\n"
+                + "        return findAllByExpiresAtBetween(realm, TimeUnit.SECONDS.convert(from.getTime(), TimeUnit.MILLISECONDS), TimeUnit.SECONDS.convert(to.getTime(), TimeUnit.MILLISECONDS), sortOrder);\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Test previous, Test current) {\n"
+                + "        BitSet changed = new BitSet(2);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 2);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getCreatedAt() != current.getCreatedAt()) {\n"
+                + "            changed.set(CHANGED_CREATED_AT);\n"
+                + "        }\n"
+                + "        if (previous.getExpiresAt() != current.getExpiresAt()) {\n"
+                + "            changed.set(CHANGED_EXPIRES_AT);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
+    @Test
+    public void testTimestampNotLong() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvTimestamp;\n"
+                + "import java.util.Date;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvTimestamp abstract Date getCreatedAt();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.createdAt is annotated with @AvTimestamp but is not a long");
+    }
+
+    @Test
+    public void testMemoizeHashCode() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvMemoizeHashCode;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvMemoizeHashCode @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @SuppressWarnings(\"mutable\") abstract byte[] getData();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvDiffingModel;\n"
+                + "import io.realm.Realm;\n"
+                + "import java.lang.Override;\n"
+                + "import java.util.Arrays;\n"
+                + "\n"
+                + "final class AutoValue_Test extends $AutoValue_Test implements AvContextualModel<$RealmTest>, AvDiffingModel<Realm, $RealmTest> {\n"
+                + "    private transient int memoizedHashCode;\n"
+                + "\n"
+                + "    AutoValue_Test(byte[] data) {\n"
+                + "        super(data);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject() {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setData(getData());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final $RealmTest toRealmObject(AvConversionContext conversionContext) {\n"
+                + "        $RealmTest realmObject = new $RealmTest();\n"
+                + "        realmObject.setData(getData());\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final void applyTo(Realm realm, $RealmTest target) {\n"
+                + "        if (!Arrays.equals(getData(), target.getData())) {\n"
+                + "            target.setData(getData());\n"
+                + "        }\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public int hashCode() {\n"
+                + "        int hashCode = memoizedHashCode;\n"
+                + "        if (hashCode == 0) {\n"
+                + "            hashCode = super.hashCode();\n"
+                + "            memoizedHashCode = hashCode;\n"
+                + "        }\n"
+                + "        return hashCode;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedSource);
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        JavaFileObject source1 = JavaFileObjects.forSourceString("test.Foo", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import java.util.List;\n"
+                + "@AutoValue public abstract class Foo implements AvModel<$RealmFoo> {\n"
+                + "    abstract int getCount();\n"
+                + "    abstract double getScore();\n"
+                + "    abstract String getName();\n"
+                + "    @SuppressWarnings(\"mutable\") abstract byte[] getData();\n"
+                + "    abstract Bar getBar();\n"
+                + "    abstract List<Bar> getBars();\n"
+                + "    @Override public abstract $RealmFoo toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject source2 = JavaFileObjects.forSourceString("test.Bar", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Bar implements AvModel<$RealmBar> {\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmBar toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmFoo", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmList;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Double;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.Arrays;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_COUNT = \"count\";\n"
+                + "    public static final String FIELD_SCORE = \"score\";\n"
+                + "    public static final String FIELD_NAME = \"name\";\n"
+                + "    public static final String FIELD_DATA = \"data\";\n"
+                + "    public static final String FIELD_BAR = \"bar\";\n"
+                + "    public static final String FIELD_BARS = \"bars\";\n"
+                + "    public static final int CHANGED_COUNT = 0;\n"
+                + "    public static final int CHANGED_SCORE = 1;\n"
+                + "    public static final int CHANGED_NAME = 2;\n"
+                + "    public static final int CHANGED_DATA = 3;\n"
+                + "    public static final int CHANGED_BAR = 4;\n"
+                + "    public static final int CHANGED_BARS = 5;\n"
+                + "    private int count;\n"
+                + "    private double score;\n"
+                + "    private String name;\n"
+                + "    private byte[] data;\n"
+                + "    private $RealmBar bar;\n"
+                + "    private RealmList<$RealmBar> bars;\n"
+                + "\n"
+                + "    public int getCount() {\n"
+                + "        return count;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setCount(int count) {\n"
+                + "        this.count = count;\n"
+                + "    }\n"
+                + "\n"
+                + "    public double getScore() {\n"
+                + "        return score;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setScore(double score) {\n"
+                + "        this.score = score;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String getName() {\n"
+                + "        return name;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setName(String name) {\n"
+                + "        this.name = name;\n"
+                + "    }\n"
+                + "\n"
+                + "    public byte[] getData() {\n"
+                + "        return data;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setData(byte[] data) {\n"
+                + "        this.data = data;\n"
+                + "    }\n"
+                + "\n"
+                + "    public $RealmBar getBar() {\n"
+                + "        return bar;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBar($RealmBar bar) {\n"
+                + "        this.bar = bar;\n"
+                + "    }\n"
+                + "\n"
+                + "    public RealmList<$RealmBar> getBars() {\n"
+                + "        return bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBars(RealmList<$RealmBar> bars) {\n"
+                + "        this.bars = bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel() {\n"
+                + "        return new AutoValue_Foo(count, score, name, data, bar.toModel(), AvRealmHelper.fromRealmModels(bars));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(count, score, name, data, conversionContext.toModel(bar), AvRealmHelper.fromRealmModels(bars, conversionContext));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(6);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 6);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (previous.getCount() != current.getCount()) {\n"
+                + "            changed.set(CHANGED_COUNT);\n"
+                + "        }\n"
+                + "        if (Double.compare(previous.getScore(), current.getScore()) != 0) {\n"
+                + "            changed.set(CHANGED_SCORE);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getName(), current.getName())) {\n"
+                + "            changed.set(CHANGED_NAME);\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(previous.getData(), current.getData())) {\n"
+                + "            changed.set(CHANGED_DATA);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBar(), current.getBar())) {\n"
+                + "            changed.set(CHANGED_BAR);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBars(), current.getBars())) {\n"
+                + "            changed.set(CHANGED_BARS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source1, source2))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        JavaFileObject source1 = JavaFileObjects.forSourceString("test.Foo", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvIntern;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvProjection;\n"
+                + "import java.util.List;\n"
+                + "@AutoValue public abstract class Foo implements AvModel<$RealmFoo> {\n"
+                + "    abstract String getId();\n"
+                + "    @AvIntern abstract String getTitle();\n"
+                + "    abstract String getBody();\n"
+                + "    abstract Bar getBar();\n"
+                + "    abstract List<Bar> getBars();\n"
+                + "    @Override public abstract $RealmFoo toRealmObject();\n"
+                + "    @AvProjection @AutoValue abstract static class Summary {\n"
+                + "        abstract String getTitle();\n"
+                + "        abstract Bar getBar();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject source2 = JavaFileObjects.forSourceString("test.Bar", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Bar implements AvModel<$RealmBar> {\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmBar toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmFoo", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvInternPool;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmList;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_ID = \"id\";\n"
+                + "    public static final String FIELD_TITLE = \"title\";\n"
+                + "    public static final String FIELD_BODY = \"body\";\n"
+                + "    public static final String FIELD_BAR = \"bar\";\n"
+                + "    public static final String FIELD_BARS = \"bars\";\n"
+                + "    public static final int CHANGED_ID = 0;\n"
+                + "    public static final int CHANGED_TITLE = 1;\n"
+                + "    public static final int CHANGED_BODY = 2;\n"
+                + "    public static final int CHANGED_BAR = 3;\n"
+                + "    public static final int CHANGED_BARS = 4;\n"
+                + "    private String id;\n"
+                + "    private String title;\n"
+                + "    private String body;\n"
+                + "    private $RealmBar bar;\n"
+                + "    private RealmList<$RealmBar> bars;\n"
+                + "\n"
+                + "    public String getId() {\n"
+                + "        return id;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setId(String id) {\n"
+                + "        this.id = id;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String getTitle() {\n"
+                + "        return title;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setTitle(String title) {\n"
+                + "        this.title = title;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String getBody() {\n"
+                + "        return body;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBody(String body) {\n"
+                + "        this.body = body;\n"
+                + "    }\n"
+                + "\n"
+                + "    public $RealmBar getBar() {\n"
+                + "        return bar;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBar($RealmBar bar) {\n"
+                + "        this.bar = bar;\n"
+                + "    }\n"
+                + "\n"
+                + "    public RealmList<$RealmBar> getBars() {\n"
+                + "        return bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBars(RealmList<$RealmBar> bars) {\n"
+                + "        this.bars = bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel() {\n"
+                + "        return new AutoValue_Foo(id, AvInternPool.getInstance().intern(title), body, bar.toModel(), AvRealmHelper.fromRealmModels(bars));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(id, AvInternPool.getInstance().intern(title), body, conversionContext.toModel(bar), AvRealmHelper.fromRealmModels(bars, conversionContext));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * @return a Foo.Summary read from the fields of its properties only\n"
+                + "      */\n"
+                + "    public final Foo.Summary toSummary() {\n"
+                + "        return new AutoValue_Foo_Summary(AvInternPool.getInstance().intern(title), bar.toModel());\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(5);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 5);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getId(), current.getId())) {\n"
+                + "            changed.set(CHANGED_ID);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getTitle(), current.getTitle())) {\n"
+                + "            changed.set(CHANGED_TITLE);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBody(), current.getBody())) {\n"
+                + "            changed.set(CHANGED_BODY);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBar(), current.getBar())) {\n"
+                + "            changed.set(CHANGED_BAR);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBars(), current.getBars())) {\n"
+                + "            changed.set(CHANGED_BARS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source1, source2))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
+    @Test
+    public void testProjectionUnknownProperty() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvProjection;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract String getTitle();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    @AvProjection @AutoValue abstract static class Summary {\n"
+                + "        abstract String getName();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.Summary.getName() does not match a property of Test");
+    }
+
+    @Test
+    public void testProjectionTypeMismatch() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvProjection;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract long getCount();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    @AvProjection @AutoValue abstract static class Summary {\n"
+                + "        abstract int getCount();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.Summary.getCount() returns int but Test.getCount() returns long");
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        JavaFileObject source1 = JavaFileObjects.forSourceString("test.Foo", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvEmbedded;\n"
+                + "import com.remind101.auto.value.realm.AvJson;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import java.util.Date;\n"
+                + "import java.util.List;\n"
+                + "@AvJson @AutoValue public abstract class Foo implements AvModel<$RealmFoo> {\n"
+                + "    enum Status { ACTIVE, ARCHIVED }\n"
+                + "    abstract String getId();\n"
+                + "    abstract float getScore();\n"
+                + "    abstract char getGrade();\n"
+                + "    abstract Date getCreatedAt();\n"
+                + "    abstract Status getStatus();\n"
+                + "    abstract int[] getCounts();\n"
+                + "    @AvEmbedded abstract Info getInfo();\n"
+                + "    abstract Bar getBar();\n"
+                + "    abstract List<Bar> getBars();\n"
+                + "    @Override public abstract $RealmFoo toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject source2 = JavaFileObjects.forSourceString("test.Info", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Info implements AvModel<$RealmInfo> {\n"
+                + "    abstract String getTitle();\n"
+                + "    @Override public abstract $RealmInfo toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject source3 = JavaFileObjects.forSourceString("test.Bar", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvJson;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvJson @AutoValue public abstract class Bar implements AvModel<$RealmBar> {\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmBar toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedRealmObject = JavaFileObjects.forSourceString("test/$RealmFoo", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvContextualRealmModel;\n"
+                + "import com.remind101.auto.value.realm.AvConversionContext;\n"
+                + "import com.remind101.auto.value.realm.AvJsonImporter;\n"
+                + "import com.remind101.auto.value.realm.AvJsonReader;\n"
+                + "import com.remind101.auto.value.realm.AvPackedArrays;\n"
+                + "import com.remind101.auto.value.realm.AvRealmHelper;\n"
+                + "import com.remind101.auto.value.realm.AvRealmModel;\n"
+                + "import io.realm.RealmList;\n"
+                + "import io.realm.RealmObject;\n"
+                + "import java.io.IOException;\n"
+                + "import java.lang.Float;\n"
+                + "import java.lang.Iterable;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.Arrays;\n"
+                + "import java.util.BitSet;\n"
+                + "import java.util.Collection;\n"
+                + "import java.util.Date;\n"
+                + "import java.util.List;\n"
+                + "import java.util.RandomAccess;\n"
+                + "\n"
+                + "public class $RealmFoo extends RealmObject implements AvRealmModel<Foo>, AvContextualRealmModel<Foo> {\n"
+                + "    public static final String FIELD_ID = \"id\";\n"
+                + "    public static final String FIELD_SCORE = \"score\";\n"
+                + "    public static final String FIELD_GRADE = \"grade\";\n"
+                + "    public static final String FIELD_CREATED_AT = \"createdAt\";\n"
+                + "    public static final String FIELD_STATUS = \"status\";\n"
+                + "\n"
+                + "    private static final Foo.Status[] STATUS_VALUES = Foo.Status.values();\n"
+                + "\n"
+                + "    public static final String FIELD_COUNTS = \"counts\";\n"
+                + "    public static final String FIELD_INFO_TITLE = \"info_title\";\n"
+                + "    public static final String FIELD_BAR = \"bar\";\n"
+                + "    public static final String FIELD_BARS = \"bars\";\n"
+                + "    public static final int CHANGED_ID = 0;\n"
+                + "    public static final int CHANGED_SCORE = 1;\n"
+                + "    public static final int CHANGED_GRADE = 2;\n"
+                + "    public static final int CHANGED_CREATED_AT = 3;\n"
+                + "    public static final int CHANGED_STATUS = 4;\n"
+                + "    public static final int CHANGED_COUNTS = 5;\n"
+                + "    public static final int CHANGED_INFO = 6;\n"
+                + "    public static final int CHANGED_BAR = 7;\n"
+                + "    public static final int CHANGED_BARS = 8;\n"
+                + "\n"
+                + "    public static final AvJsonImporter.ObjectReader<$RealmFoo> JSON_READER = new AvJsonImporter.ObjectReader<$RealmFoo>() {\n"
+                + "        @Override\n"
+                + "        public $RealmFoo read(AvJsonReader reader) throws IOException {\n"
+                + "            return fromJson(reader);\n"
+                + "        }\n"
+                + "    };\n"
+                + "\n"
+                + "    private String id;\n"
+                + "    private float score;\n"
+                + "    private char grade;\n"
+                + "    private Date createdAt;\n"
+                + "    private int status;\n"
+                + "    private byte[] counts;\n"
+                + "    private String info_title;\n"
+                + "    private $RealmBar bar;\n"
+                + "    private RealmList<$RealmBar> bars;\n"
+                + "\n"
+                + "    public String getId() {\n"
+                + "        return id;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setId(String id) {\n"
+                + "        this.id = id;\n"
+                + "    }\n"
+                + "\n"
+                + "    public float getScore() {\n"
+                + "        return score;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setScore(float score) {\n"
+                + "        this.score = score;\n"
+                + "    }\n"
+                + "\n"
+                + "    public char getGrade() {\n"
+                + "        return grade;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setGrade(char grade) {\n"
+                + "        this.grade = grade;\n"
+                + "    }\n"
+                + "\n"
+                + "    public Date getCreatedAt() {\n"
+                + "        return createdAt;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setCreatedAt(Date createdAt) {\n"
+                + "        this.createdAt = createdAt;\n"
+                + "    }\n"
+                + "\n"
+                + "    public int getStatus() {\n"
+                + "        return status;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setStatus(int status) {\n"
+                + "        this.status = status;\n"
+                + "    }\n"
+                + "\n"
+                + "    static int encodeStatus(Foo.Status status) {\n"
+                + "        return status.ordinal();\n"
+                + "    }\n"
+                + "\n"
+                + "    static Foo.Status decodeStatus(int status) {\n"
+                + "        return STATUS_VALUES[status];\n"
+                + "    }\n"
+                + "\n"
+                + "    public byte[] getCounts() {\n"
+                + "        return counts;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setCounts(byte[] counts) {\n"
+                + "        this.counts = counts;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String getInfo_title() {\n"
+                + "        return info_title;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setInfo_title(String info_title) {\n"
+                + "        this.info_title = info_title;\n"
+                + "    }\n"
+                + "\n"
+                + "    public $RealmBar getBar() {\n"
+                + "        return bar;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBar($RealmBar bar) {\n"
+                + "        this.bar = bar;\n"
+                + "    }\n"
+                + "\n"
+                + "    public RealmList<$RealmBar> getBars() {\n"
+                + "        return bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    public void setBars(RealmList<$RealmBar> bars) {\n"
+                + "        this.bars = bars;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel() {\n"
+                + "        return new AutoValue_Foo(id, score, grade, createdAt, decodeStatus(status), AvPackedArrays.unpackInts(counts), new AutoValue_Info(info_title), bar.toModel(), AvRealmHelper.fromRealmModels(bars));\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public final Foo toModel(AvConversionContext conversionContext) {\n"
+                + "        return new AutoValue_Foo(id, score, grade, createdAt, decodeStatus(status), AvPackedArrays.unpackInts(counts), new AutoValue_Info(info_title), conversionContext.toModel(bar), AvRealmHelper.fromRealmModels(bars, conversionContext));\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<Foo> toModels(Iterable<$RealmFoo> realmObjects) {\n"
+                + "        if (realmObjects instanceof RandomAccess && realmObjects instanceof List) {\n"
+                + "            List<$RealmFoo> list = (List<$RealmFoo>) realmObjects;\n"
+                + "            int size = list.size();\n"
+                + "            List<Foo> models = new ArrayList<Foo>(size);\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                models.add(list.get(i).toModel());\n"
+                + "            }\n"
+                + "            return models;\n"
+                + "        }\n"
+                + "        List<Foo> models = realmObjects instanceof Collection ? new ArrayList<Foo>(((Collection<?>) realmObjects).size()) : new ArrayList<Foo>();\n"
+                + "        for ($RealmFoo realmObject : realmObjects) {\n"
+                + "            models.add(realmObject.toModel());\n"
+                + "        }\n"
+                + "        return models;\n"
+                + "    }\n"
+                + "\n"
+                + "    public static List<$RealmFoo> toRealmObjects(List<Foo> models) {\n"
+                + "        int size = models.size();\n"
+                + "        List<$RealmFoo> realmObjects = new ArrayList<$RealmFoo>(size);\n"
+                + "        if (models instanceof RandomAccess) {\n"
+                + "            for (int i = 0; i < size; i++) {\n"
+                + "                realmObjects.add(models.get(i).toRealmObject());\n"
+                + "            }\n"
+                + "        } else {\n"
+                + "            for (Foo model : models) {\n"
+                + "                realmObjects.add(model.toRealmObject());\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return realmObjects;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Linked models and lists are compared with equals() only, use their own diff() to find what changed in them.\n"
+                + "      *\n"
+                + "      * @return the CHANGED_ indices of the properties that differ between the two models, every index if only one of them is null\n"
+                + "      */\n"
+                + "    public static BitSet diff(Foo previous, Foo current) {\n"
+                + "        BitSet changed = new BitSet(9);\n"
+                + "        if (previous == null || current == null) {\n"
+                + "            if (previous != current) {\n"
+                + "                changed.set(0, 9);\n"
+                + "            }\n"
+                + "            return changed;\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getId(), current.getId())) {\n"
+                + "            changed.set(CHANGED_ID);\n"
+                + "        }\n"
+                + "        if (Float.compare(previous.getScore(), current.getScore()) != 0) {\n"
+                + "            changed.set(CHANGED_SCORE);\n"
+                + "        }\n"
+                + "        if (previous.getGrade() != current.getGrade()) {\n"
+                + "            changed.set(CHANGED_GRADE);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getCreatedAt(), current.getCreatedAt())) {\n"
+                + "            changed.set(CHANGED_CREATED_AT);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getStatus(), current.getStatus())) {\n"
+                + "            changed.set(CHANGED_STATUS);\n"
+                + "        }\n"
+                + "        if (!Arrays.equals(previous.getCounts(), current.getCounts())) {\n"
+                + "            changed.set(CHANGED_COUNTS);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getInfo(), current.getInfo())) {\n"
+                + "            changed.set(CHANGED_INFO);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBar(), current.getBar())) {\n"
+                + "            changed.set(CHANGED_BAR);\n"
+                + "        }\n"
+                + "        if (!AvRealmHelper.equal(previous.getBars(), current.getBars())) {\n"
+                + "            changed.set(CHANGED_BARS);\n"
+                + "        }\n"
+                + "        return changed;\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * Reads a Realm object from the next JSON object, setting the fields of the properties it names\n"
+                + "      */\n"
+                + "    public static $RealmFoo fromJson(AvJsonReader reader) throws IOException {\n"
+                + "        $RealmFoo realmObject = new $RealmFoo();\n"
+                + "        reader.beginObject();\n"
+                + "        while (reader.hasNext()) {\n"
+                + "            String name = reader.nextName();\n"
+                + "            if (reader.peekNull()) {\n"
+                + "                reader.nextNull();\n"
+                + "                continue;\n"
+                + "            }\n"
+                + "            switch (name) {\n"
+                + "                case \"id\":\n"
+                + "                    realmObject.setId(reader.nextString());\n"
+                + "                    break;\n"
+                + "                case \"score\":\n"
+                + "                    realmObject.setScore((float) reader.nextDouble());\n"
+                + "                    break;\n"
+                + "                case \"grade\":\n"
+                + "                    realmObject.setGrade(AvJsonImporter.nextChar(reader));\n"
+                + "                    break;\n"
+                + "                case \"createdAt\":\n"
+                + "                    realmObject.setCreatedAt(new Date(reader.nextLong()));\n"
+                + "                    break;\n"
+                + "                case \"status\":\n"
+                + "                    realmObject.setStatus(encodeStatus(Foo.Status.valueOf(reader.nextString())));\n"
+                + "                    break;\n"
+                + "                case \"counts\":\n"
+                + "                    realmObject.setCounts(AvPackedArrays.pack(AvJsonImporter.nextIntArray(reader)));\n"
+                + "                    break;\n"
+                + "                case \"info\":\n"
+                + "                    reader.beginObject();\n"
+                + "                    while (reader.hasNext()) {\n"
+                + "                        String childName = reader.nextName();\n"
+                + "                        if (reader.peekNull()) {\n"
+                + "                            reader.nextNull();\n"
+                + "                            continue;\n"
+                + "                        }\n"
+                + "                        switch (childName) {\n"
+                + "                            case \"title\":\n"
+                + "                                realmObject.setInfo_title(reader.nextString());\n"
+                + "                                break;\n"
+                + "                            default:\n"
+                + "                                reader.skipValue();\n"
+                + "                                break;\n"
+                + "                        }\n"
+                + "                    }\n"
+                + "                    reader.endObject();\n"
+                + "                    break;\n"
+                + "                case \"bar\":\n"
+                + "                    realmObject.setBar($RealmBar.fromJson(reader));\n"
+                + "                    break;\n"
+                + "                case \"bars\":\n"
+                + "                    realmObject.setBars(new RealmList<$RealmBar>(AvJsonImporter.nextArray(reader, $RealmBar.JSON_READER, $RealmBar.class)));\n"
+                + "                    break;\n"
+                + "                default:\n"
+                + "                    reader.skipValue();\n"
+                + "                    break;\n"
+                + "            }\n"
+                + "        }\n"
+                + "        reader.endObject();\n"
+                + "        return realmObject;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source1, source2, source3))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedRealmObject);
+    }
+
+    @Test
+    public void testJsonLinkNotJson() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvJson;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvJson @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract Inner getInner();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    @AutoValue public abstract static class Inner implements AvModel<$RealmTest_Inner> {\n"
+                + "        abstract int getValue();\n"
+                + "        @Override public abstract $RealmTest_Inner toRealmObject();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.inner links to test.Test.Inner, which is not annotated with @AvJson");
+    }
+
+    @Test
+    public void testBinary() throws Exception {
+        JavaFileObject source1 = JavaFileObjects.forSourceString("test.Foo", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvBinary;\n"
+                + "import com.remind101.auto.value.realm.AvEmbedded;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import java.util.Date;\n"
+                + "import java.util.List;\n"
+                + "@AvBinary @AutoValue public abstract class Foo implements AvModel<$RealmFoo> {\n"
+                + "    @interface Nullable {}\n"
+                + "    enum Status { ACTIVE, ARCHIVED }\n"
+                + "    abstract String getId();\n"
+                + "    abstract boolean isRead();\n"
+                + "    abstract float getScore();\n"
+                + "    abstract char getGrade();\n"
+                + "    @Nullable abstract Long getCount();\n"
+                + "    abstract Date getCreatedAt();\n"
+                + "    abstract Status getStatus();\n"
+                + "    abstract int[] getCounts();\n"
+                + "    @AvEmbedded abstract Info getInfo();\n"
+                + "    abstract Bar getBar();\n"
+                + "    abstract List<Bar> getBars();\n"
+                + "    @Override public abstract $RealmFoo toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject source2 = JavaFileObjects.forSourceString("test.Info", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue public abstract class Info implements AvModel<$RealmInfo> {\n"
+                + "    abstract String getTitle();\n"
+                + "    abstract long getSize();\n"
+                + "    @Override public abstract $RealmInfo toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject source3 = JavaFileObjects.forSourceString("test.Bar", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvBinary;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvBinary @AutoValue public abstract class Bar implements AvModel<$RealmBar> {\n"
+                + "    abstract int getValue();\n"
+                + "    @Override public abstract $RealmBar toRealmObject();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedCodec = JavaFileObjects.forSourceString("test/$CodecFoo", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvBinaryCodec;\n"
+                + "import com.remind101.auto.value.realm.AvByteBuffers;\n"
+                + "import java.lang.IllegalStateException;\n"
+                + "import java.lang.Override;\n"
+                + "import java.nio.ByteBuffer;\n"
+                + "\n"
+                + "public final class $CodecFoo {\n"
+                + "    public static final int VERSION = 1606871229;\n"
+                + "\n"
+                + "    public static final AvBinaryCodec<Foo> CODEC = new AvBinaryCodec<Foo>() {\n"
+                + "        @Override\n"
+                + "        public void write(Foo model, ByteBuffer buffer) {\n"
+                + "            $CodecFoo.write(model, buffer);\n"
+                + "        }\n"
+                + "\n"
+                + "        @Override\n"
+                + "        public Foo read(ByteBuffer buffer) {\n"
+                + "            return $CodecFoo.read(buffer);\n"
+                + "        }\n"
+                + "\n"
+                + "        @Override\n"
+                + "        public int sizeOf(Foo model) {\n"
+                + "            return $CodecFoo.sizeOf(model);\n"
+                + "        }\n"
+                + "    };\n"
+                + "\n"
+                + "    private $CodecFoo() {\n"
+                + "    }\n"
+                + "\n"
+                + "    public static void write(Foo model, ByteBuffer buffer) {\n"
+                + "        if (model == null) {\n"
+                + "            buffer.put((byte) 0);\n"
+                + "            return;\n"
+                + "        }\n"
+                + "        buffer.put((byte) 1);\n"
+                + "        buffer.putInt(VERSION);\n"
+                + "        int lengthPosition = buffer.position();\n"
+                + "        buffer.putInt(0);\n"
+                + "        AvByteBuffers.put(buffer, model.getId());\n"
+                + "        buffer.put(model.isRead() ? (byte) 1 : (byte) 0);\n"
+                + "        buffer.putFloat(model.getScore());\n"
+                + "        buffer.putChar(model.getGrade());\n"
+                + "        AvByteBuffers.put(buffer, model.getCount());\n"
+                + "        AvByteBuffers.put(buffer, model.getCreatedAt());\n"
+                + "        buffer.putInt($RealmFoo.encodeStatus(model.getStatus()));\n"
+                + "        AvByteBuffers.put(buffer, model.getCounts());\n"
+                + "        AvByteBuffers.put(buffer, model.getInfo().getTitle());\n"
+                + "        buffer.putLong(model.getInfo().getSize());\n"
+                + "        $CodecBar.write(model.getBar(), buffer);\n"
+                + "        AvByteBuffers.putList(buffer, model.getBars(), $CodecBar.CODEC);\n"
+                + "        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);\n"
+                + "    }\n"
+                + "\n"
+                + "    public static Foo read(ByteBuffer buffer) {\n"
+                + "        if (buffer.get() == 0) {\n"
+                + "            return null;\n"
+                + "        }\n"
+                + "        int version = buffer.getInt();\n"
+                + "        int length = buffer.getInt();\n"
+                + "        if (version != VERSION) {\n"
+                + "            buffer.position(buffer.position() + length);\n"
+                + "            throw new IllegalStateException(\"Foo was written with version \" + version + \" instead of \" + VERSION);\n"
+                + "        }\n"
+                + "        return new AutoValue_Foo(AvByteBuffers.getString(buffer), buffer.get() != 0, buffer.getFloat(), buffer.getChar(), AvByteBuffers.getLong(buffer), AvByteBuffers.getDate(buffer), $RealmFoo.decodeStatus(buffer.getInt()), AvByteBuffers.getIntArray(buffer), new AutoValue_Info(AvByteBuffers.getString(buffer), buffer.getLong()), $CodecBar.read(buffer), AvByteBuffers.getList(buffer, $CodecBar.CODEC));\n"
+                + "    }\n"
+                + "\n"
+                + "    /**\n"
+                + "      * @return the number of bytes written by write()\n"
+                + "      */\n"
+                + "    public static int sizeOf(Foo model) {\n"
+                + "        if (model == null) {\n"
+                + "            return 1;\n"
+                + "        }\n"
+                + "        int size = 28;\n"
+                + "        size += AvByteBuffers.sizeOf(model.getId());\n"
+                + "        size += AvByteBuffers.sizeOf(model.getCount());\n"
+                + "        size += AvByteBuffers.sizeOf(model.getCreatedAt());\n"
+                + "        size += AvByteBuffers.sizeOf(model.getCounts());\n"
+                + "        size += AvByteBuffers.sizeOf(model.getInfo().getTitle());\n"
+                + "        size += $CodecBar.sizeOf(model.getBar());\n"
+                + "        size += AvByteBuffers.sizeOfList(model.getBars(), $CodecBar.CODEC);\n"
+                + "        return size;\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source1, source2, source3))
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expectedCodec);
+    }
+
+    @Test
+    public void testBinaryLinkNotBinary() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvBinary;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import java.util.List;\n"
+                + "@AvBinary @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    abstract List<Inner> getInners();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    @AutoValue public abstract static class Inner implements AvModel<$RealmTest_Inner> {\n"
+                + "        abstract int getValue();\n"
+                + "        @Override public abstract $RealmTest_Inner toRealmObject();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .processedWith(new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Test.inners links to test.Test.Inner, which is not annotated with @AvBinary");
+    }
+
+    @Test
+    public void testSchemaRegistry() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvIndex;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvPrimaryKey;\n"
+                + "import java.util.List;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvPrimaryKey abstract String getName();\n"
+                + "    @AvIndex abstract long getTimestamp();\n"
+                + "    abstract List<Inner> getInners();\n"
+                + "    @Override public abstract $RealmTest toRealmObject();\n"
+                + "    @AutoValue public abstract static class Inner implements AvModel<$RealmTest_Inner> {\n"
+                + "        @SuppressWarnings(\"mutable\") abstract byte[] getData();\n"
+                + "        @Override public abstract $RealmTest_Inner toRealmObject();\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/Schemas", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvModelSchema;\n"
+                + "import com.remind101.auto.value.realm.AvSchemaRegistry;\n"
+                + "import io.realm.RealmList;\n"
+                + "import java.lang.Class;\n"
+                + "import java.lang.String;\n"
+                + "\n"
+                + "public final class Schemas {\n"
+                + "    public static final AvSchemaRegistry REGISTRY = new AvSchemaRegistry(\n"
+                + "            new AvModelSchema(Test.class, $RealmTest.class, \"name\", new String[]{\"timestamp\"}, new String[]{\"name\", \"timestamp\", \"inners\"}, new Class<?>[]{String.class, long.class, RealmList.class}),\n"
+                + "            new AvModelSchema(Test.Inner.class, $RealmTest_Inner.class, null, new String[]{}, new String[]{\"data\"}, new Class<?>[]{byte[].class}));\n"
+                + "\n"
+                + "    private Schemas() {\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .withCompilerOptions("-Aavrealm.registry=test.Schemas", "-implicit:class", "-Xlint:-processing")
+                .processedWith(new AutoValueProcessor(), new AvSchemaRegistryProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(expectedSource);
+    }
+
+    @Test
+    public void testSchemaRegistryPackagePrivateModel() throws Exception {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.models.Item", ""
+                + "package test.models;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AutoValue abstract class Item implements AvModel<$RealmItem> {\n"
+                + "    abstract String getLabel();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/Schemas", ""
+                + "package test;\n"
+                + "\n"
+                + "import com.remind101.auto.value.realm.AvModelSchema;\n"
+                + "import com.remind101.auto.value.realm.AvSchemaRegistry;\n"
+                + "import java.lang.Class;\n"
+                + "import java.lang.String;\n"
+                + "import test.models.$RealmItem;\n"
+                + "\n"
+                + "public final class Schemas {\n"
+                + "    public static final AvSchemaRegistry REGISTRY = new AvSchemaRegistry(\n"
+                + "            new AvModelSchema($RealmItem.MODEL_CLASS, $RealmItem.class, null, new String[]{}, new String[]{\"label\"}, new Class<?>[]{String.class}));\n"
+                + "\n"
+                + "    private Schemas() {\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources())
+                .that(Arrays.asList(source))
+                .withCompilerOptions("-Aavrealm.registry=test.Schemas", "-implicit:class", "-Xlint:-processing")
+                .processedWith(new AutoValueProcessor(), new AvSchemaRegistryProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(expectedSource);
+    }
+
+    @Test
+    public void testWideModel() throws Exception {
+        File output = compile(createWideModelSource());
+        for (String className : Arrays.asList("AutoValue_Test", "$RealmTest", "$LiveTest")) {
+            for (Map.Entry<String, Integer> method : readCodeLengths(new File(output, "test/" + className + ".class")).entrySet()) {
+                assertTrue(className + "." + method.getKey() + " has " + method.getValue() + " bytes of bytecode",
+                        method.getValue() <= MAX_METHOD_CODE_LENGTH);
+            }
+        }
+    }
+
+    @Test
+    public void testWideModelDiff() throws Exception {
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{compile(createWideModelSource()).toURI().toURL()}, getClass().getClassLoader());
+        Class<?> realmClass = classLoader.loadClass("test.$RealmTest");
+        Object[] values = new Object[WIDE_MODEL_PROPERTY_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 2 == 0 ? (Object) ("text" + i) : (Object) i;
+        }
+        Object previous = invoke(newRealmObject(realmClass, values), "toModel");
+        values[100] = "changed";
+        values[201] = -1;
+        Object current = invoke(newRealmObject(realmClass, values), "toModel");
+
+        Class<?> modelClass = classLoader.loadClass("test.Test");
+        Method diff = realmClass.getMethod("diff", modelClass, modelClass);
+        BitSet expected = new BitSet();
+        expected.set(realmClass.getField("CHANGED_TEXT100").getInt(null));
+        expected.set(realmClass.getField("CHANGED_COUNT201").getInt(null));
+        assertEquals(expected, diff.invoke(null, previous, current));
+        assertEquals(new BitSet(), diff.invoke(null, previous, previous));
+        assertEquals(WIDE_MODEL_PROPERTY_COUNT, ((BitSet) diff.invoke(null, previous, null)).cardinality());
+    }
+
+    @Test
+    public void testLiveModelMatchesAutoValue() throws Exception {
+        String source = ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvLive;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "@AvLive @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @interface Nullable {}\n"
+                + "    abstract String getName();\n"
+                + "    @Nullable abstract String getNick();\n"
+                + "    abstract int getCount();\n"
+                + "    abstract long getId();\n"
+                + "    abstract float getRatio();\n"
+                + "    abstract double getScore();\n"
+                + "    abstract boolean isRead();\n"
+                + "    abstract short getFlags();\n"
+                + "    @SuppressWarnings(\"mutable\") abstract byte[] getData();\n"
+                + "}\n";
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{compile(source).toURI().toURL()}, getClass().getClassLoader());
+        Class<?> realmClass = classLoader.loadClass("test.$RealmTest");
+        Object realmObject = realmClass.newInstance();
+        realmClass.getMethod("setName", String.class).invoke(realmObject, "name");
+        realmClass.getMethod("setCount", int.class).invoke(realmObject, -3);
+        realmClass.getMethod("setId", long.class).invoke(realmObject, 1L << 40);
+        realmClass.getMethod("setRatio", float.class).invoke(realmObject, 0.5f);
+        realmClass.getMethod("setScore", double.class).invoke(realmObject, Double.NaN);
+        realmClass.getMethod("setRead", boolean.class).invoke(realmObject, true);
+        realmClass.getMethod("setFlags", short.class).invoke(realmObject, (short) 7);
+        realmClass.getMethod("setData", byte[].class).invoke(realmObject, (Object) new byte[]{1, 2});
+
+        Object live = realmClass.getMethod("toLiveModel").invoke(realmObject);
+        Object frozen = realmClass.getMethod("toModel").invoke(realmObject);
+        assertTrue(live.equals(frozen));
+        assertTrue(frozen.equals(live));
+        assertEquals(frozen.hashCode(), live.hashCode());
+        assertEquals(frozen.toString(), live.toString());
+
+        realmClass.getMethod("setCount", int.class).invoke(realmObject, 4);
+        assertFalse(live.equals(frozen));
+        assertFalse(frozen.equals(live));
+    }
+
+    @Test
+    public void testApplyToCopiesReplacedLinks() throws Exception {
+        String source = ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvPrimaryKey;\n"
+                + "import java.util.List;\n"
+                + "@AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @interface Nullable {}\n"
+                + "    @AvPrimaryKey abstract String getId();\n"
+                + "    @Nullable abstract Other getOther();\n"
+                + "    abstract List<Item> getItems();\n"
+                + "    @AutoValue public abstract static class Other implements AvModel<$RealmTest_Other> {\n"
+                + "        @AvPrimaryKey abstract String getName();\n"
+                + "        abstract int getCount();\n"
+                + "    }\n"
+                + "    @AutoValue public abstract static class Item implements AvModel<$RealmTest_Item> {\n"
+                + "        abstract String getLabel();\n"
+                + "    }\n"
+                + "}\n";
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{compile(source).toURI().toURL()}, getClass().getClassLoader());
+        Class<?> realmClass = classLoader.loadClass("test.$RealmTest");
+        Class<?> otherClass = classLoader.loadClass("test.$RealmTest_Other");
+        Class<?> itemClass = classLoader.loadClass("test.$RealmTest_Item");
+        Object model = invoke(newRealmObject(realmClass, "t", newRealmObject(otherClass, "o", 2),
+                new RealmList<>(newRealmObject(itemClass, "a"), newRealmObject(itemClass, "b"))), "toModel");
+        final List<Object> copied = new ArrayList<>();
+        final List<Object> copiedOrUpdated = new ArrayList<>();
+        Realm realm = new Realm() {
+            @Override
+            public <E extends RealmModel> E copyToRealm(E object) {
+                copied.add(object);
+                return object;
+            }
+
+            @Override
+            public <E extends RealmModel> E copyToRealmOrUpdate(E object) {
+                copiedOrUpdated.add(object);
+                return object;
+            }
+        };
+
+        // The existing link is updated in place, the list of another size is replaced, reusing the elements of the same
+        // index as the items have no primary key, and copying the others
+        Object other = newRealmObject(otherClass, "o", 1);
+        Object item = newRealmObject(itemClass, "x");
+        Object target = newRealmObject(realmClass, "t", other, new RealmList<>(item));
+        invoke(model, "applyTo", realm, target);
+        assertSame(other, invoke(target, "getOther"));
+        assertEquals(2, invoke(other, "getCount"));
+        List<?> items = (List<?>) invoke(target, "getItems");
+        assertEquals(Arrays.asList(item, copied.get(0)), items);
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(invoke(items.get(0), "getLabel"), invoke(items.get(1), "getLabel")));
+        assertEquals(1, copied.size());
+        assertTrue(copiedOrUpdated.isEmpty());
+
+        // A missing link is replaced by a copy, updating the row of the same primary key if there is one
+        target = newRealmObject(realmClass, "t", null, new RealmList<>(newRealmObject(itemClass, "a"), newRealmObject(itemClass, "b")));
+        invoke(model, "applyTo", realm, target);
+        assertEquals(Collections.singletonList(invoke(target, "getOther")), copiedOrUpdated);
+        assertEquals(2, invoke(invoke(target, "getOther"), "getCount"));
+        assertEquals(1, copied.size());
+
+        // A link to the row of another key is replaced, that row may be linked from other objects and keeps its key
+        Object shared = newRealmObject(otherClass, "c1", 1);
+        target = newRealmObject(realmClass, "t", shared, new RealmList<>(newRealmObject(itemClass, "a"), newRealmObject(itemClass, "b")));
+        copiedOrUpdated.clear();
+        invoke(model, "applyTo", realm, target);
+        assertEquals("c1", invoke(shared, "getName"));
+        assertEquals(1, invoke(shared, "getCount"));
+        assertEquals(Collections.singletonList(invoke(target, "getOther")), copiedOrUpdated);
+        assertEquals("o", invoke(invoke(target, "getOther"), "getName"));
+    }
+
+    @Test
+    public void testSaveCachesAfterCommit() throws Exception {
+        String source = ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvCached;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvPrimaryKey;\n"
+                + "@AvCached @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvPrimaryKey abstract String getName();\n"
+                + "    abstract int getValue();\n"
+                + "}\n";
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{compile(source).toURI().toURL()}, getClass().getClassLoader());
+        final Class<?> modelClass = classLoader.loadClass("test.Test");
+        Class<?> realmClass = classLoader.loadClass("test.$RealmTest");
+        final Object model = invoke(newRealmObject(realmClass, "a", 1), "toModel");
+        final List<String> calls = new ArrayList<>();
+        Realm realm = new Realm() {
+            @Override
+            public void commitTransaction() {
+                calls.add("commit");
+                assertNull(AvModelCache.getInstance().get(modelClass, "a"));
+            }
+
+            @Override
+            public void cancelTransaction() {
+                calls.add("cancel");
+            }
+
+            @Override
+            public <E extends RealmModel> E copyToRealmOrUpdate(E object) {
+                calls.add("copy");
+                if (calls.size() > 2) {
+                    throw new IllegalStateException("copy failed");
+                }
+                return object;
+            }
+        };
+
+        try {
+            invoke(realmClass.newInstance(), "save", realm, model);
+            assertEquals(Arrays.asList("copy", "commit"), calls);
+            assertSame(model, AvModelCache.getInstance().get(modelClass, "a"));
+
+            AvModelCache.getInstance().clear();
+            try {
+                invoke(realmClass.newInstance(), "save", realm, model);
+                fail();
+            } catch (InvocationTargetException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertEquals(Arrays.asList("copy", "commit", "copy", "cancel"), calls);
+            assertNull(AvModelCache.getInstance().get(modelClass, "a"));
+        } finally {
+            AvModelCache.getInstance().clear();
+        }
+    }
+
+    @Test
+    public void testFindModelDoesNotCacheOverSave() throws Exception {
+        String source = ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "import com.remind101.auto.value.realm.AvCached;\n"
+                + "import com.remind101.auto.value.realm.AvModel;\n"
+                + "import com.remind101.auto.value.realm.AvPrimaryKey;\n"
+                + "@AvCached @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n"
+                + "    @AvPrimaryKey abstract String getName();\n"
+                + "    abstract int getValue();\n"
+                + "}\n";
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{compile(source).toURI().toURL()}, getClass().getClassLoader());
+        Class<?> modelClass = classLoader.loadClass("test.Test");
+        Class<?> realmClass = classLoader.loadClass("test.$RealmTest");
+        final Object realmObject = realmClass.newInstance();
+        final Object staleRow = newRealmObject(realmClass, "a", 1);
+        final Object saved = invoke(newRealmObject(realmClass, "a", 2), "toModel");
+        final Realm writer = new Realm();
+        Realm reader = new Realm() {
+            @Override
+            public <E extends RealmModel> RealmQuery<E> where(Class<E> clazz) {
+                return new RealmQuery<E>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public E findFirst() {
+                        // The row is read before the save made meanwhile commits
+                        try {
+                            invoke(realmObject, "save", writer, saved);
+                        } catch (Exception e) {
+                            throw new AssertionError(e);
+                        }
+                        return (E) staleRow;
+                    }
+                };
+            }
+        };
+
+        try {
+            assertEquals(1, invoke(invoke(realmObject, "findModelByName", reader, "a"), "getValue"));
+            assertSame(saved, AvModelCache.getInstance().get(modelClass, "a"));
+        } finally {
+            AvModelCache.getInstance().clear();
+        }
+    }
+
+    /**
+     * Creates a Realm object, setting its fields in the order they are declared in.
+     */
+    private static String createWideModelSource() {
+        StringBuilder source = new StringBuilder()
+                .append("package test;\n")
+                .append("import com.google.auto.value.AutoValue;\n")
+                .append("import com.remind101.auto.value.realm.AvLive;\n")
+                .append("import com.remind101.auto.value.realm.AvModel;\n")
+                .append("@AvLive @AutoValue public abstract class Test implements AvModel<$RealmTest> {\n");
+        for (int i = 0; i < WIDE_MODEL_PROPERTY_COUNT; i++) {
+            source.append(i % 2 == 0 ? "    abstract String getText" : "    abstract int getCount").append(i).append("();\n");
+        }
+        return source.append("    @Override public abstract $RealmTest toRealmObject();\n")
+                .append("}\n")
+                .toString();
+    }
+
+    private static Object newRealmObject(Class<?> realmClass, Object... values) throws Exception {
+        Object realmObject = realmClass.newInstance();
+        Field[] fields = realmClass.getDeclaredFields();
+        int i = 0;
+        for (Field field : fields) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                field.set(realmObject, values[i++]);
+            }
+        }
+        return realmObject;
+    }
+
+    private static Object invoke(Object target, String methodName, Object... arguments) throws Exception {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getName().equals(methodName) && method.getParameterTypes().length == arguments.length) {
+                    method.setAccessible(true);
+                    return method.invoke(target, arguments);
+                }
+            }
+        }
+        throw new NoSuchMethodException(methodName);
+    }
+
+    /**
+     * Compiles a source of the test package with AutoValue and this extension.
+     *
+     * @return the folder holding the generated sources and the class files
+     */
+    private File compile(String source) throws IOException {
+        File output = temporaryFolder.newFolder();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(output));
+        fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(output));
+        fileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.<File>emptyList());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, null, null,
+                Collections.singleton(JavaFileObjects.forSourceString("test.Test", source)));
+        task.setProcessors(Collections.singleton(new AutoValueProcessor()));
+        assertTrue(task.call());
+        return output;
+    }
+
+    /**
+     * Reads the length of the bytecode of each method of a class file.
+     *
+     * @return the lengths by method name and descriptor
+     */
+    private static Map<String, Integer> readCodeLengths(File classFile) throws IOException {
+        Map<String, Integer> codeLengths = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new FileInputStream(classFile))) {
+            in.skipBytes(8); // magic, minor and major versions
+            String[] utf8Constants = new String[in.readUnsignedShort()];
+            for (int i = 1; i < utf8Constants.length; i++) {
+                int tag = in.readUnsignedByte();
+                if (tag == 1) {
+                    utf8Constants[i] = in.readUTF();
+                } else if (tag == 5 || tag == 6) {
+                    in.skipBytes(8); // long and double constants take two entries
+                    i++;
+                } else if (tag == 7 || tag == 8 || tag == 16 || tag == 19 || tag == 20) {
+                    in.skipBytes(2);
+                } else if (tag == 15) {
+                    in.skipBytes(3);
+                } else {
+                    in.skipBytes(4);
+                }
+            }
+            in.skipBytes(6); // access flags, this and super classes
+            in.skipBytes(2 * in.readUnsignedShort());
+            for (int members = 0; members < 2; members++) { // fields, then methods
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    in.skipBytes(2);
+                    String name = utf8Constants[in.readUnsignedShort()] + utf8Constants[in.readUnsignedShort()];
+                    int attributeCount = in.readUnsignedShort();
+                    for (int j = 0; j < attributeCount; j++) {
+                        String attributeName = utf8Constants[in.readUnsignedShort()];
+                        int length = in.readInt();
+                        if (attributeName.equals("Code")) {
+                            in.skipBytes(4); // max stack and max locals
+                            codeLengths.put(name, in.readInt());
+                            in.skipBytes(length - 8);
+                        } else {
+                            in.skipBytes(length);
+                        }
+                    }
+                }
+            }
+        }
+        return codeLengths;
+    }
 }
@@ -0,0 +1,102 @@
+package com.remind101.auto.value.realm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Wraps a processor and records the originating elements of every source file it creates, the information
+ * incremental builds rely on to know which inputs a generated file depends on.
+ */
+public class OriginatingElementsRecorder implements Processor {
+    private final Processor delegate;
+    private final Map<String, List<String>> originatingElements = new HashMap<>();
+
+    public OriginatingElementsRecorder(Processor delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the qualified names of the originating elements of the given generated source file,
+     * or null if the file was not created
+     */
+    public List<String> originatingElements(String sourceFileName) {
+        return originatingElements.get(sourceFileName);
+    }
+
+    @Override
+    public void init(final ProcessingEnvironment processingEnv) {
+        final Filer filer = (Filer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Filer.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("createSourceFile")) {
+                    List<String> names = new ArrayList<>();
+                    for (Element element : (Element[]) args[1]) {
+                        names.add(((TypeElement) element).getQualifiedName().toString());
+                    }
+                    originatingElements.put(args[0].toString(), names);
+                }
+                return invokeDelegate(method, processingEnv.getFiler(), args);
+            }
+        });
+        delegate.init((ProcessingEnvironment) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ProcessingEnvironment.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getFiler")) {
+                    return filer;
+                }
+                return invokeDelegate(method, processingEnv, args);
+            }
+        }));
+    }
+
+    private static Object invokeDelegate(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        return delegate.process(annotations, roundEnv);
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+        return delegate.getCompletions(element, annotation, member, userText);
+    }
+}
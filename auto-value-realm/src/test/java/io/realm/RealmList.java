@@ -1,15 +1,16 @@
 package io.realm;
 
-import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 
-public class RealmList<E> extends AbstractList<E> {
-    @Override
-    public E get(int index) {
-        return null;
+/**
+ * Stands for an unmanaged RealmList, which is backed by an ArrayList presized by the varargs constructor.
+ */
+public class RealmList<E> extends ArrayList<E> {
+    public RealmList() {
     }
 
-    @Override
-    public int size() {
-        return 0;
+    public RealmList(E... objects) {
+        super(Arrays.asList(objects));
     }
 }
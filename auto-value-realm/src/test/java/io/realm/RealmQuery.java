@@ -0,0 +1,53 @@
+package io.realm;
+
+import java.util.Date;
+
+public class RealmQuery<E extends RealmModel> {
+    public RealmQuery<E> equalTo(String fieldName, String value) {
+        return this;
+    }
+
+    public RealmQuery<E> equalTo(String fieldName, Byte value) {
+        return this;
+    }
+
+    public RealmQuery<E> equalTo(String fieldName, Short value) {
+        return this;
+    }
+
+    public RealmQuery<E> equalTo(String fieldName, Integer value) {
+        return this;
+    }
+
+    public RealmQuery<E> equalTo(String fieldName, Long value) {
+        return this;
+    }
+
+    public RealmQuery<E> equalTo(String fieldName, Boolean value) {
+        return this;
+    }
+
+    public RealmQuery<E> equalTo(String fieldName, Date value) {
+        return this;
+    }
+
+    public RealmQuery<E> greaterThanOrEqualTo(String fieldName, long value) {
+        return this;
+    }
+
+    public RealmQuery<E> lessThan(String fieldName, long value) {
+        return this;
+    }
+
+    public RealmResults<E> findAll() {
+        return new RealmResults<>();
+    }
+
+    public RealmResults<E> findAllSorted(String fieldName, Sort sortOrder) {
+        return new RealmResults<>();
+    }
+
+    public E findFirst() {
+        return null;
+    }
+}
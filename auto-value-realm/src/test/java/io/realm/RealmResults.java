@@ -0,0 +1,15 @@
+package io.realm;
+
+import java.util.AbstractList;
+
+public class RealmResults<E extends RealmModel> extends AbstractList<E> {
+    @Override
+    public E get(int index) {
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return 0;
+    }
+}
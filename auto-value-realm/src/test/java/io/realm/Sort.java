@@ -0,0 +1,6 @@
+package io.realm;
+
+public enum Sort {
+    ASCENDING,
+    DESCENDING
+}
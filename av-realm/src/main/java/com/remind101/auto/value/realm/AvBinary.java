@@ -0,0 +1,14 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AvModel that can be written to and read from a ByteBuffer without reflection. A $CodecFoo class is generated
+ * for a model Foo, with static write(Foo, ByteBuffer), read(ByteBuffer) and sizeOf(Foo) methods, and a CODEC to
+ * write lists of models with {@link AvByteBuffers}.
+ * <p>
+ * Each model is written as a record made of a presence byte, the version of its layout and the length of its
+ * properties, followed by the properties in the order of the AutoValue constructor. The version changes with the
+ * names and types of the properties, and reading a record of another version fails. Linked models must be annotated
+ * with AvBinary too.
+ */
+public @interface AvBinary {
+}
@@ -0,0 +1,27 @@
+package com.remind101.auto.value.realm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes models of a type to a ByteBuffer and reads them back. Implemented by the CODEC of the generated $Codec
+ * classes, see {@link AvBinary}.
+ */
+public interface AvBinaryCodec<T> {
+    /**
+     * Writes a model, or null, at the position of the buffer.
+     */
+    void write(T model, ByteBuffer buffer);
+
+    /**
+     * Reads a model, or null, from the position of the buffer.
+     *
+     * @throws IllegalStateException if the model was written with another version of its layout. The position of the
+     *                               buffer is moved past the model before throwing
+     */
+    T read(ByteBuffer buffer);
+
+    /**
+     * @return the number of bytes written by {@link #write(Object, ByteBuffer)}
+     */
+    int sizeOf(T model);
+}
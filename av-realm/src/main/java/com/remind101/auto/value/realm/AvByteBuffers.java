@@ -0,0 +1,357 @@
+package com.remind101.auto.value.realm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runtime support for the codecs generated for the models annotated with {@link AvBinary}. Writes the values that are
+ * not primitives, each with its own size or null marker, so that null round trips: objects are preceded by a byte
+ * telling whether they are null, arrays, strings and lists by their length, -1 standing for null. Strings are encoded
+ * in UTF-8 straight into the buffer.
+ */
+public final class AvByteBuffers {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int NULL_LENGTH = -1;
+
+    private AvByteBuffers() {
+    }
+
+    public static void put(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(utf8Length(value));
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >>> 6));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | codePoint >>> 18));
+                buffer.put((byte) (0x80 | codePoint >>> 12 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint >>> 6 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Like String.getBytes(), an unpaired surrogate is replaced
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | c >>> 12));
+                buffer.put((byte) (0x80 | c >>> 6 & 0x3f));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            }
+        }
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, UTF_8);
+        }
+        return value;
+    }
+
+    public static int sizeOf(String value) {
+        return value == null ? 4 : 4 + utf8Length(value);
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                utf8Length += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // 4 bytes for the two chars
+                utf8Length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                utf8Length += 2;
+            }
+        }
+        return utf8Length;
+    }
+
+    public static void put(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    public static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    public static int sizeOf(byte[] value) {
+        return value == null ? 4 : 4 + value.length;
+    }
+
+    public static void put(ByteBuffer buffer, int[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(value.length);
+        for (int element : value) {
+            buffer.putInt(element);
+        }
+    }
+
+    public static int[] getIntArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        int[] value = new int[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = buffer.getInt();
+        }
+        return value;
+    }
+
+    public static int sizeOf(int[] value) {
+        return value == null ? 4 : 4 + 4 * value.length;
+    }
+
+    public static void put(ByteBuffer buffer, long[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(value.length);
+        for (long element : value) {
+            buffer.putLong(element);
+        }
+    }
+
+    public static long[] getLongArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        long[] value = new long[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = buffer.getLong();
+        }
+        return value;
+    }
+
+    public static int sizeOf(long[] value) {
+        return value == null ? 4 : 4 + 8 * value.length;
+    }
+
+    public static void put(ByteBuffer buffer, double[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(value.length);
+        for (double element : value) {
+            buffer.putDouble(element);
+        }
+    }
+
+    public static double[] getDoubleArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        double[] value = new double[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = buffer.getDouble();
+        }
+        return value;
+    }
+
+    public static int sizeOf(double[] value) {
+        return value == null ? 4 : 4 + 8 * value.length;
+    }
+
+    public static void put(ByteBuffer buffer, Date value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.putLong(value.getTime());
+        }
+    }
+
+    public static Date getDate(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : new Date(buffer.getLong());
+    }
+
+    public static int sizeOf(Date value) {
+        return value == null ? 1 : 1 + 8;
+    }
+
+    public static void put(ByteBuffer buffer, Boolean value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.put(value ? (byte) 1 : (byte) 0);
+        }
+    }
+
+    public static Boolean getBoolean(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.get() != 0;
+    }
+
+    public static int sizeOf(Boolean value) {
+        return value == null ? 1 : 1 + 1;
+    }
+
+    public static void put(ByteBuffer buffer, Byte value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    public static Byte getByte(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.get();
+    }
+
+    public static int sizeOf(Byte value) {
+        return value == null ? 1 : 1 + 1;
+    }
+
+    public static void put(ByteBuffer buffer, Short value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.putShort(value);
+        }
+    }
+
+    public static Short getShort(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.getShort();
+    }
+
+    public static int sizeOf(Short value) {
+        return value == null ? 1 : 1 + 2;
+    }
+
+    public static void put(ByteBuffer buffer, Integer value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.putInt(value);
+        }
+    }
+
+    public static Integer getInteger(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.getInt();
+    }
+
+    public static int sizeOf(Integer value) {
+        return value == null ? 1 : 1 + 4;
+    }
+
+    public static void put(ByteBuffer buffer, Long value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.putLong(value);
+        }
+    }
+
+    public static Long getLong(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.getLong();
+    }
+
+    public static int sizeOf(Long value) {
+        return value == null ? 1 : 1 + 8;
+    }
+
+    public static void put(ByteBuffer buffer, Float value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.putFloat(value);
+        }
+    }
+
+    public static Float getFloat(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.getFloat();
+    }
+
+    public static int sizeOf(Float value) {
+        return value == null ? 1 : 1 + 4;
+    }
+
+    public static void put(ByteBuffer buffer, Double value) {
+        buffer.put(value == null ? (byte) 0 : (byte) 1);
+        if (value != null) {
+            buffer.putDouble(value);
+        }
+    }
+
+    public static Double getDouble(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.getDouble();
+    }
+
+    public static int sizeOf(Double value) {
+        return value == null ? 1 : 1 + 8;
+    }
+
+    public static <T> void putList(ByteBuffer buffer, List<T> models, AvBinaryCodec<T> codec) {
+        if (models == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        int size = models.size();
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            codec.write(models.get(i), buffer);
+        }
+    }
+
+    /**
+     * @return an immutable list of the models read
+     */
+    public static <T> List<T> getList(ByteBuffer buffer, AvBinaryCodec<T> codec) {
+        int size = buffer.getInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+        List<T> models = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            models.add(codec.read(buffer));
+        }
+        return Collections.unmodifiableList(models);
+    }
+
+    public static <T> int sizeOfList(List<T> models, AvBinaryCodec<T> codec) {
+        if (models == null) {
+            return 4;
+        }
+        int size = 4;
+        for (int i = 0; i < models.size(); i++) {
+            size += codec.sizeOf(models.get(i));
+        }
+        return size;
+    }
+}
@@ -0,0 +1,10 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AvModel whose converted instances are kept in the {@link AvModelCache}, keyed by their primary key.
+ * The Realm class gets a findModelByX(Realm, key) method reading through the cache, and a save(Realm, model) method
+ * writing the model in its own transaction and caching it once the transaction is committed.
+ * The model must have an {@link AvPrimaryKey}.
+ */
+public @interface AvCached {
+}
@@ -0,0 +1,10 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Gives a constant of an enum a stable code, stored in Realm instead of its ordinal. Constants can then be reordered,
+ * added or removed without changing the meaning of existing rows. Either every constant of an enum has a unique code,
+ * or none of them does.
+ */
+public @interface AvCode {
+    int value();
+}
@@ -0,0 +1,9 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Implemented by the generated AutoValue classes to convert a model while sharing an {@link AvConversionContext}
+ * with its nested models.
+ */
+public interface AvContextualModel<T> {
+    T toRealmObject(AvConversionContext conversionContext);
+}
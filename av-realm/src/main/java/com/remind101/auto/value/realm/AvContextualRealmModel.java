@@ -0,0 +1,9 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Implemented by the generated Realm classes to convert a Realm object while sharing an {@link AvConversionContext}
+ * with its nested Realm objects.
+ */
+public interface AvContextualRealmModel<T> {
+    T toModel(AvConversionContext conversionContext);
+}
@@ -0,0 +1,52 @@
+package com.remind101.auto.value.realm;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the conversions done during a single conversion call, so that an object reachable several times from
+ * the converted graph is only converted once and every reference to it shares the same result.
+ * <p>
+ * Models are matched by identity. Realm objects are matched with equals(), as Realm returns a new instance every time
+ * a link to a managed object is read. A context is not thread safe and should not outlive the call it is used for.
+ * Cycles between Realm objects cannot be converted into immutable models and are not supported.
+ */
+public final class AvConversionContext {
+    private final Map<Object, Object> realmObjects = new IdentityHashMap<>();
+    private final Map<Object, Object> models = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T extends AvModel<R>, R extends AvRealmModel<T>> R toRealmObject(T model) {
+        if (model == null) {
+            return null;
+        }
+        Object realmObject = realmObjects.get(model);
+        if (realmObject == null) {
+            if (model instanceof AvContextualModel) {
+                realmObject = ((AvContextualModel<R>) model).toRealmObject(this);
+            } else {
+                realmObject = model.toRealmObject();
+            }
+            realmObjects.put(model, realmObject);
+        }
+        return (R) realmObject;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends AvModel<R>, R extends AvRealmModel<T>> T toModel(R realmObject) {
+        if (realmObject == null) {
+            return null;
+        }
+        Object model = models.get(realmObject);
+        if (model == null) {
+            if (realmObject instanceof AvContextualRealmModel) {
+                model = ((AvContextualRealmModel<T>) realmObject).toModel(this);
+            } else {
+                model = realmObject.toModel();
+            }
+            models.put(realmObject, model);
+        }
+        return (T) model;
+    }
+}
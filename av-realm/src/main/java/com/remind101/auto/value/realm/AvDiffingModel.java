@@ -0,0 +1,21 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Implemented by the generated AutoValue classes to update an existing Realm object in place. Only the properties that
+ * differ are written, which avoids a native write per column on managed objects that mostly didn't change.
+ * <p>
+ * The primary key of the target is never written: it is the row of the model's key. Linked Realm objects are updated
+ * in place recursively when they have the same primary key as the linked model, and list elements are matched by
+ * primary key, or by index for models without one. Links to another row, and elements matching none, are replaced by
+ * Realm objects copied into the Realm with copyToRealmOrUpdate(), or copyToRealm() for models without a primary key,
+ * so the row a link used to point to is never renamed. The target must be managed by that Realm and written in a
+ * transaction.
+ * <p>
+ * Declare {@code public abstract void applyTo(Realm realm, $RealmFoo target);} in an AvModel to expose it on the model
+ * itself.
+ *
+ * @param <D> the Realm the target belongs to, io.realm.Realm for the generated classes
+ */
+public interface AvDiffingModel<D, T> {
+    void applyTo(D realm, T target);
+}
@@ -0,0 +1,11 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AvModel property that is stored in the columns of its parent instead of in a linked Realm object. Every
+ * property of the child becomes a field of the parent Realm class, prefixed with the name of the property
+ * (info_title for the title of an embedded info), and the child is rebuilt from those fields by toModel().
+ * The child must be in the same package as its parent, must only have properties Realm stores natively, and cannot
+ * be null.
+ */
+public @interface AvEmbedded {
+}
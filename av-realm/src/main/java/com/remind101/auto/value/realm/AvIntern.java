@@ -0,0 +1,9 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks a String property with few distinct values, like a country code or a content type. toModel() returns the
+ * values through the {@link AvInternPool}, so models read from many rows share one instance of each value instead of
+ * holding a copy per row.
+ */
+public @interface AvIntern {
+}
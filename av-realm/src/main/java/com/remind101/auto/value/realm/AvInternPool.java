@@ -0,0 +1,89 @@
+package com.remind101.auto.value.realm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used pool of Strings, used by the generated toModel() for {@link AvIntern} properties.
+ * Unlike {@link String#intern()}, the pool forgets the values it has not seen recently, so a column with more distinct
+ * values than expected costs at most the size of the pool. The hit and miss counters tell whether a property is worth
+ * interning.
+ */
+public final class AvInternPool {
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final AvInternPool instance = new AvInternPool(DEFAULT_MAX_SIZE);
+
+    private final LinkedHashMap<String, String> values;
+    private int maxSize;
+    private long hitCount;
+    private long missCount;
+
+    public static AvInternPool getInstance() {
+        return instance;
+    }
+
+    AvInternPool(int maxSize) {
+        this.maxSize = maxSize;
+        this.values = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > AvInternPool.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the pooled instance equal to the value, which becomes the pooled instance if there was none
+     */
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = values.get(value);
+        if (pooled != null) {
+            hitCount++;
+            return pooled;
+        }
+        missCount++;
+        values.put(value, value);
+        return value;
+    }
+
+    public synchronized void clear() {
+        values.clear();
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized void resetCounts() {
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Changes the maximum number of values kept, evicting the least recently used ones if needed.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        Iterator<String> keys = values.keySet().iterator();
+        while (values.size() > maxSize) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AvModel whose Realm class can be read from JSON, without creating the model first. The Realm class gets a
+ * static fromJson(AvJsonReader) method, and a JSON_READER to import arrays in batches with {@link AvJsonImporter}.
+ * <p>
+ * The JSON names are the names of the properties. Enums are read from the names of their constants, chars from
+ * strings of a single character, dates from milliseconds since the epoch and primitive arrays from arrays of numbers.
+ * Linked models must be annotated with AvJson too. Unknown names are skipped, and null values leave fields to their defaults.
+ */
+public @interface AvJson {
+}
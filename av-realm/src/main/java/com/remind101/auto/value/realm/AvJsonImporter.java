@@ -0,0 +1,137 @@
+package com.remind101.auto.value.realm;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runtime support for the fromJson() methods generated for the models annotated with {@link AvJson}.
+ */
+public final class AvJsonImporter {
+    /**
+     * Reads a Realm object from the next JSON object. Implemented by the JSON_READER of the generated Realm classes.
+     */
+    public interface ObjectReader<R> {
+        R read(AvJsonReader reader) throws IOException;
+    }
+
+    public interface BatchHandler<R> {
+        /**
+         * Handles a batch of Realm objects, for example by copying them to the Realm in one transaction. The list is
+         * reused for the next batch once this method returns.
+         */
+        void handle(List<R> batch);
+    }
+
+    private AvJsonImporter() {
+    }
+
+    /**
+     * Reads the next JSON array one object at a time, handing the Realm objects over in batches as soon as they are
+     * read. Only a batch of Realm objects is held at once, whatever the size of the array.
+     *
+     * @return the number of objects read
+     */
+    public static <R> int readArray(AvJsonReader reader, ObjectReader<R> objectReader, int batchSize, BatchHandler<R> batchHandler) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+        }
+        List<R> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            batch.add(objectReader.read(reader));
+            count++;
+            if (batch.size() == batchSize) {
+                batchHandler.handle(batch);
+                batch.clear();
+            }
+        }
+        reader.endArray();
+        if (!batch.isEmpty()) {
+            batchHandler.handle(batch);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next JSON array of objects into an array of Realm objects of the exact size, ready to be handed to the
+     * RealmList varargs constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> R[] nextArray(AvJsonReader reader, ObjectReader<R> objectReader, Class<R> realmClass) throws IOException {
+        List<R> realmObjects = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            realmObjects.add(objectReader.read(reader));
+        }
+        reader.endArray();
+        return realmObjects.toArray((R[]) Array.newInstance(realmClass, realmObjects.size()));
+    }
+
+    /**
+     * Reads the next JSON string, which must be a single character, into a char.
+     *
+     * @throws IllegalStateException if the string is empty or longer than one character
+     */
+    public static char nextChar(AvJsonReader reader) throws IOException {
+        String value = reader.nextString();
+        if (value.length() != 1) {
+            throw new IllegalStateException("Expected a single character but was \"" + value + "\"");
+        }
+        return value.charAt(0);
+    }
+
+    /**
+     * Reads the next JSON array of numbers into an int[].
+     */
+    public static int[] nextIntArray(AvJsonReader reader) throws IOException {
+        int[] values = new int[16];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = reader.nextInt();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Reads the next JSON array of numbers into a long[].
+     */
+    public static long[] nextLongArray(AvJsonReader reader) throws IOException {
+        long[] values = new long[16];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = reader.nextLong();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Reads the next JSON array of numbers into a double[].
+     */
+    public static double[] nextDoubleArray(AvJsonReader reader) throws IOException {
+        double[] values = new double[16];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = reader.nextDouble();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,46 @@
+package com.remind101.auto.value.realm;
+
+import java.io.IOException;
+
+/**
+ * A pull parser of JSON, read by the fromJson() methods generated for the models annotated with {@link AvJson}. Its
+ * methods mirror those of android.util.JsonReader and Gson's JsonReader, which can be adapted by delegating every call.
+ */
+public interface AvJsonReader {
+    void beginObject() throws IOException;
+
+    void endObject() throws IOException;
+
+    void beginArray() throws IOException;
+
+    void endArray() throws IOException;
+
+    /**
+     * @return true if the current object or array has another element
+     */
+    boolean hasNext() throws IOException;
+
+    String nextName() throws IOException;
+
+    String nextString() throws IOException;
+
+    boolean nextBoolean() throws IOException;
+
+    int nextInt() throws IOException;
+
+    long nextLong() throws IOException;
+
+    double nextDouble() throws IOException;
+
+    /**
+     * @return true if the next value is a JSON null, without consuming it
+     */
+    boolean peekNull() throws IOException;
+
+    void nextNull() throws IOException;
+
+    /**
+     * Skips the next value, including every nested object and array.
+     */
+    void skipValue() throws IOException;
+}
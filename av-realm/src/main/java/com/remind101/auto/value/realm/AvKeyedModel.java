@@ -0,0 +1,11 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Implemented by the generated AutoValue and Realm classes of the models that have an {@link AvPrimaryKey}.
+ */
+public interface AvKeyedModel {
+    /**
+     * @return the value of the property annotated with {@link AvPrimaryKey}
+     */
+    Object getAvPrimaryKey();
+}
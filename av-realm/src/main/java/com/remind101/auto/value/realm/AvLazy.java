@@ -0,0 +1,10 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks a list of AvModels whose elements are converted lazily by toModel(). The generated model holds an immutable
+ * list of the Realm objects the Realm list held when the model was created, and converts each of them on first access,
+ * keeping the result. Changes made to the Realm list afterwards are not seen. The Realm objects are read on first
+ * access, so the list must only be used on the thread and while the Realm it came from is open.
+ */
+public @interface AvLazy {
+}
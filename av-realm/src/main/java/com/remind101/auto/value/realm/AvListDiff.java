@@ -0,0 +1,191 @@
+package com.remind101.auto.value.realm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the changes between two snapshots of a list of models, for example two successive toModels() of the same
+ * RealmResults, as ranges ready to be handed to the notifyItemRange methods of a RecyclerView adapter.
+ * <p>
+ * Models implementing {@link AvKeyedModel} are matched by primary key, so a model whose properties changed is reported
+ * as a change. Other models are matched with equals(), a model whose properties changed is removed and inserted again.
+ * The models that keep their relative order are found with a longest increasing subsequence, moved models are
+ * removed and inserted again.
+ */
+public final class AvListDiff {
+    private AvListDiff() {
+    }
+
+    /**
+     * @return the ranges turning the previous list into the current one. They are meant to be applied in order: the
+     * position of each range takes the ranges before it into account. Null lists are treated as empty, and live views
+     * are compared by their frozen copies
+     */
+    public static List<Range> compute(List<?> previous, List<?> current) {
+        previous = freezeAll(previous);
+        current = freezeAll(current);
+        int previousSize = previous == null ? 0 : previous.size();
+        int currentSize = current == null ? 0 : current.size();
+
+        // The positions in the current list of each identity, in order, so that duplicates are matched one by one
+        Map<Object, ArrayDeque<Integer>> currentPositions = new HashMap<>(currentSize * 4 / 3 + 1);
+        for (int i = 0; i < currentSize; i++) {
+            Object identity = getIdentity(current.get(i));
+            ArrayDeque<Integer> positions = currentPositions.get(identity);
+            if (positions == null) {
+                positions = new ArrayDeque<>(1);
+                currentPositions.put(identity, positions);
+            }
+            positions.add(i);
+        }
+        int[] matches = new int[previousSize];
+        for (int i = 0; i < previousSize; i++) {
+            ArrayDeque<Integer> positions = currentPositions.get(getIdentity(previous.get(i)));
+            matches[i] = positions == null || positions.isEmpty() ? -1 : positions.poll();
+        }
+
+        boolean[] previousKept = new boolean[previousSize];
+        boolean[] currentKept = new boolean[currentSize];
+        keepLongestIncreasingSubsequence(matches, previousKept, currentKept);
+
+        List<Range> ranges = new ArrayList<>();
+        int position = 0;
+        int i = 0;
+        int j = 0;
+        while (i < previousSize || j < currentSize) {
+            if (i < previousSize && !previousKept[i]) {
+                int count = 0;
+                while (i < previousSize && !previousKept[i]) {
+                    i++;
+                    count++;
+                }
+                ranges.add(new Range(Range.Type.REMOVE, position, count));
+            } else if (j < currentSize && !currentKept[j]) {
+                int count = 0;
+                while (j < currentSize && !currentKept[j]) {
+                    j++;
+                    count++;
+                }
+                ranges.add(new Range(Range.Type.INSERT, position, count));
+                position += count;
+            } else {
+                // Kept elements are matched in order, previous i is current j
+                if (!AvRealmHelper.equal(previous.get(i), current.get(j))) {
+                    Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                    if (last != null && last.type == Range.Type.CHANGE && last.position + last.count == position) {
+                        ranges.set(ranges.size() - 1, new Range(Range.Type.CHANGE, last.position, last.count + 1));
+                    } else {
+                        ranges.add(new Range(Range.Type.CHANGE, position, 1));
+                    }
+                }
+                position++;
+                i++;
+                j++;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @return the list with its live views replaced by their frozen copies, or the list itself if it holds none
+     */
+    private static List<?> freezeAll(List<?> models) {
+        if (models == null) {
+            return null;
+        }
+        List<Object> frozenModels = null;
+        for (int i = 0, size = models.size(); i < size; i++) {
+            Object model = models.get(i);
+            if (model instanceof AvLiveModel) {
+                if (frozenModels == null) {
+                    frozenModels = new ArrayList<Object>(models);
+                }
+                frozenModels.set(i, ((AvLiveModel<?>) model).freeze());
+            }
+        }
+        return frozenModels == null ? models : frozenModels;
+    }
+
+    private static Object getIdentity(Object model) {
+        if (model instanceof AvKeyedModel) {
+            return new AvModelKey(model.getClass(), ((AvKeyedModel) model).getAvPrimaryKey());
+        }
+        return model;
+    }
+
+    /**
+     * Marks the elements of the longest increasing subsequence of the matched positions, in O(n log n).
+     */
+    private static void keepLongestIncreasingSubsequence(int[] matches, boolean[] previousKept, boolean[] currentKept) {
+        int[] tails = new int[matches.length];
+        int[] predecessors = new int[matches.length];
+        int length = 0;
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] == -1) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (matches[tails[middle]] < matches[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = low == 0 ? -1 : tails[low - 1];
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        for (int i = length == 0 ? -1 : tails[length - 1]; i != -1; i = predecessors[i]) {
+            previousKept[i] = true;
+            currentKept[matches[i]] = true;
+        }
+    }
+
+    /**
+     * A range of positions that were inserted, removed or changed.
+     */
+    public static final class Range {
+        public enum Type {
+            INSERT,
+            REMOVE,
+            CHANGE
+        }
+
+        public final Type type;
+        public final int position;
+        public final int count;
+
+        public Range(Type type, int position, int count) {
+            this.type = type;
+            this.position = position;
+            this.count = count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Range)) {
+                return false;
+            }
+            Range other = (Range) o;
+            return type == other.type && position == other.position && count == other.count;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type.hashCode() + position) + count;
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + position + ", " + count + ")";
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AvModel that can be read through a live view. A $LiveFoo class is generated for a model Foo, and the Realm
+ * class gets a toLiveModel() method returning a Foo whose getters read from the Realm object on every call.
+ * A linked model is read as a live view too when it is annotated with AvLive, and as a regular copy otherwise.
+ */
+public @interface AvLive {
+}
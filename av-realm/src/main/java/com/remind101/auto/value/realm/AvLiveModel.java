@@ -0,0 +1,13 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Implemented by the live views returned by $RealmFoo.toLiveModel() for models annotated with {@link AvLive}. A live
+ * view reads its properties from the Realm object backing it every time they are accessed, instead of copying every
+ * column up front. Like the Realm object, it must only be used on the thread and while the Realm it came from is open.
+ */
+public interface AvLiveModel<T> {
+    /**
+     * @return an immutable copy of the model, that can outlive the Realm object backing this view
+     */
+    T freeze();
+}
@@ -0,0 +1,8 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AvModel whose hash code is computed once, on the first call to hashCode(), and kept in the model. Useful for
+ * models with large arrays or deep graphs of nested models that are used as keys of maps or elements of sets.
+ */
+public @interface AvMemoizeHashCode {
+}
@@ -0,0 +1,113 @@
+package com.remind101.auto.value.realm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of converted models, keyed by model type and primary key. AutoValue models are
+ * immutable, so a cached instance can be shared until the row it was read from changes.
+ * <p>
+ * Entries are replaced after the commit of the transaction by the generated $RealmFoo.save(Realm, Foo) of
+ * {@link AvCached} models. Writes made any other way, like toRealmObject(), applyTo() or setters called on a managed
+ * Realm object, must call {@link #invalidate(Class, Object)} or {@link #clear()} once their transaction is committed.
+ * <p>
+ * Reads go through {@link #getVersion()} and {@link #putIfUnchanged(Class, Object, Object, long)}, so a model read
+ * before a commit is dropped rather than cached over the entry written after it. This assumes the Realm the model is
+ * read from has seen every commit made before the read started.
+ */
+public final class AvModelCache {
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final AvModelCache instance = new AvModelCache(DEFAULT_MAX_SIZE);
+
+    private final LinkedHashMap<AvModelKey, Object> entries;
+    private int maxSize;
+    private long version;
+
+    public static AvModelCache getInstance() {
+        return instance;
+    }
+
+    AvModelCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<AvModelKey, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AvModelKey, Object> eldest) {
+                return size() > AvModelCache.this.maxSize;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(Class<T> type, Object primaryKey) {
+        return (T) entries.get(new AvModelKey(type, primaryKey));
+    }
+
+    /**
+     * Caches the model written by a committed transaction, or its frozen copy if it is a live view, which must not
+     * outlive its Realm.
+     */
+    public synchronized void put(Class<?> type, Object primaryKey, Object model) {
+        version++;
+        entries.put(new AvModelKey(type, primaryKey), freeze(model));
+    }
+
+    /**
+     * @return the number of writes made to the cache so far, to pass to
+     * {@link #putIfUnchanged(Class, Object, Object, long)} once the model is read
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Caches a model read from Realm, unless the cache was written since the given {@link #getVersion()}: the model
+     * may then have been read before a commit whose result is already cached, or whose entry was invalidated.
+     *
+     * @return true if the model was cached
+     */
+    public synchronized boolean putIfUnchanged(Class<?> type, Object primaryKey, Object model, long version) {
+        if (version != this.version) {
+            return false;
+        }
+        entries.put(new AvModelKey(type, primaryKey), freeze(model));
+        return true;
+    }
+
+    public synchronized void invalidate(Class<?> type, Object primaryKey) {
+        version++;
+        entries.remove(new AvModelKey(type, primaryKey));
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static Object freeze(Object model) {
+        if (model instanceof AvLiveModel) {
+            return ((AvLiveModel<?>) model).freeze();
+        }
+        return model;
+    }
+
+    /**
+     * Changes the maximum number of models kept, evicting the least recently used ones if needed.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        Iterator<AvModelKey> keys = entries.keySet().iterator();
+        while (entries.size() > maxSize) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Identifies a row by model type and primary key.
+ */
+final class AvModelKey {
+    private final Class<?> type;
+    private final Object primaryKey;
+
+    AvModelKey(Class<?> type, Object primaryKey) {
+        this.type = type;
+        this.primaryKey = primaryKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AvModelKey)) {
+            return false;
+        }
+        AvModelKey other = (AvModelKey) o;
+        return type == other.type && AvRealmHelper.equal(primaryKey, other.primaryKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + (primaryKey == null ? 0 : primaryKey.hashCode());
+    }
+}
@@ -0,0 +1,70 @@
+package com.remind101.auto.value.realm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes an AvModel and the Realm class generated for it, as known at compile time. Instances are created by the
+ * registry class the processor generates, see {@link AvSchemaRegistry}.
+ */
+public final class AvModelSchema {
+    private final Class<?> modelClass;
+    private final Class<?> realmClass;
+    private final String primaryKey;
+    private final List<String> indexedFields;
+    private final Map<String, Class<?>> fieldTypes;
+
+    /**
+     * @param primaryKey the name of the primary key field, or null
+     * @param fieldNames the names of the fields of the Realm class, in declaration order
+     * @param fieldTypes the types of the fields of the Realm class, in the same order as their names
+     */
+    public AvModelSchema(Class<?> modelClass, Class<?> realmClass, String primaryKey, String[] indexedFields, String[] fieldNames, Class<?>[] fieldTypes) {
+        if (fieldNames.length != fieldTypes.length) {
+            throw new IllegalArgumentException("fieldNames and fieldTypes differ in length: " + fieldNames.length + " != " + fieldTypes.length);
+        }
+        this.modelClass = modelClass;
+        this.realmClass = realmClass;
+        this.primaryKey = primaryKey;
+        this.indexedFields = Collections.unmodifiableList(Arrays.asList(indexedFields));
+        Map<String, Class<?>> types = new LinkedHashMap<>(fieldNames.length * 2);
+        for (int i = 0; i < fieldNames.length; i++) {
+            types.put(fieldNames[i], fieldTypes[i]);
+        }
+        this.fieldTypes = Collections.unmodifiableMap(types);
+    }
+
+    public Class<?> getModelClass() {
+        return modelClass;
+    }
+
+    public Class<?> getRealmClass() {
+        return realmClass;
+    }
+
+    /**
+     * @return the name of the primary key field, or null if the model has none
+     */
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public List<String> getIndexedFields() {
+        return indexedFields;
+    }
+
+    /**
+     * @return the type of every field of the Realm class by name, in declaration order
+     */
+    public Map<String, Class<?>> getFieldTypes() {
+        return fieldTypes;
+    }
+
+    @Override
+    public String toString() {
+        return "AvModelSchema{" + modelClass.getName() + " -> " + realmClass.getName() + "}";
+    }
+}
@@ -0,0 +1,122 @@
+package com.remind101.auto.value.realm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Runtime support for the code generated by auto-value-realm. Stores int[], long[] and double[] properties in a single
+ * byte[] field, with every value written in little-endian order one after the other. The arrays are copied in bulk
+ * through ByteBuffer views, and null arrays are stored as null.
+ */
+public final class AvPackedArrays {
+    private AvPackedArrays() {
+    }
+
+    public static byte[] pack(int[] values) {
+        if (values == null) {
+            return null;
+        }
+        ByteBuffer buffer = allocate(values.length * 4);
+        buffer.asIntBuffer().put(values);
+        return buffer.array();
+    }
+
+    public static byte[] pack(long[] values) {
+        if (values == null) {
+            return null;
+        }
+        ByteBuffer buffer = allocate(values.length * 8);
+        buffer.asLongBuffer().put(values);
+        return buffer.array();
+    }
+
+    public static byte[] pack(double[] values) {
+        if (values == null) {
+            return null;
+        }
+        ByteBuffer buffer = allocate(values.length * 8);
+        buffer.asDoubleBuffer().put(values);
+        return buffer.array();
+    }
+
+    public static int[] unpackInts(byte[] packed) {
+        if (packed == null) {
+            return null;
+        }
+        IntBuffer buffer = wrap(packed).asIntBuffer();
+        int[] values = new int[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    public static long[] unpackLongs(byte[] packed) {
+        if (packed == null) {
+            return null;
+        }
+        LongBuffer buffer = wrap(packed).asLongBuffer();
+        long[] values = new long[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    public static double[] unpackDoubles(byte[] packed) {
+        if (packed == null) {
+            return null;
+        }
+        DoubleBuffer buffer = wrap(packed).asDoubleBuffer();
+        double[] values = new double[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    /**
+     * @return true if the packed array holds the same values, without unpacking it into a new array
+     */
+    public static boolean equal(int[] values, byte[] packed) {
+        if (values == null || packed == null) {
+            return values == null && packed == null;
+        }
+        return packed.length == values.length * 4 && wrap(packed).asIntBuffer().equals(IntBuffer.wrap(values));
+    }
+
+    /**
+     * @return true if the packed array holds the same values, without unpacking it into a new array
+     */
+    public static boolean equal(long[] values, byte[] packed) {
+        if (values == null || packed == null) {
+            return values == null && packed == null;
+        }
+        return packed.length == values.length * 8 && wrap(packed).asLongBuffer().equals(LongBuffer.wrap(values));
+    }
+
+    /**
+     * @return true if the packed array holds the same values, without unpacking it into a new array. Like
+     * {@link java.util.Arrays#equals(double[], double[])}, NaN is equal to itself and 0.0 differs from -0.0
+     */
+    public static boolean equal(double[] values, byte[] packed) {
+        if (values == null || packed == null) {
+            return values == null && packed == null;
+        }
+        if (packed.length != values.length * 8) {
+            return false;
+        }
+        DoubleBuffer buffer = wrap(packed).asDoubleBuffer();
+        for (int i = 0; i < values.length; i++) {
+            if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(buffer.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer wrap(byte[] packed) {
+        return ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,10 @@
+package com.remind101.auto.value.realm;
+
+/**
+ * Marks an AutoValue class nested in an AvModel as a projection of it: a partial model holding a few of its properties.
+ * Each getter of the projection must have the name and the type of a getter of the model. The Realm class of the model
+ * gets a to method named after the projection, toSummary() for Foo.Summary, which only reads the fields of those
+ * properties and only converts the relationships they list.
+ */
+public @interface AvProjection {
+}
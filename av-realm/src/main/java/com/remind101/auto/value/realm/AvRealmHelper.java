@@ -0,0 +1,275 @@
+package com.remind101.auto.value.realm;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Runtime support for the code generated by auto-value-realm. Converts one-to-many relationships between
+ * lists of AvModels and lists of their Realm counterparts.
+ */
+public final class AvRealmHelper {
+    private AvRealmHelper() {
+    }
+
+    /**
+     * Converts a list of Realm objects into an immutable list of models.
+     * The returned list is backed by an array of the exact size, and all empty inputs share the same empty list.
+     */
+    public static <T extends AvModel<R>, R extends AvRealmModel<T>> List<T> fromRealmModels(List<R> realmModels) {
+        if (realmModels == null) {
+            return Collections.emptyList();
+        }
+        int size = realmModels.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        Object[] models = new Object[size];
+        if (realmModels instanceof RandomAccess) {
+            for (int i = 0; i < size; i++) {
+                models[i] = realmModels.get(i).toModel();
+            }
+        } else {
+            int i = 0;
+            for (R realmModel : realmModels) {
+                models[i++] = realmModel.toModel();
+            }
+        }
+        return new ArrayBackedList<>(models);
+    }
+
+    /**
+     * Same as {@link #fromRealmModels(List)}, converting every element through the given context.
+     */
+    public static <T extends AvModel<R>, R extends AvRealmModel<T>> List<T> fromRealmModels(List<R> realmModels, AvConversionContext conversionContext) {
+        if (realmModels == null) {
+            return Collections.emptyList();
+        }
+        int size = realmModels.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        Object[] models = new Object[size];
+        if (realmModels instanceof RandomAccess) {
+            for (int i = 0; i < size; i++) {
+                models[i] = conversionContext.toModel(realmModels.get(i));
+            }
+        } else {
+            int i = 0;
+            for (R realmModel : realmModels) {
+                models[i++] = conversionContext.toModel(realmModel);
+            }
+        }
+        return new ArrayBackedList<>(models);
+    }
+
+    /**
+     * Returns an immutable list of models that converts each element of a list of Realm objects on first access and
+     * keeps the result. The Realm objects are captured when the list is created, so the list keeps its size and rows
+     * if the Realm list changes afterwards. Only the conversion is deferred.
+     */
+    public static <T extends AvModel<R>, R extends AvRealmModel<T>> List<T> lazyFromRealmModels(List<R> realmModels) {
+        if (realmModels == null || realmModels.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new LazyList<>(realmModels);
+    }
+
+    /**
+     * Converts a list of models into an array of Realm objects of the exact size, ready to be handed to
+     * the RealmList varargs constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AvModel<R>, R extends AvRealmModel<T>> R[] toRealmModels(List<T> models, Class<R> realmClass) {
+        int size = models == null ? 0 : models.size();
+        R[] realmModels = (R[]) Array.newInstance(realmClass, size);
+        if (size == 0) {
+            return realmModels;
+        }
+        if (models instanceof RandomAccess) {
+            for (int i = 0; i < size; i++) {
+                realmModels[i] = models.get(i).toRealmObject();
+            }
+        } else {
+            int i = 0;
+            for (T model : models) {
+                realmModels[i++] = model.toRealmObject();
+            }
+        }
+        return realmModels;
+    }
+
+    /**
+     * Same as {@link #toRealmModels(List, Class)}, converting every element through the given context.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AvModel<R>, R extends AvRealmModel<T>> R[] toRealmModels(List<T> models, Class<R> realmClass, AvConversionContext conversionContext) {
+        int size = models == null ? 0 : models.size();
+        R[] realmModels = (R[]) Array.newInstance(realmClass, size);
+        if (size == 0) {
+            return realmModels;
+        }
+        if (models instanceof RandomAccess) {
+            for (int i = 0; i < size; i++) {
+                realmModels[i] = conversionContext.toRealmObject(models.get(i));
+            }
+        } else {
+            int i = 0;
+            for (T model : models) {
+                realmModels[i++] = conversionContext.toRealmObject(model);
+            }
+        }
+        return realmModels;
+    }
+
+    /**
+     * Updates a linked Realm object in place from a model, writing only the properties that changed. A live view is
+     * frozen first. A target with another primary key than the model is a different row, possibly linked from other
+     * objects, so it is never renamed: the link has to be replaced instead.
+     *
+     * @return false if the link itself has to be replaced, because only one of the model and the target is null, their
+     * primary keys differ or the model cannot update an existing Realm object
+     */
+    @SuppressWarnings("unchecked")
+    public static <D, T extends AvModel<R>, R extends AvRealmModel<T>> boolean applyTo(D realm, T model, R target) {
+        if (model == null || target == null) {
+            return model == null && target == null;
+        }
+        model = freeze(model);
+        if (!(model instanceof AvDiffingModel) || !hasSameKey(model, target)) {
+            return false;
+        }
+        ((AvDiffingModel<D, R>) model).applyTo(realm, target);
+        return true;
+    }
+
+    /**
+     * Updates the elements of a Realm list in place from a list of models, writing only the properties that changed.
+     * Models with a primary key are matched with the element of the same key wherever it is in the list, the others
+     * with the element at the same index.
+     *
+     * @return null if the list holds the same rows in the same order, otherwise the rows the list must be replaced with,
+     * where the models that matched no element are left null for the caller to copy into the Realm
+     */
+    @SuppressWarnings("unchecked")
+    public static <D, T extends AvModel<R>, R extends AvRealmModel<T>> R[] applyToAll(D realm, List<T> models, List<R> targets, Class<R> realmClass) {
+        int size = models == null ? 0 : models.size();
+        int targetSize = targets == null ? 0 : targets.size();
+        R[] realmModels = (R[]) Array.newInstance(realmClass, size);
+        Map<Object, R> targetsByKey = null;
+        boolean changed = size != targetSize;
+        for (int i = 0; i < size; i++) {
+            T model = models.get(i);
+            R target = null;
+            if (model instanceof AvKeyedModel) {
+                if (targetsByKey == null) {
+                    targetsByKey = indexByKey(targets);
+                }
+                target = targetsByKey.get(((AvKeyedModel) model).getAvPrimaryKey());
+            } else if (i < targetSize) {
+                target = targets.get(i);
+            }
+            if (target != null && applyTo(realm, model, target)) {
+                realmModels[i] = target;
+            }
+            changed |= i >= targetSize || realmModels[i] != targets.get(i);
+        }
+        return changed ? realmModels : null;
+    }
+
+    private static <R> Map<Object, R> indexByKey(List<R> targets) {
+        Map<Object, R> targetsByKey = new HashMap<>();
+        if (targets != null) {
+            for (R target : targets) {
+                if (target instanceof AvKeyedModel) {
+                    targetsByKey.put(((AvKeyedModel) target).getAvPrimaryKey(), target);
+                }
+            }
+        }
+        return targetsByKey;
+    }
+
+    private static boolean hasSameKey(Object model, Object target) {
+        if (!(model instanceof AvKeyedModel)) {
+            return true;
+        }
+        return target instanceof AvKeyedModel && equal(((AvKeyedModel) model).getAvPrimaryKey(), ((AvKeyedModel) target).getAvPrimaryKey());
+    }
+
+    /**
+     * @return an immutable copy of the model if it is a live view, or the model itself
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AvModel<?>> T freeze(T model) {
+        if (model instanceof AvLiveModel) {
+            return ((AvLiveModel<T>) model).freeze();
+        }
+        return model;
+    }
+
+    /**
+     * Null safe equals, as java.util.Objects is not available on every Android version.
+     */
+    public static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Null safe hashCode, for the same reason.
+     */
+    public static int hashCode(Object o) {
+        return o == null ? 0 : o.hashCode();
+    }
+
+    private static final class LazyList<T extends AvModel<R>, R extends AvRealmModel<T>> extends AbstractList<T> implements RandomAccess {
+        /**
+         * The Realm objects captured when the list was created
+         */
+        private final Object[] realmModels;
+        private final Object[] models;
+
+        LazyList(List<R> realmModels) {
+            this.realmModels = realmModels.toArray();
+            this.models = new Object[this.realmModels.length];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Object model = models[index];
+            if (model == null) {
+                model = ((R) realmModels[index]).toModel();
+                models[index] = model;
+            }
+            return (T) model;
+        }
+
+        @Override
+        public int size() {
+            return models.length;
+        }
+    }
+
+    private static final class ArrayBackedList<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] elements;
+
+        ArrayBackedList(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            return (E) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.remind101.auto.value.realm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists every AvModel of a compilation along with its Realm class, so they don't have to be discovered through
+ * reflection at startup. The processor generates the registry when the avrealm.registry option names the class to
+ * create, which holds it in a REGISTRY constant. Example with -Aavrealm.registry=com.example.AppSchemas:
+ * {@code AppSchemas.REGISTRY.getRealmClasses()}
+ */
+public final class AvSchemaRegistry {
+    private final List<AvModelSchema> schemas;
+    private final Map<Class<?>, AvModelSchema> schemasByClass;
+
+    public AvSchemaRegistry(AvModelSchema... schemas) {
+        this.schemas = Collections.unmodifiableList(Arrays.asList(schemas));
+        this.schemasByClass = new HashMap<>(schemas.length * 4);
+        for (AvModelSchema schema : schemas) {
+            schemasByClass.put(schema.getModelClass(), schema);
+            schemasByClass.put(schema.getRealmClass(), schema);
+        }
+    }
+
+    public List<AvModelSchema> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * @param type an AvModel class or a Realm class
+     * @return the schema of the type, or null if it is not part of the registry
+     */
+    public AvModelSchema getSchema(Class<?> type) {
+        return schemasByClass.get(type);
+    }
+
+    /**
+     * @return every Realm class of the registry, for example to build a RealmConfiguration
+     */
+    public Class<?>[] getRealmClasses() {
+        Class<?>[] realmClasses = new Class<?>[schemas.size()];
+        for (int i = 0; i < realmClasses.length; i++) {
+            realmClasses[i] = schemas.get(i).getRealmClass();
+        }
+        return realmClasses;
+    }
+}
@@ -0,0 +1,256 @@
+package com.remind101.auto.value.realm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A read-only collection of models written once to a file, for large reference data like catalogs or lookup tables
+ * that don't need the write path of Realm. The file is mapped in memory rather than parsed: opening it only reads its
+ * header, and a model is decoded by its {@link AvBinaryCodec} when it is accessed.
+ * <p>
+ * The models are sorted by primary key and the file holds the offset of each of them, so that {@link #find(Object)}
+ * is a binary search comparing the encoded keys in place. String keys are ordered by their UTF-8 bytes, byte, short,
+ * int and long keys by value. The file format:
+ * <pre>
+ * int magic, int format version, byte key type, int count
+ * int offset of each entry
+ * each entry: int key length, key bytes, the model written by its codec
+ * </pre>
+ * A store is immutable and can be read from any thread.
+ */
+public final class AvSnapshotStore<T> {
+    private static final int MAGIC = 0x41565353;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte KEY_STRING = 1;
+    private static final byte KEY_INTEGER = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final AvBinaryCodec<T> codec;
+    private final byte keyType;
+    private final int size;
+
+    private AvSnapshotStore(ByteBuffer buffer, AvBinaryCodec<T> codec) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot store");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot store version " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        this.codec = codec;
+        this.keyType = buffer.get(8);
+        this.size = buffer.getInt(9);
+    }
+
+    /**
+     * Writes the models to the file, replacing it. Every model must implement {@link AvKeyedModel}, which the
+     * AutoValue classes of models with an {@link AvPrimaryKey} do, with a distinct String or integer key.
+     *
+     * @throws IllegalArgumentException if a model has no key, a null key or the same key as another model
+     */
+    public static <T> void write(File file, Collection<? extends T> models, AvBinaryCodec<T> codec) throws IOException {
+        List<Entry<T>> entries = new ArrayList<>(models.size());
+        byte keyType = 0;
+        for (T model : models) {
+            if (!(model instanceof AvKeyedModel) || ((AvKeyedModel) model).getAvPrimaryKey() == null) {
+                throw new IllegalArgumentException(model + " has no primary key");
+            }
+            Object primaryKey = ((AvKeyedModel) model).getAvPrimaryKey();
+            if (keyType == 0) {
+                keyType = getKeyType(primaryKey);
+            } else if (keyType != getKeyType(primaryKey)) {
+                throw new IllegalArgumentException(model + " has a key of another type than the previous models");
+            }
+            entries.add(new Entry<>(encodeKey(primaryKey), model));
+        }
+        Collections.sort(entries, new Comparator<Entry<T>>() {
+            @Override
+            public int compare(Entry<T> a, Entry<T> b) {
+                return compareKeys(a.key, b.key);
+            }
+        });
+
+        long fileSize = HEADER_SIZE + 4L * entries.size();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry<T> entry = entries.get(i);
+            if (i > 0 && compareKeys(entries.get(i - 1).key, entry.key) == 0) {
+                throw new IllegalArgumentException("Duplicate primary key " + ((AvKeyedModel) entry.model).getAvPrimaryKey());
+            }
+            fileSize += 4 + entry.key.length + codec.sizeOf(entry.model);
+        }
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A snapshot store is limited to 2 GB, " + fileSize + " bytes needed");
+        }
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(fileSize);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.put(keyType);
+            buffer.putInt(entries.size());
+            int offset = HEADER_SIZE + 4 * entries.size();
+            for (Entry<T> entry : entries) {
+                buffer.putInt(offset);
+                offset += 4 + entry.key.length + codec.sizeOf(entry.model);
+            }
+            for (Entry<T> entry : entries) {
+                buffer.putInt(entry.key.length);
+                buffer.put(entry.key);
+                codec.write(entry.model, buffer);
+            }
+            buffer.force();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(File, Collection, AvBinaryCodec)}. The mapping stays valid after the file
+     * is closed, which happens before returning.
+     */
+    public static <T> AvSnapshotStore<T> open(File file, AvBinaryCodec<T> codec) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            return new AvSnapshotStore<>(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length()), codec);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a store from a buffer holding the content of a file written by
+     * {@link #write(File, Collection, AvBinaryCodec)}, for example an asset read in memory. The buffer is not copied
+     * and must not be modified.
+     */
+    public static <T> AvSnapshotStore<T> wrap(ByteBuffer buffer, AvBinaryCodec<T> codec) {
+        return new AvSnapshotStore<>(buffer.slice(), codec);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the model at the index, in the order of the primary keys
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index " + index + ", size is " + size);
+        }
+        int offset = getOffset(index);
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 4 + buffer.getInt(offset));
+        return codec.read(record);
+    }
+
+    /**
+     * @return the model with the primary key, or null if there is none
+     */
+    public T find(Object primaryKey) {
+        if (primaryKey == null || size == 0) {
+            return null;
+        }
+        if (getKeyType(primaryKey) != keyType) {
+            throw new IllegalArgumentException("The primary keys of this store are not of the type of " + primaryKey);
+        }
+        byte[] key = encodeKey(primaryKey);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareKey(getOffset(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return get(middle);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return every model, in the order of the primary keys. This decodes the whole store
+     */
+    public List<T> getAll() {
+        List<T> models = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            models.add(get(i));
+        }
+        return models;
+    }
+
+    private int getOffset(int index) {
+        return buffer.getInt(HEADER_SIZE + 4 * index);
+    }
+
+    /**
+     * Compares the key of the entry at the offset to the given key without copying it.
+     */
+    private int compareKey(int offset, byte[] key) {
+        int length = buffer.getInt(offset);
+        int start = offset + 4;
+        for (int i = 0; i < length && i < key.length; i++) {
+            int comparison = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compareKeys(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            int comparison = (a[i] & 0xff) - (b[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static byte getKeyType(Object primaryKey) {
+        if (primaryKey instanceof String) {
+            return KEY_STRING;
+        } else if (primaryKey instanceof Long || primaryKey instanceof Integer || primaryKey instanceof Short || primaryKey instanceof Byte) {
+            return KEY_INTEGER;
+        }
+        throw new IllegalArgumentException("Unsupported primary key type " + primaryKey.getClass().getName());
+    }
+
+    /**
+     * @return the key as bytes whose unsigned order is the order of the keys: UTF-8 for strings, big endian with the
+     * sign bit flipped for integers
+     */
+    private static byte[] encodeKey(Object primaryKey) {
+        if (primaryKey instanceof String) {
+            return ((String) primaryKey).getBytes(UTF_8);
+        }
+        return ByteBuffer.allocate(8).putLong(((Number) primaryKey).longValue() ^ Long.MIN_VALUE).array();
+    }
+
+    private static final class Entry<T> {
+        final byte[] key;
+        final T model;
+
+        Entry(byte[] key, T model) {
+            this.key = key;
+            this.model = model;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.remind101.auto.value.realm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks a long property holding a point in time, as a count of {@link #unit()} since the epoch. Unlike a Date, the
+ * value needs no allocation when it is read and cannot be mutated. The field is indexed, and $RealmFoo gets
+ * findAllByXBetween() helpers querying a range of time, taking either longs in the unit or Dates.
+ */
+public @interface AvTimestamp {
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
@@ -0,0 +1,229 @@
+package com.remind101.auto.value.realm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Saves models in the background, coalescing the saves of the same row. Models are keyed by type and primary key, and
+ * a model saved again before it is written replaces the pending one. Pending models are handed to the {@link Writer}
+ * on a dedicated thread, all at once, either when the oldest of them has waited for the window or as soon as there are
+ * enough of them to fill a batch. The writer is expected to write a whole batch in a single transaction.
+ * <p>
+ * The models of a batch the writer fails to write are queued again ahead of the models saved since, unless a row was
+ * saved again in the meantime, and retried after the window. A row that still fails after {@link #MAX_RETRIES} retries
+ * is dropped and handed to {@link Writer#onWriteFailed(List, RuntimeException)}, so that a row the writer always
+ * rejects does not hold back the rows saved after it forever.
+ * <p>
+ * Reads made before a model is written see the previous values. Only models with an {@link AvPrimaryKey} can be saved.
+ */
+public final class AvWriteQueue {
+    public interface Writer {
+        /**
+         * Writes a batch of models, called on the thread of the queue. The models are in the order their rows were
+         * first saved in, each with the values of its last save.
+         */
+        void write(List<AvModel<?>> models);
+
+        /**
+         * Called on the thread of the queue with the models dropped after failing to be written {@link #MAX_RETRIES}
+         * more times, along with the last failure of the writer.
+         */
+        void onWriteFailed(List<AvModel<?>> models, RuntimeException e);
+    }
+
+    /**
+     * The number of times the models of a failed batch are written again before they are dropped
+     */
+    public static final int MAX_RETRIES = 3;
+
+    private final Writer writer;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService executor;
+    private final Callable<Boolean> drain = new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+            return drain();
+        }
+    };
+
+    private LinkedHashMap<AvModelKey, AvModel<?>> pending = new LinkedHashMap<>();
+    /**
+     * The number of failed writes of the pending rows that failed, reset when a row is saved again
+     */
+    private final Map<AvModelKey, Integer> failures = new HashMap<>();
+    private boolean drainScheduled;
+
+    /**
+     * @param maxBatchSize the number of pending rows that triggers a write without waiting for the window
+     * @param windowMillis how long a save waits for other saves to join its batch
+     */
+    public AvWriteQueue(Writer writer, int maxBatchSize, long windowMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize < 1: " + maxBatchSize);
+        }
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis < 0: " + windowMillis);
+        }
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AvWriteQueue");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues the model to be written, replacing the pending model of the same row if there is one. A live view is
+     * frozen first, on the calling thread.
+     *
+     * @throws IllegalArgumentException if the model has no {@link AvPrimaryKey}
+     * @throws RejectedExecutionException if the queue was shut down
+     */
+    public void save(AvModel<?> model) {
+        model = AvRealmHelper.freeze(model);
+        if (!(model instanceof AvKeyedModel)) {
+            throw new IllegalArgumentException(model.getClass().getName() + " has no @AvPrimaryKey");
+        }
+        AvModelKey key = new AvModelKey(model.getClass(), ((AvKeyedModel) model).getAvPrimaryKey());
+        synchronized (this) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The queue was shut down");
+            }
+            pending.put(key, model);
+            failures.remove(key);
+            if (pending.size() >= maxBatchSize) {
+                executor.submit(drain);
+                drainScheduled = true;
+            } else if (!drainScheduled) {
+                executor.schedule(drain, windowMillis, TimeUnit.MILLISECONDS);
+                drainScheduled = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the pending models without waiting for the window, and returns without waiting for the write.
+     */
+    public void flush() {
+        executor.submit(drain);
+    }
+
+    /**
+     * Writes the pending models without waiting for the window, and waits until every model saved before this call is
+     * written.
+     *
+     * @return false if the timeout elapsed first or the write failed, in which case the models are retried or dropped
+     * like the ones of any failed batch
+     */
+    public boolean flushAndWait(long timeout, TimeUnit unit) throws InterruptedException {
+        Future<Boolean> future = executor.submit(drain);
+        try {
+            return future.get(timeout, unit);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the pending models and stops the thread of the queue. Models saved afterwards are rejected, and the models
+     * of a last batch that fails to be written stay pending.
+     */
+    public synchronized void shutdown() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.submit(drain);
+        executor.shutdown();
+    }
+
+    /**
+     * Hands the pending models to the writer. The batch of a failing writer is queued again, or dropped and reported to
+     * the writer once its rows ran out of retries.
+     *
+     * @return false if the writer failed
+     */
+    private boolean drain() {
+        LinkedHashMap<AvModelKey, AvModel<?>> batch;
+        synchronized (this) {
+            drainScheduled = false;
+            if (pending.isEmpty()) {
+                return true;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        try {
+            writer.write(new ArrayList<>(batch.values()));
+        } catch (RuntimeException e) {
+            List<AvModel<?>> dropped = requeue(batch);
+            if (!dropped.isEmpty()) {
+                writer.onWriteFailed(dropped, e);
+            }
+            return false;
+        }
+        synchronized (this) {
+            failures.keySet().removeAll(batch.keySet());
+        }
+        return true;
+    }
+
+    /**
+     * Puts the models of a failed batch back ahead of the pending ones, keeping the pending model of a row saved again
+     * since the batch was taken, and schedules a retry.
+     *
+     * @return the models of the rows that ran out of retries, which are not queued again
+     */
+    private synchronized List<AvModel<?>> requeue(LinkedHashMap<AvModelKey, AvModel<?>> batch) {
+        List<AvModel<?>> dropped = new ArrayList<>();
+        LinkedHashMap<AvModelKey, AvModel<?>> retried = new LinkedHashMap<>();
+        for (Map.Entry<AvModelKey, AvModel<?>> entry : batch.entrySet()) {
+            AvModelKey key = entry.getKey();
+            if (pending.containsKey(key)) {
+                // Saved again since, the newer model gets its own retries and keeps the position of the row
+                retried.put(key, entry.getValue());
+                continue;
+            }
+            Integer count = failures.get(key);
+            int failureCount = count == null ? 1 : count + 1;
+            if (failureCount > MAX_RETRIES) {
+                failures.remove(key);
+                dropped.add(entry.getValue());
+            } else {
+                failures.put(key, failureCount);
+                retried.put(key, entry.getValue());
+            }
+        }
+        // Rows already in the batch keep their position and take the newer model
+        retried.putAll(pending);
+        pending = retried;
+        if (!pending.isEmpty() && !drainScheduled && !executor.isShutdown()) {
+            executor.schedule(drain, windowMillis, TimeUnit.MILLISECONDS);
+            drainScheduled = true;
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,132 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AvByteBuffersTest {
+    private static final AvBinaryCodec<String> STRING_CODEC = new AvBinaryCodec<String>() {
+        @Override
+        public void write(String model, ByteBuffer buffer) {
+            AvByteBuffers.put(buffer, model);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            return AvByteBuffers.getString(buffer);
+        }
+
+        @Override
+        public int sizeOf(String model) {
+            return AvByteBuffers.sizeOf(model);
+        }
+    };
+
+    @Test
+    public void testString() throws Exception {
+        for (String value : Arrays.asList("", "abc", "caf\u00e9", "\u20ac10", "smile \ud83d\ude00", null)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            AvByteBuffers.put(buffer, value);
+            assertEquals(AvByteBuffers.sizeOf(value), buffer.position());
+            if (value != null) {
+                assertEquals(value.getBytes("UTF-8").length + 4, buffer.position());
+            }
+            buffer.flip();
+            assertEquals(value, AvByteBuffers.getString(buffer));
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+    @Test
+    public void testStringDirectBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        AvByteBuffers.put(buffer, "caf\u00e9 \ud83d\ude00");
+        buffer.flip();
+        assertEquals("caf\u00e9 \ud83d\ude00", AvByteBuffers.getString(buffer));
+    }
+
+    @Test
+    public void testUnpairedSurrogate() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        AvByteBuffers.put(buffer, "a\ud83db");
+        assertEquals(AvByteBuffers.sizeOf("a\ud83db"), buffer.position());
+        buffer.flip();
+        assertEquals("a?b", AvByteBuffers.getString(buffer));
+    }
+
+    @Test
+    public void testArrays() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        AvByteBuffers.put(buffer, new byte[]{1, -2});
+        AvByteBuffers.put(buffer, new int[]{3, -4, Integer.MAX_VALUE});
+        AvByteBuffers.put(buffer, new long[]{Long.MIN_VALUE});
+        AvByteBuffers.put(buffer, new double[]{0.5, Double.NaN});
+        AvByteBuffers.put(buffer, (int[]) null);
+        int expectedSize = AvByteBuffers.sizeOf(new byte[2]) + AvByteBuffers.sizeOf(new int[3]) + AvByteBuffers.sizeOf(new long[1])
+                + AvByteBuffers.sizeOf(new double[2]) + AvByteBuffers.sizeOf((int[]) null);
+        assertEquals(expectedSize, buffer.position());
+        buffer.flip();
+        assertArrayEquals(new byte[]{1, -2}, AvByteBuffers.getBytes(buffer));
+        assertArrayEquals(new int[]{3, -4, Integer.MAX_VALUE}, AvByteBuffers.getIntArray(buffer));
+        assertArrayEquals(new long[]{Long.MIN_VALUE}, AvByteBuffers.getLongArray(buffer));
+        assertArrayEquals(new double[]{0.5, Double.NaN}, AvByteBuffers.getDoubleArray(buffer), 0);
+        assertNull(AvByteBuffers.getIntArray(buffer));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testBoxedValues() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        AvByteBuffers.put(buffer, new Date(1234L));
+        AvByteBuffers.put(buffer, Boolean.TRUE);
+        AvByteBuffers.put(buffer, (byte) 7);
+        AvByteBuffers.put(buffer, (short) -8);
+        AvByteBuffers.put(buffer, 9);
+        AvByteBuffers.put(buffer, 10L);
+        AvByteBuffers.put(buffer, 1.5f);
+        AvByteBuffers.put(buffer, 2.5);
+        AvByteBuffers.put(buffer, (Long) null);
+        int expectedSize = AvByteBuffers.sizeOf(new Date()) + AvByteBuffers.sizeOf(Boolean.TRUE) + AvByteBuffers.sizeOf((byte) 7)
+                + AvByteBuffers.sizeOf((short) -8) + AvByteBuffers.sizeOf(9) + AvByteBuffers.sizeOf(10L)
+                + AvByteBuffers.sizeOf(1.5f) + AvByteBuffers.sizeOf(2.5) + AvByteBuffers.sizeOf((Long) null);
+        assertEquals(expectedSize, buffer.position());
+        buffer.flip();
+        assertEquals(new Date(1234L), AvByteBuffers.getDate(buffer));
+        assertEquals(Boolean.TRUE, AvByteBuffers.getBoolean(buffer));
+        assertEquals(Byte.valueOf((byte) 7), AvByteBuffers.getByte(buffer));
+        assertEquals(Short.valueOf((short) -8), AvByteBuffers.getShort(buffer));
+        assertEquals(Integer.valueOf(9), AvByteBuffers.getInteger(buffer));
+        assertEquals(Long.valueOf(10L), AvByteBuffers.getLong(buffer));
+        assertEquals(Float.valueOf(1.5f), AvByteBuffers.getFloat(buffer));
+        assertEquals(Double.valueOf(2.5), AvByteBuffers.getDouble(buffer));
+        assertNull(AvByteBuffers.getLong(buffer));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testList() throws Exception {
+        List<String> models = Arrays.asList("a", null, "\u00e9");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        AvByteBuffers.putList(buffer, models, STRING_CODEC);
+        AvByteBuffers.putList(buffer, null, STRING_CODEC);
+        assertEquals(AvByteBuffers.sizeOfList(models, STRING_CODEC) + AvByteBuffers.sizeOfList(null, STRING_CODEC), buffer.position());
+        buffer.flip();
+        assertEquals(models, AvByteBuffers.getList(buffer, STRING_CODEC));
+        assertNull(AvByteBuffers.getList(buffer, STRING_CODEC));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testListUnmodifiable() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        AvByteBuffers.putList(buffer, Arrays.asList("a"), STRING_CODEC);
+        buffer.flip();
+        AvByteBuffers.getList(buffer, STRING_CODEC).add("b");
+    }
+}
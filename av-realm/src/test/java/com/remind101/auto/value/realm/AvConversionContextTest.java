@@ -0,0 +1,110 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AvConversionContextTest {
+    @Test
+    public void testToRealmObjectConvertsEachInstanceOnce() throws Exception {
+        AvConversionContext conversionContext = new AvConversionContext();
+        Child child = new Child(1);
+        Parent parent = new Parent(Arrays.asList(child, child, new Child(1)));
+
+        RealmParent realmParent = conversionContext.toRealmObject(parent);
+        assertSame(realmParent.children[0], realmParent.children[1]);
+        assertEquals(1, child.conversions);
+        assertSame(realmParent.children[0], conversionContext.toRealmObject(child));
+    }
+
+    @Test
+    public void testToModelConvertsEqualRealmObjectsOnce() throws Exception {
+        AvConversionContext conversionContext = new AvConversionContext();
+        RealmChild first = new RealmChild(1);
+        RealmChild second = new RealmChild(1);
+
+        Child model = conversionContext.toModel(first);
+        assertSame(model, conversionContext.toModel(second));
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        AvConversionContext conversionContext = new AvConversionContext();
+        assertNull(conversionContext.<Child, RealmChild>toRealmObject(null));
+        assertNull(conversionContext.<Child, RealmChild>toModel(null));
+    }
+
+    static final class Parent implements AvModel<RealmParent>, AvContextualModel<RealmParent> {
+        final List<Child> children;
+
+        Parent(List<Child> children) {
+            this.children = children;
+        }
+
+        @Override
+        public RealmParent toRealmObject() {
+            return toRealmObject(new AvConversionContext());
+        }
+
+        @Override
+        public RealmParent toRealmObject(AvConversionContext conversionContext) {
+            return new RealmParent(AvRealmHelper.toRealmModels(children, RealmChild.class, conversionContext));
+        }
+    }
+
+    static final class RealmParent implements AvRealmModel<Parent> {
+        final RealmChild[] children;
+
+        RealmParent(RealmChild[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public Parent toModel() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static final class Child implements AvModel<RealmChild> {
+        final int value;
+        int conversions;
+
+        Child(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public RealmChild toRealmObject() {
+            conversions++;
+            return new RealmChild(value);
+        }
+    }
+
+    static final class RealmChild implements AvRealmModel<Child> {
+        final int value;
+
+        RealmChild(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Child toModel() {
+            return new Child(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RealmChild && ((RealmChild) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AvInternPoolTest {
+    @Test
+    public void testIntern() throws Exception {
+        AvInternPool pool = new AvInternPool(2);
+        String first = new String("US");
+        String second = new String("US");
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertNull(pool.intern(null));
+
+        assertEquals(1, pool.hitCount());
+        assertEquals(1, pool.missCount());
+        pool.resetCounts();
+        assertEquals(0, pool.hitCount());
+        assertEquals(0, pool.missCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        AvInternPool pool = new AvInternPool(2);
+        String a = pool.intern(new String("a"));
+        String b = pool.intern(new String("b"));
+        pool.intern(new String("a"));
+        pool.intern(new String("c"));
+
+        assertEquals(2, pool.size());
+        assertSame(a, pool.intern(new String("a")));
+        assertNotSame(b, pool.intern(new String("b")));
+    }
+
+    @Test
+    public void testSetMaxSize() throws Exception {
+        AvInternPool pool = new AvInternPool(3);
+        pool.intern("a");
+        pool.intern("b");
+        String c = pool.intern(new String("c"));
+        pool.setMaxSize(1);
+
+        assertEquals(1, pool.size());
+        assertSame(c, pool.intern(new String("c")));
+    }
+}
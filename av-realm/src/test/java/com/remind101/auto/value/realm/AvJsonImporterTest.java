@@ -0,0 +1,195 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AvJsonImporterTest {
+    private static final AvJsonImporter.ObjectReader<Integer> INT_READER = new AvJsonImporter.ObjectReader<Integer>() {
+        @Override
+        public Integer read(AvJsonReader reader) throws IOException {
+            return reader.nextInt();
+        }
+    };
+
+    @Test
+    public void testReadArray() throws Exception {
+        final List<List<Integer>> batches = new ArrayList<>();
+        TokenReader reader = new TokenReader(TokenReader.BEGIN_ARRAY, 1, 2, 3, 4, 5, TokenReader.END_ARRAY);
+        int count = AvJsonImporter.readArray(reader, INT_READER, 2, new AvJsonImporter.BatchHandler<Integer>() {
+            @Override
+            public void handle(List<Integer> batch) {
+                batches.add(new ArrayList<>(batch));
+            }
+        });
+        assertEquals(5, count);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)), batches);
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testReadArrayEmpty() throws Exception {
+        final List<List<Integer>> batches = new ArrayList<>();
+        int count = AvJsonImporter.readArray(new TokenReader(TokenReader.BEGIN_ARRAY, TokenReader.END_ARRAY), INT_READER, 2, new AvJsonImporter.BatchHandler<Integer>() {
+            @Override
+            public void handle(List<Integer> batch) {
+                batches.add(batch);
+            }
+        });
+        assertEquals(0, count);
+        assertEquals(Collections.emptyList(), batches);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadArrayInvalidBatchSize() throws Exception {
+        AvJsonImporter.readArray(new TokenReader(), INT_READER, 0, null);
+    }
+
+    @Test
+    public void testNextArray() throws Exception {
+        Integer[] values = AvJsonImporter.nextArray(new TokenReader(TokenReader.BEGIN_ARRAY, 1, 2, TokenReader.END_ARRAY), INT_READER, Integer.class);
+        assertArrayEquals(new Integer[]{1, 2}, values);
+    }
+
+    @Test
+    public void testNextPrimitiveArrays() throws Exception {
+        Object[] tokens = new Object[42];
+        int[] expected = new int[40];
+        tokens[0] = TokenReader.BEGIN_ARRAY;
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i * 3;
+            tokens[i + 1] = i * 3;
+        }
+        tokens[41] = TokenReader.END_ARRAY;
+        assertArrayEquals(expected, AvJsonImporter.nextIntArray(new TokenReader(tokens)));
+        assertArrayEquals(new long[]{1L << 40, -1}, AvJsonImporter.nextLongArray(new TokenReader(TokenReader.BEGIN_ARRAY, 1L << 40, -1L, TokenReader.END_ARRAY)));
+        assertArrayEquals(new double[]{0.5, 2}, AvJsonImporter.nextDoubleArray(new TokenReader(TokenReader.BEGIN_ARRAY, 0.5, 2.0, TokenReader.END_ARRAY)), 0);
+        assertArrayEquals(new int[0], AvJsonImporter.nextIntArray(new TokenReader(TokenReader.BEGIN_ARRAY, TokenReader.END_ARRAY)));
+    }
+
+    @Test
+    public void testNextChar() throws Exception {
+        assertEquals('x', AvJsonImporter.nextChar(new TokenReader("x")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNextCharTooLong() throws Exception {
+        AvJsonImporter.nextChar(new TokenReader("xy"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNextCharEmpty() throws Exception {
+        AvJsonImporter.nextChar(new TokenReader(""));
+    }
+
+    /**
+     * Reads a list of tokens: the structural markers, names and values.
+     */
+    static final class TokenReader implements AvJsonReader {
+        static final Object BEGIN_ARRAY = new Object();
+        static final Object END_ARRAY = new Object();
+        static final Object BEGIN_OBJECT = new Object();
+        static final Object END_OBJECT = new Object();
+
+        private final List<Object> tokens;
+        private int position;
+
+        TokenReader(Object... tokens) {
+            this.tokens = Arrays.asList(tokens);
+        }
+
+        private Object next(Object expected) {
+            Object token = tokens.get(position++);
+            if (expected != null && token != expected) {
+                throw new IllegalStateException("Unexpected token at " + (position - 1));
+            }
+            return token;
+        }
+
+        @Override
+        public void beginObject() {
+            next(BEGIN_OBJECT);
+        }
+
+        @Override
+        public void endObject() {
+            next(END_OBJECT);
+        }
+
+        @Override
+        public void beginArray() {
+            next(BEGIN_ARRAY);
+        }
+
+        @Override
+        public void endArray() {
+            next(END_ARRAY);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < tokens.size() && tokens.get(position) != END_ARRAY && tokens.get(position) != END_OBJECT;
+        }
+
+        @Override
+        public String nextName() {
+            return (String) next(null);
+        }
+
+        @Override
+        public String nextString() {
+            return (String) next(null);
+        }
+
+        @Override
+        public boolean nextBoolean() {
+            return (Boolean) next(null);
+        }
+
+        @Override
+        public int nextInt() {
+            return ((Number) next(null)).intValue();
+        }
+
+        @Override
+        public long nextLong() {
+            return ((Number) next(null)).longValue();
+        }
+
+        @Override
+        public double nextDouble() {
+            return ((Number) next(null)).doubleValue();
+        }
+
+        @Override
+        public boolean peekNull() {
+            return tokens.get(position) == null;
+        }
+
+        @Override
+        public void nextNull() {
+            next(null);
+        }
+
+        @Override
+        public void skipValue() {
+            int depth = 0;
+            do {
+                Object token = next(null);
+                if (token == BEGIN_ARRAY || token == BEGIN_OBJECT) {
+                    depth++;
+                } else if (token == END_ARRAY || token == END_OBJECT) {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+    }
+}
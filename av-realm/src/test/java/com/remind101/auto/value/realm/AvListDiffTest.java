@@ -0,0 +1,148 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AvListDiffTest {
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals(Collections.emptyList(), AvListDiff.compute(null, new ArrayList<>()));
+        assertEquals(Arrays.asList(insert(0, 2)), AvListDiff.compute(null, Arrays.asList("a", "b")));
+        assertEquals(Arrays.asList(remove(0, 2)), AvListDiff.compute(Arrays.asList("a", "b"), null));
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        assertEquals(Collections.emptyList(), AvListDiff.compute(Arrays.asList(foo(1, "a"), foo(2, "b")), Arrays.asList(foo(1, "a"), foo(2, "b"))));
+    }
+
+    @Test
+    public void testInsertAndRemove() throws Exception {
+        List<Foo> previous = Arrays.asList(foo(1, "a"), foo(2, "b"), foo(3, "c"), foo(4, "d"));
+        List<Foo> current = Arrays.asList(foo(1, "a"), foo(5, "e"), foo(6, "f"), foo(3, "c"));
+        assertEquals(Arrays.asList(remove(1, 1), insert(1, 2), remove(4, 1)), AvListDiff.compute(previous, current));
+        assertEquals(current, apply(previous, current, AvListDiff.compute(previous, current)));
+    }
+
+    @Test
+    public void testChangeByPrimaryKey() throws Exception {
+        List<Foo> previous = Arrays.asList(foo(1, "a"), foo(2, "b"), foo(3, "c"), foo(4, "d"));
+        List<Foo> current = Arrays.asList(foo(1, "a"), foo(2, "x"), foo(3, "y"), foo(4, "d"));
+        assertEquals(Arrays.asList(change(1, 2)), AvListDiff.compute(previous, current));
+    }
+
+    @Test
+    public void testChangeWithoutPrimaryKey() throws Exception {
+        assertEquals(Arrays.asList(remove(1, 1), insert(1, 1)), AvListDiff.compute(Arrays.asList("a", "b", "c"), Arrays.asList("a", "x", "c")));
+    }
+
+    @Test
+    public void testLiveModels() throws Exception {
+        List<Object> previous = Arrays.<Object>asList(foo(1, "a"), foo(2, "b"));
+        List<Object> current = Arrays.<Object>asList(new LiveFoo(foo(1, "a")), new LiveFoo(foo(2, "x")));
+        assertEquals(Arrays.asList(change(1, 1)), AvListDiff.compute(previous, current));
+    }
+
+    @Test
+    public void testMove() throws Exception {
+        List<Foo> previous = Arrays.asList(foo(1, "a"), foo(2, "b"), foo(3, "c"));
+        List<Foo> current = Arrays.asList(foo(3, "c"), foo(1, "a"), foo(2, "x"));
+        assertEquals(Arrays.asList(insert(0, 1), change(2, 1), remove(3, 1)), AvListDiff.compute(previous, current));
+        assertEquals(current, apply(previous, current, AvListDiff.compute(previous, current)));
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        List<String> previous = Arrays.asList("a", "b", "a", "b");
+        List<String> current = Arrays.asList("b", "a", "a");
+        assertEquals(current, apply(previous, current, AvListDiff.compute(previous, current)));
+    }
+
+    /**
+     * Applies the ranges the way an adapter would, taking the inserted and changed elements from the current list.
+     */
+    private static <T> List<T> apply(List<T> previous, List<T> current, List<AvListDiff.Range> ranges) {
+        List<T> list = new ArrayList<>(previous);
+        for (AvListDiff.Range range : ranges) {
+            for (int i = 0; i < range.count; i++) {
+                switch (range.type) {
+                    case INSERT:
+                        list.add(range.position + i, current.get(range.position + i));
+                        break;
+                    case REMOVE:
+                        list.remove(range.position);
+                        break;
+                    case CHANGE:
+                        list.set(range.position + i, current.get(range.position + i));
+                        break;
+                }
+            }
+        }
+        return list;
+    }
+
+    private static AvListDiff.Range insert(int position, int count) {
+        return new AvListDiff.Range(AvListDiff.Range.Type.INSERT, position, count);
+    }
+
+    private static AvListDiff.Range remove(int position, int count) {
+        return new AvListDiff.Range(AvListDiff.Range.Type.REMOVE, position, count);
+    }
+
+    private static AvListDiff.Range change(int position, int count) {
+        return new AvListDiff.Range(AvListDiff.Range.Type.CHANGE, position, count);
+    }
+
+    private static Foo foo(int id, String name) {
+        return new Foo(id, name);
+    }
+
+    static final class LiveFoo implements AvLiveModel<Foo> {
+        private final Foo frozen;
+
+        LiveFoo(Foo frozen) {
+            this.frozen = frozen;
+        }
+
+        @Override
+        public Foo freeze() {
+            return frozen;
+        }
+    }
+
+    static final class Foo implements AvModel<AvRealmHelperTest.RealmFoo>, AvKeyedModel {
+        final int id;
+        final String name;
+
+        Foo(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public AvRealmHelperTest.RealmFoo toRealmObject() {
+            return new AvRealmHelperTest.RealmFoo(id);
+        }
+
+        @Override
+        public Object getAvPrimaryKey() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Foo && ((Foo) o).id == id && ((Foo) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id + name.hashCode();
+        }
+    }
+}
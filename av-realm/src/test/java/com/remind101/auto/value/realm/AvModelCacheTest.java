@@ -0,0 +1,83 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AvModelCacheTest {
+    @Test
+    public void testGetPut() throws Exception {
+        AvModelCache cache = new AvModelCache(2);
+        String model = "model";
+        cache.put(String.class, 1L, model);
+        assertSame(model, cache.get(String.class, 1L));
+        assertNull(cache.get(String.class, 2L));
+        assertNull(cache.get(Integer.class, 1L));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        AvModelCache cache = new AvModelCache(2);
+        cache.put(String.class, "a", "A");
+        cache.put(String.class, "b", "B");
+        cache.get(String.class, "a");
+        cache.put(String.class, "c", "C");
+
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get(String.class, "a"));
+        assertNull(cache.get(String.class, "b"));
+        assertEquals("C", cache.get(String.class, "c"));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        AvModelCache cache = new AvModelCache(2);
+        cache.put(String.class, "a", "A");
+        cache.invalidate(String.class, "a");
+        assertNull(cache.get(String.class, "a"));
+    }
+
+    @Test
+    public void testPutIfUnchanged() throws Exception {
+        AvModelCache cache = new AvModelCache(2);
+        long version = cache.getVersion();
+        assertTrue(cache.putIfUnchanged(String.class, "a", "A", version));
+        assertEquals("A", cache.get(String.class, "a"));
+
+        // A read started before a write is not cached over it
+        version = cache.getVersion();
+        cache.put(String.class, "a", "A2");
+        assertFalse(cache.putIfUnchanged(String.class, "a", "A1", version));
+        assertEquals("A2", cache.get(String.class, "a"));
+
+        version = cache.getVersion();
+        cache.invalidate(String.class, "a");
+        assertFalse(cache.putIfUnchanged(String.class, "a", "A1", version));
+        assertNull(cache.get(String.class, "a"));
+    }
+
+    @Test
+    public void testPutFreezesLiveModel() throws Exception {
+        AvModelCache cache = new AvModelCache(2);
+        cache.put(AvRealmHelperTest.Foo.class, 1, new AvRealmHelperTest.LiveFoo(new AvRealmHelperTest.RealmFoo(1)));
+        AvRealmHelperTest.Foo model = cache.get(AvRealmHelperTest.Foo.class, 1);
+        assertFalse(model instanceof AvLiveModel);
+        assertEquals(new AvRealmHelperTest.Foo(1), model);
+    }
+
+    @Test
+    public void testSetMaxSize() throws Exception {
+        AvModelCache cache = new AvModelCache(3);
+        cache.put(String.class, "a", "A");
+        cache.put(String.class, "b", "B");
+        cache.put(String.class, "c", "C");
+        cache.setMaxSize(1);
+
+        assertEquals(1, cache.size());
+        assertEquals("C", cache.get(String.class, "c"));
+    }
+}
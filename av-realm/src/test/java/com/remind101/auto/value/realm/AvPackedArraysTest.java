@@ -0,0 +1,54 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AvPackedArraysTest {
+    @Test
+    public void testLittleEndianLayout() throws Exception {
+        assertArrayEquals(new byte[]{1, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff}, AvPackedArrays.pack(new int[]{1, -1}));
+        assertArrayEquals(new byte[]{2, 1, 0, 0, 0, 0, 0, 0}, AvPackedArrays.pack(new long[]{0x102L}));
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, (byte) 0xf0, 0x3f}, AvPackedArrays.pack(new double[]{1.0}));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        int[] ints = {0, 1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        long[] longs = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+        double[] doubles = {0.0, -0.0, Double.NaN, Double.MAX_VALUE};
+        assertArrayEquals(ints, AvPackedArrays.unpackInts(AvPackedArrays.pack(ints)));
+        assertArrayEquals(longs, AvPackedArrays.unpackLongs(AvPackedArrays.pack(longs)));
+        assertArrayEquals(doubles, AvPackedArrays.unpackDoubles(AvPackedArrays.pack(doubles)), 0);
+        assertEquals(0, AvPackedArrays.unpackInts(AvPackedArrays.pack(new int[0])).length);
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        assertNull(AvPackedArrays.pack((int[]) null));
+        assertNull(AvPackedArrays.pack((long[]) null));
+        assertNull(AvPackedArrays.pack((double[]) null));
+        assertNull(AvPackedArrays.unpackInts(null));
+        assertNull(AvPackedArrays.unpackLongs(null));
+        assertNull(AvPackedArrays.unpackDoubles(null));
+    }
+
+    @Test
+    public void testEqual() throws Exception {
+        assertTrue(AvPackedArrays.equal(new int[]{1, 2}, AvPackedArrays.pack(new int[]{1, 2})));
+        assertFalse(AvPackedArrays.equal(new int[]{1, 2}, AvPackedArrays.pack(new int[]{1, 3})));
+        assertFalse(AvPackedArrays.equal(new int[]{1}, AvPackedArrays.pack(new int[]{1, 2})));
+        assertTrue(AvPackedArrays.equal(new long[]{3L}, AvPackedArrays.pack(new long[]{3L})));
+        assertFalse(AvPackedArrays.equal(new long[]{3L}, AvPackedArrays.pack(new long[]{4L})));
+        assertTrue(AvPackedArrays.equal(new double[]{Double.NaN}, AvPackedArrays.pack(new double[]{Double.NaN})));
+        assertFalse(AvPackedArrays.equal(new double[]{0.0}, AvPackedArrays.pack(new double[]{-0.0})));
+
+        assertTrue(AvPackedArrays.equal((int[]) null, null));
+        assertFalse(AvPackedArrays.equal((int[]) null, new byte[0]));
+        assertFalse(AvPackedArrays.equal(new int[0], null));
+    }
+}
@@ -0,0 +1,304 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AvRealmHelperTest {
+    private static final Object REALM = new Object();
+
+    @Test
+    public void testFromRealmModelsEmpty() throws Exception {
+        assertSame(Collections.emptyList(), AvRealmHelper.fromRealmModels(new ArrayList<RealmFoo>()));
+        assertSame(Collections.emptyList(), AvRealmHelper.<Foo, RealmFoo>fromRealmModels(null));
+    }
+
+    @Test
+    public void testFromRealmModels() throws Exception {
+        List<Foo> models = AvRealmHelper.fromRealmModels(Arrays.asList(new RealmFoo(1), new RealmFoo(2)));
+        assertEquals(Arrays.asList(new Foo(1), new Foo(2)), models);
+        assertTrue(models instanceof RandomAccess);
+    }
+
+    @Test
+    public void testFromRealmModelsNotRandomAccess() throws Exception {
+        List<Foo> models = AvRealmHelper.fromRealmModels(new LinkedList<>(Arrays.asList(new RealmFoo(1), new RealmFoo(2))));
+        assertEquals(Arrays.asList(new Foo(1), new Foo(2)), models);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFromRealmModelsIsImmutable() throws Exception {
+        AvRealmHelper.fromRealmModels(Arrays.asList(new RealmFoo(1))).add(new Foo(2));
+    }
+
+    @Test
+    public void testLazyFromRealmModels() throws Exception {
+        CountingRealmFoo first = new CountingRealmFoo(1);
+        CountingRealmFoo second = new CountingRealmFoo(2);
+        List<Foo> models = AvRealmHelper.lazyFromRealmModels(Arrays.<RealmFoo>asList(first, second));
+        assertEquals(2, models.size());
+        assertEquals(0, first.conversions + second.conversions);
+
+        Foo model = models.get(1);
+        assertEquals(new Foo(2), model);
+        assertSame(model, models.get(1));
+        assertEquals(0, first.conversions);
+        assertEquals(1, second.conversions);
+    }
+
+    @Test
+    public void testLazyFromRealmModelsKeepsRows() throws Exception {
+        List<RealmFoo> realmModels = new ArrayList<>(Arrays.asList(new RealmFoo(1), new RealmFoo(2)));
+        List<Foo> models = AvRealmHelper.lazyFromRealmModels(realmModels);
+        realmModels.remove(0);
+        realmModels.remove(0);
+        realmModels.add(new RealmFoo(3));
+
+        assertEquals(2, models.size());
+        assertEquals(Arrays.asList(new Foo(1), new Foo(2)), models);
+    }
+
+    @Test
+    public void testLazyFromRealmModelsEmpty() throws Exception {
+        assertSame(Collections.emptyList(), AvRealmHelper.lazyFromRealmModels(new ArrayList<RealmFoo>()));
+        assertSame(Collections.emptyList(), AvRealmHelper.<Foo, RealmFoo>lazyFromRealmModels(null));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testLazyFromRealmModelsIsImmutable() throws Exception {
+        AvRealmHelper.lazyFromRealmModels(Arrays.asList(new RealmFoo(1))).set(0, new Foo(2));
+    }
+
+    @Test
+    public void testToRealmModels() throws Exception {
+        RealmFoo[] realmModels = AvRealmHelper.toRealmModels(Arrays.asList(new Foo(1), new Foo(2)), RealmFoo.class);
+        assertArrayEquals(new RealmFoo[]{new RealmFoo(1), new RealmFoo(2)}, realmModels);
+    }
+
+    @Test
+    public void testToRealmModelsNotRandomAccess() throws Exception {
+        RealmFoo[] realmModels = AvRealmHelper.toRealmModels(new LinkedList<>(Arrays.asList(new Foo(1), new Foo(2))), RealmFoo.class);
+        assertArrayEquals(new RealmFoo[]{new RealmFoo(1), new RealmFoo(2)}, realmModels);
+    }
+
+    @Test
+    public void testToRealmModelsEmpty() throws Exception {
+        assertEquals(0, AvRealmHelper.toRealmModels(new ArrayList<Foo>(), RealmFoo.class).length);
+        assertEquals(0, AvRealmHelper.toRealmModels(null, RealmFoo.class).length);
+    }
+
+    @Test
+    public void testApplyTo() throws Exception {
+        RealmFoo target = new RealmFoo(1);
+        DiffingFoo model = new DiffingFoo(2);
+        assertTrue(AvRealmHelper.<Object, Foo, RealmFoo>applyTo(REALM, model, target));
+        assertEquals(2, target.value);
+        assertSame(REALM, model.realm);
+
+        assertTrue(AvRealmHelper.<Object, Foo, RealmFoo>applyTo(REALM, null, null));
+        assertFalse(AvRealmHelper.<Object, Foo, RealmFoo>applyTo(REALM, new DiffingFoo(2), null));
+        assertFalse(AvRealmHelper.<Object, Foo, RealmFoo>applyTo(REALM, null, target));
+        assertFalse(AvRealmHelper.applyTo(REALM, new Foo(3), target));
+        assertEquals(2, target.value);
+    }
+
+    @Test
+    public void testApplyToOtherKey() throws Exception {
+        KeyedRealmFoo target = new KeyedRealmFoo("c1", 1);
+        assertFalse(AvRealmHelper.<Object, Foo, RealmFoo>applyTo(REALM, new KeyedFoo("c2", 2), target));
+        assertEquals("c1", target.key);
+        assertEquals(1, target.value);
+
+        assertTrue(AvRealmHelper.<Object, Foo, RealmFoo>applyTo(REALM, new KeyedFoo("c1", 2), target));
+        assertEquals(2, target.value);
+    }
+
+    @Test
+    public void testApplyToAll() throws Exception {
+        List<RealmFoo> targets = Arrays.asList(new RealmFoo(1), new RealmFoo(2));
+        assertNull(AvRealmHelper.applyToAll(REALM, Arrays.<Foo>asList(new DiffingFoo(3), new DiffingFoo(4)), targets, RealmFoo.class));
+        assertEquals(Arrays.asList(new RealmFoo(3), new RealmFoo(4)), targets);
+
+        RealmFoo[] realmModels = AvRealmHelper.applyToAll(REALM, Arrays.<Foo>asList(new DiffingFoo(5)), targets, RealmFoo.class);
+        assertEquals(1, realmModels.length);
+        assertSame(targets.get(0), realmModels[0]);
+        assertArrayEquals(new RealmFoo[]{null}, AvRealmHelper.applyToAll(REALM, Arrays.asList(new Foo(6)), targets, RealmFoo.class));
+        assertNull(AvRealmHelper.<Object, Foo, RealmFoo>applyToAll(REALM, null, new ArrayList<RealmFoo>(), RealmFoo.class));
+    }
+
+    @Test
+    public void testApplyToAllMatchesKeys() throws Exception {
+        KeyedRealmFoo a = new KeyedRealmFoo("a", 1);
+        KeyedRealmFoo b = new KeyedRealmFoo("b", 2);
+        List<RealmFoo> targets = Arrays.<RealmFoo>asList(a, b);
+        assertNull(AvRealmHelper.applyToAll(REALM, Arrays.<Foo>asList(new KeyedFoo("a", 3), new KeyedFoo("b", 4)), targets, RealmFoo.class));
+        assertEquals(3, a.value);
+        assertEquals(4, b.value);
+
+        assertArrayEquals(new RealmFoo[]{b, a}, AvRealmHelper.applyToAll(REALM, Arrays.<Foo>asList(new KeyedFoo("b", 5), new KeyedFoo("a", 6)), targets, RealmFoo.class));
+        assertEquals(6, a.value);
+        assertEquals(5, b.value);
+
+        // The row of another key is never renamed, the new key is left for the caller to copy into the Realm
+        assertArrayEquals(new RealmFoo[]{a, null}, AvRealmHelper.applyToAll(REALM, Arrays.<Foo>asList(new KeyedFoo("a", 6), new KeyedFoo("c", 7)), targets, RealmFoo.class));
+        assertEquals("b", b.key);
+        assertEquals(5, b.value);
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        Foo model = new Foo(1);
+        assertSame(model, AvRealmHelper.freeze(model));
+        assertEquals(new Foo(2), AvRealmHelper.freeze(new LiveFoo(new RealmFoo(2))));
+        assertSame(null, AvRealmHelper.freeze((Foo) null));
+    }
+
+    @Test
+    public void testEqual() throws Exception {
+        assertTrue(AvRealmHelper.equal(null, null));
+        assertTrue(AvRealmHelper.equal("a", "a"));
+        assertFalse(AvRealmHelper.equal("a", null));
+        assertFalse(AvRealmHelper.equal(null, "a"));
+    }
+
+    @Test
+    public void testHashCode() throws Exception {
+        assertEquals(0, AvRealmHelper.hashCode(null));
+        assertEquals("a".hashCode(), AvRealmHelper.hashCode("a"));
+    }
+
+    static class Foo implements AvModel<RealmFoo> {
+        final int value;
+
+        Foo(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public RealmFoo toRealmObject() {
+            return new RealmFoo(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Foo && ((Foo) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+    }
+
+    static final class DiffingFoo extends Foo implements AvDiffingModel<Object, RealmFoo> {
+        Object realm;
+
+        DiffingFoo(int value) {
+            super(value);
+        }
+
+        @Override
+        public void applyTo(Object realm, RealmFoo target) {
+            this.realm = realm;
+            if (target.value != value) {
+                target.value = value;
+            }
+        }
+    }
+
+    static final class KeyedFoo extends Foo implements AvDiffingModel<Object, RealmFoo>, AvKeyedModel {
+        final String key;
+
+        KeyedFoo(String key, int value) {
+            super(value);
+            this.key = key;
+        }
+
+        @Override
+        public Object getAvPrimaryKey() {
+            return key;
+        }
+
+        @Override
+        public void applyTo(Object realm, RealmFoo target) {
+            target.value = value;
+        }
+    }
+
+    static final class KeyedRealmFoo extends RealmFoo implements AvKeyedModel {
+        String key;
+
+        KeyedRealmFoo(String key, int value) {
+            super(value);
+            this.key = key;
+        }
+
+        @Override
+        public Object getAvPrimaryKey() {
+            return key;
+        }
+    }
+
+    static final class LiveFoo extends Foo implements AvLiveModel<Foo> {
+        private final RealmFoo realmObject;
+
+        LiveFoo(RealmFoo realmObject) {
+            super(realmObject.value);
+            this.realmObject = realmObject;
+        }
+
+        @Override
+        public Foo freeze() {
+            return realmObject.toModel();
+        }
+    }
+
+    static final class CountingRealmFoo extends RealmFoo {
+        int conversions;
+
+        CountingRealmFoo(int value) {
+            super(value);
+        }
+
+        @Override
+        public Foo toModel() {
+            conversions++;
+            return super.toModel();
+        }
+    }
+
+    static class RealmFoo implements AvRealmModel<Foo> {
+        int value;
+
+        RealmFoo(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Foo toModel() {
+            return new Foo(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RealmFoo && ((RealmFoo) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AvSchemaRegistryTest {
+    private static final AvModelSchema FOO = new AvModelSchema(Integer.class, Long.class, "id", new String[]{"name"}, new String[]{"id", "name"}, new Class<?>[]{long.class, String.class});
+    private static final AvModelSchema BAR = new AvModelSchema(Float.class, Double.class, null, new String[0], new String[0], new Class<?>[0]);
+
+    @Test
+    public void testGetSchema() throws Exception {
+        AvSchemaRegistry registry = new AvSchemaRegistry(FOO, BAR);
+        assertEquals(Arrays.asList(FOO, BAR), registry.getSchemas());
+        assertSame(FOO, registry.getSchema(Integer.class));
+        assertSame(FOO, registry.getSchema(Long.class));
+        assertSame(BAR, registry.getSchema(Double.class));
+        assertNull(registry.getSchema(String.class));
+        assertArrayEquals(new Class<?>[]{Long.class, Double.class}, registry.getRealmClasses());
+    }
+
+    @Test
+    public void testSchema() throws Exception {
+        assertEquals("id", FOO.getPrimaryKey());
+        assertEquals(Collections.singletonList("name"), FOO.getIndexedFields());
+        assertEquals(Arrays.asList("id", "name"), Arrays.asList(FOO.getFieldTypes().keySet().toArray()));
+        assertSame(long.class, FOO.getFieldTypes().get("id"));
+        assertNull(BAR.getPrimaryKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSchemaFieldsDifferInLength() throws Exception {
+        new AvModelSchema(Integer.class, Long.class, null, new String[0], new String[]{"id"}, new Class<?>[0]);
+    }
+}
@@ -0,0 +1,142 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AvSnapshotStoreTest {
+    private static final AvBinaryCodec<AvListDiffTest.Foo> FOO_CODEC = new AvBinaryCodec<AvListDiffTest.Foo>() {
+        @Override
+        public void write(AvListDiffTest.Foo model, ByteBuffer buffer) {
+            buffer.putInt(model.id);
+            AvByteBuffers.put(buffer, model.name);
+        }
+
+        @Override
+        public AvListDiffTest.Foo read(ByteBuffer buffer) {
+            return new AvListDiffTest.Foo(buffer.getInt(), AvByteBuffers.getString(buffer));
+        }
+
+        @Override
+        public int sizeOf(AvListDiffTest.Foo model) {
+            return 4 + AvByteBuffers.sizeOf(model.name);
+        }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndOpen() throws Exception {
+        List<AvListDiffTest.Foo> models = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            models.add(new AvListDiffTest.Foo(i * 7 - 300, "name " + i));
+        }
+        Collections.shuffle(models);
+        File file = temporaryFolder.newFile();
+        AvSnapshotStore.write(file, models, FOO_CODEC);
+
+        AvSnapshotStore<AvListDiffTest.Foo> store = AvSnapshotStore.open(file, FOO_CODEC);
+        assertEquals(100, store.size());
+        assertEquals(new AvListDiffTest.Foo(-300, "name 0"), store.get(0));
+        assertEquals(new AvListDiffTest.Foo(393, "name 99"), store.get(99));
+        for (AvListDiffTest.Foo model : models) {
+            assertEquals(model, store.find(model.id));
+            assertEquals(model, store.find((long) model.id));
+        }
+        assertNull(store.find(-299));
+        assertNull(store.find(1000));
+        assertNull(store.find(null));
+        assertEquals(100, store.getAll().size());
+    }
+
+    @Test
+    public void testStringKeys() throws Exception {
+        List<StringKeyed> models = Arrays.asList(new StringKeyed("b"), new StringKeyed("\u00e9"), new StringKeyed("a"), new StringKeyed("ab"), new StringKeyed(""));
+        File file = temporaryFolder.newFile();
+        AvSnapshotStore.write(file, models, StringKeyed.CODEC);
+
+        AvSnapshotStore<StringKeyed> store = AvSnapshotStore.wrap(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), StringKeyed.CODEC);
+        assertEquals("", store.get(0).id);
+        assertEquals("a", store.get(1).id);
+        assertEquals("ab", store.get(2).id);
+        assertEquals("b", store.get(3).id);
+        assertEquals("\u00e9", store.get(4).id);
+        assertEquals("ab", store.find("ab").id);
+        assertNull(store.find("abc"));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        File file = temporaryFolder.newFile();
+        AvSnapshotStore.write(file, Collections.<AvListDiffTest.Foo>emptyList(), FOO_CODEC);
+        AvSnapshotStore<AvListDiffTest.Foo> store = AvSnapshotStore.open(file, FOO_CODEC);
+        assertEquals(0, store.size());
+        assertNull(store.find(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateKeys() throws Exception {
+        AvSnapshotStore.write(temporaryFolder.newFile(), Arrays.asList(new AvListDiffTest.Foo(1, "a"), new AvListDiffTest.Foo(1, "b")), FOO_CODEC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindWrongKeyType() throws Exception {
+        File file = temporaryFolder.newFile();
+        AvSnapshotStore.write(file, Arrays.asList(new AvListDiffTest.Foo(1, "a")), FOO_CODEC);
+        AvSnapshotStore.open(file, FOO_CODEC).find("1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotASnapshotStore() throws Exception {
+        AvSnapshotStore.wrap(ByteBuffer.allocate(64), FOO_CODEC);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() throws Exception {
+        File file = temporaryFolder.newFile();
+        AvSnapshotStore.write(file, Arrays.asList(new AvListDiffTest.Foo(1, "a")), FOO_CODEC);
+        AvSnapshotStore.open(file, FOO_CODEC).get(1);
+    }
+
+    static final class StringKeyed implements AvKeyedModel {
+        static final AvBinaryCodec<StringKeyed> CODEC = new AvBinaryCodec<StringKeyed>() {
+            @Override
+            public void write(StringKeyed model, ByteBuffer buffer) {
+                AvByteBuffers.put(buffer, model.id);
+            }
+
+            @Override
+            public StringKeyed read(ByteBuffer buffer) {
+                return new StringKeyed(AvByteBuffers.getString(buffer));
+            }
+
+            @Override
+            public int sizeOf(StringKeyed model) {
+                return AvByteBuffers.sizeOf(model.id);
+            }
+        };
+
+        final String id;
+
+        StringKeyed(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object getAvPrimaryKey() {
+            return id;
+        }
+    }
+}
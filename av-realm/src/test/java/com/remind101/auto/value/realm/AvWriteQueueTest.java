@@ -0,0 +1,256 @@
+package com.remind101.auto.value.realm;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AvWriteQueueTest {
+    private final RecordingWriter writer = new RecordingWriter();
+    private AvWriteQueue queue;
+
+    @After
+    public void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    @Test
+    public void testCoalescesByPrimaryKey() throws Exception {
+        queue = new AvWriteQueue(writer, 100, TimeUnit.HOURS.toMillis(1));
+        Counter first = new Counter("a", 1);
+        Counter second = new Counter("b", 1);
+        Counter last = new Counter("a", 2);
+        queue.save(first);
+        queue.save(second);
+        queue.save(last);
+        assertEquals(2, queue.getPendingCount());
+
+        assertTrue(queue.flushAndWait(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Arrays.<AvModel<?>>asList(last, second)), writer.getBatches());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void testWritesFullBatch() throws Exception {
+        queue = new AvWriteQueue(writer, 2, TimeUnit.HOURS.toMillis(1));
+        queue.save(new Counter("a", 1));
+        queue.save(new Counter("b", 1));
+        writer.awaitBatches(1);
+        assertEquals(2, writer.getBatches().get(0).size());
+    }
+
+    @Test
+    public void testWritesAfterWindow() throws Exception {
+        queue = new AvWriteQueue(writer, 100, 10);
+        queue.save(new Counter("a", 1));
+        writer.awaitBatches(1);
+        assertEquals(1, writer.getBatches().get(0).size());
+    }
+
+    @Test
+    public void testFailingWriterDoesNotStopQueue() throws Exception {
+        FailingWriter failingWriter = new FailingWriter(1);
+        queue = new AvWriteQueue(failingWriter, 100, TimeUnit.HOURS.toMillis(1));
+        queue.save(new Counter("a", 1));
+        assertFalse(queue.flushAndWait(5, TimeUnit.SECONDS));
+        queue.save(new Counter("a", 2));
+        assertTrue(queue.flushAndWait(5, TimeUnit.SECONDS));
+
+        assertEquals(1, writer.getBatches().size());
+        assertTrue(writer.getDropped().isEmpty());
+        assertTrue(failingWriter.uncaught.isEmpty());
+    }
+
+    @Test
+    public void testFreezesLiveModel() throws Exception {
+        queue = new AvWriteQueue(writer, 100, TimeUnit.HOURS.toMillis(1));
+        Counter frozen = new Counter("a", 1);
+        queue.save(new LiveCounter(new Counter("a", 0)));
+        queue.save(new LiveCounter(frozen));
+        assertEquals(1, queue.getPendingCount());
+
+        assertTrue(queue.flushAndWait(5, TimeUnit.SECONDS));
+        assertSame(frozen, writer.getBatches().get(0).get(0));
+    }
+
+    @Test
+    public void testRetriesFailedBatch() throws Exception {
+        queue = new AvWriteQueue(new FailingWriter(1), 100, TimeUnit.HOURS.toMillis(1));
+        Counter first = new Counter("a", 1);
+        Counter second = new Counter("b", 1);
+        queue.save(first);
+        queue.save(second);
+        assertFalse(queue.flushAndWait(5, TimeUnit.SECONDS));
+        assertEquals(2, queue.getPendingCount());
+
+        // The newer save of a failed row replaces it, rows saved since the failure come after the failed batch
+        Counter newer = new Counter("a", 2);
+        Counter third = new Counter("c", 1);
+        queue.save(third);
+        queue.save(newer);
+        assertTrue(queue.flushAndWait(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Arrays.<AvModel<?>>asList(newer, second, third)), writer.getBatches());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void testDropsRowsOutOfRetries() throws Exception {
+        FailingWriter failingWriter = new FailingWriter(AvWriteQueue.MAX_RETRIES + 1);
+        queue = new AvWriteQueue(failingWriter, 100, TimeUnit.HOURS.toMillis(1));
+        Counter bad = new Counter("a", 1);
+        queue.save(bad);
+        for (int i = 0; i < AvWriteQueue.MAX_RETRIES; i++) {
+            assertFalse(queue.flushAndWait(5, TimeUnit.SECONDS));
+            assertEquals(1, queue.getPendingCount());
+            assertTrue(writer.getDropped().isEmpty());
+        }
+
+        // A row saved meanwhile has retries of its own and is not dropped along with the failing one
+        Counter other = new Counter("b", 1);
+        queue.save(other);
+        assertFalse(queue.flushAndWait(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Collections.<AvModel<?>>singletonList(bad)), writer.getDropped());
+        assertEquals(1, queue.getPendingCount());
+
+        assertTrue(queue.flushAndWait(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(Collections.<AvModel<?>>singletonList(other)), writer.getBatches());
+        assertTrue(failingWriter.uncaught.isEmpty());
+    }
+
+    @Test
+    public void testRejectsSaveAfterShutdown() throws Exception {
+        queue = new AvWriteQueue(writer, 100, TimeUnit.HOURS.toMillis(1));
+        queue.shutdown();
+        try {
+            queue.save(new Counter("a", 1));
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsModelWithoutPrimaryKey() throws Exception {
+        queue = new AvWriteQueue(writer, 100, 10);
+        queue.save(new AvModel<AvRealmModel<?>>() {
+            @Override
+            public AvRealmModel<?> toRealmObject() {
+                return null;
+            }
+        });
+    }
+
+    static final class Counter implements AvModel<AvRealmModel<?>>, AvKeyedModel {
+        final String name;
+        final int count;
+
+        Counter(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        @Override
+        public AvRealmModel<?> toRealmObject() {
+            return null;
+        }
+
+        @Override
+        public Object getAvPrimaryKey() {
+            return name;
+        }
+    }
+
+    static final class LiveCounter implements AvModel<AvRealmModel<?>>, AvLiveModel<Counter> {
+        private final Counter frozen;
+
+        LiveCounter(Counter frozen) {
+            this.frozen = frozen;
+        }
+
+        @Override
+        public AvRealmModel<?> toRealmObject() {
+            return null;
+        }
+
+        @Override
+        public Counter freeze() {
+            return frozen;
+        }
+    }
+
+    /**
+     * Fails the first writes, then hands the batches to the recording writer
+     */
+    final class FailingWriter implements AvWriteQueue.Writer {
+        final List<Throwable> uncaught = new ArrayList<>();
+        private int failingWrites;
+
+        FailingWriter(int failingWrites) {
+            this.failingWrites = failingWrites;
+        }
+
+        @Override
+        public void write(List<AvModel<?>> models) {
+            Thread.currentThread().setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread thread, Throwable throwable) {
+                    uncaught.add(throwable);
+                }
+            });
+            if (failingWrites > 0) {
+                failingWrites--;
+                throw new IllegalStateException("write failed");
+            }
+            writer.write(models);
+        }
+
+        @Override
+        public void onWriteFailed(List<AvModel<?>> models, RuntimeException e) {
+            assertEquals("write failed", e.getMessage());
+            writer.onWriteFailed(models, e);
+        }
+    }
+
+    static final class RecordingWriter implements AvWriteQueue.Writer {
+        private final List<List<AvModel<?>>> batches = new ArrayList<>();
+        private final List<List<AvModel<?>>> dropped = new ArrayList<>();
+
+        @Override
+        public synchronized void write(List<AvModel<?>> models) {
+            batches.add(models);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onWriteFailed(List<AvModel<?>> models, RuntimeException e) {
+            dropped.add(models);
+        }
+
+        synchronized List<List<AvModel<?>>> getBatches() {
+            return new ArrayList<>(batches);
+        }
+
+        synchronized List<List<AvModel<?>>> getDropped() {
+            return new ArrayList<>(dropped);
+        }
+
+        synchronized void awaitBatches(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (batches.size() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            assertEquals(count, batches.size());
+        }
+    }
+}
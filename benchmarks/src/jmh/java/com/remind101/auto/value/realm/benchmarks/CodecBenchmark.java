@@ -0,0 +1,138 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.remind101.auto.value.realm.AvSnapshotStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the codecs generated for the models annotated with @AvBinary to Java serialization, and looks up models in
+ * a snapshot store written with them.
+ * Run with the gc profiler to get the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CodecBenchmark {
+    private static final int FEED_SIZE = 1000;
+
+    private Message message;
+    private Feed feed;
+    private ByteBuffer messageBuffer;
+    private ByteBuffer feedBuffer;
+    private byte[] serializedMessage;
+    private byte[] serializedFeed;
+    private File snapshotFile;
+    private AvSnapshotStore<Message> snapshotStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        message = createMessage(0);
+        List<Message> messages = new ArrayList<>(FEED_SIZE);
+        for (int i = 0; i < FEED_SIZE; i++) {
+            messages.add(createMessage(i));
+        }
+        feed = Feed.create("home", messages);
+
+        messageBuffer = ByteBuffer.allocate($CodecMessage.sizeOf(message));
+        $CodecMessage.write(message, messageBuffer);
+        feedBuffer = ByteBuffer.allocate($CodecFeed.sizeOf(feed));
+        $CodecFeed.write(feed, feedBuffer);
+        serializedMessage = serialize(message);
+        serializedFeed = serialize(feed);
+
+        snapshotFile = File.createTempFile("messages", ".snapshot");
+        AvSnapshotStore.write(snapshotFile, messages, $CodecMessage.CODEC);
+        snapshotStore = AvSnapshotStore.open(snapshotFile, $CodecMessage.CODEC);
+    }
+
+    @TearDown
+    public void tearDown() {
+        snapshotFile.delete();
+    }
+
+    private static Message createMessage(int i) {
+        return Message.create("message-" + i, 1472000000000L + i, i, i / 3.0, i % 2 == 0, "Body of message " + i);
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return in.readObject();
+    }
+
+    @Benchmark
+    public ByteBuffer flatCodecWrite() {
+        messageBuffer.clear();
+        $CodecMessage.write(message, messageBuffer);
+        return messageBuffer;
+    }
+
+    @Benchmark
+    public Message flatCodecRead() {
+        messageBuffer.rewind();
+        return $CodecMessage.read(messageBuffer);
+    }
+
+    @Benchmark
+    public byte[] flatSerializationWrite() throws IOException {
+        return serialize(message);
+    }
+
+    @Benchmark
+    public Object flatSerializationRead() throws IOException, ClassNotFoundException {
+        return deserialize(serializedMessage);
+    }
+
+    @Benchmark
+    public ByteBuffer listCodecWrite() {
+        feedBuffer.clear();
+        $CodecFeed.write(feed, feedBuffer);
+        return feedBuffer;
+    }
+
+    @Benchmark
+    public Feed listCodecRead() {
+        feedBuffer.rewind();
+        return $CodecFeed.read(feedBuffer);
+    }
+
+    @Benchmark
+    public byte[] listSerializationWrite() throws IOException {
+        return serialize(feed);
+    }
+
+    @Benchmark
+    public Object listSerializationRead() throws IOException, ClassNotFoundException {
+        return deserialize(serializedFeed);
+    }
+
+    @Benchmark
+    public Message snapshotFind() {
+        return snapshotStore.find("message-" + (FEED_SIZE / 2));
+    }
+}
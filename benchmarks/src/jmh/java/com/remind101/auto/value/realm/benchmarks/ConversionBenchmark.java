@@ -0,0 +1,173 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the code generated by auto-value-realm to convert models into Realm objects and back.
+ * Run with the gc profiler to get the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConversionBenchmark {
+    private static final int FEED_SIZE = 1000;
+    private static final int ATTACHMENT_SIZE = 16 * 1024;
+    private static final int TIMESERIES_SIZE = 4096;
+
+    private Message message;
+    private $RealmMessage realmMessage;
+    private Attachment attachment;
+    private $RealmAttachment realmAttachment;
+    private PersistedState persistedState;
+    private $RealmPersistedState realmPersistedState;
+    private EmbeddedState embeddedState;
+    private $RealmEmbeddedState realmEmbeddedState;
+    private Timeseries timeseries;
+    private $RealmTimeseries realmTimeseries;
+    private Feed feed;
+    private $RealmFeed realmFeed;
+
+    @Setup
+    public void setUp() {
+        message = createMessage(0);
+        realmMessage = message.toRealmObject();
+
+        attachment = Attachment.create("attachment.bin", new byte[ATTACHMENT_SIZE]);
+        realmAttachment = attachment.toRealmObject();
+
+        persistedState = PersistedState.create("MyCounter", 42, PersistedState.Info.create("HELLO"));
+        realmPersistedState = persistedState.toRealmObject();
+
+        embeddedState = EmbeddedState.create("MyCounter", 42, EmbeddedState.Info.create("HELLO"));
+        realmEmbeddedState = embeddedState.toRealmObject();
+
+        long[] timestamps = new long[TIMESERIES_SIZE];
+        double[] values = new double[TIMESERIES_SIZE];
+        for (int i = 0; i < TIMESERIES_SIZE; i++) {
+            timestamps[i] = 1472000000000L + i * 1000L;
+            values[i] = Math.sin(i);
+        }
+        timeseries = Timeseries.create("sin", timestamps, values);
+        realmTimeseries = timeseries.toRealmObject();
+
+        List<Message> messages = new ArrayList<>(FEED_SIZE);
+        for (int i = 0; i < FEED_SIZE; i++) {
+            messages.add(createMessage(i));
+        }
+        feed = Feed.create("home", messages);
+        realmFeed = feed.toRealmObject();
+    }
+
+    private static Message createMessage(int i) {
+        return Message.create("message-" + i, 1472000000000L + i, i, i / 3.0, i % 2 == 0, "Body of message " + i);
+    }
+
+    @Benchmark
+    public $RealmMessage flatToRealmObject() {
+        return message.toRealmObject();
+    }
+
+    @Benchmark
+    public Message flatToModel() {
+        return realmMessage.toModel();
+    }
+
+    @Benchmark
+    public $RealmAttachment blobToRealmObject() {
+        return attachment.toRealmObject();
+    }
+
+    @Benchmark
+    public Attachment blobToModel() {
+        return realmAttachment.toModel();
+    }
+
+    @Benchmark
+    public $RealmTimeseries packedToRealmObject() {
+        return timeseries.toRealmObject();
+    }
+
+    @Benchmark
+    public Timeseries packedToModel() {
+        return realmTimeseries.toModel();
+    }
+
+    @Benchmark
+    public $RealmPersistedState nestedToRealmObject() {
+        return persistedState.toRealmObject();
+    }
+
+    @Benchmark
+    public PersistedState nestedToModel() {
+        return realmPersistedState.toModel();
+    }
+
+    @Benchmark
+    public $RealmEmbeddedState embeddedToRealmObject() {
+        return embeddedState.toRealmObject();
+    }
+
+    @Benchmark
+    public EmbeddedState embeddedToModel() {
+        return realmEmbeddedState.toModel();
+    }
+
+    @Benchmark
+    public $RealmFeed listToRealmObject() {
+        return feed.toRealmObject();
+    }
+
+    @Benchmark
+    public Feed listToModel() {
+        return realmFeed.toModel();
+    }
+
+    /**
+     * Binds the id and body of every row of the feed, the way a list screen would, from copied models.
+     */
+    @Benchmark
+    public int listBindRows() {
+        int length = 0;
+        for ($RealmMessage realmMessage : realmFeed.getMessages()) {
+            Message row = realmMessage.toModel();
+            length += row.getId().length() + row.getBody().length();
+        }
+        return length;
+    }
+
+    /**
+     * Same as {@link #listBindRows()}, reading the two columns through live views.
+     */
+    @Benchmark
+    public int listBindRowsLive() {
+        int length = 0;
+        for ($RealmMessage realmMessage : realmFeed.getMessages()) {
+            Message row = realmMessage.toLiveModel();
+            length += row.getId().length() + row.getBody().length();
+        }
+        return length;
+    }
+
+    /**
+     * Same as {@link #listBindRows()}, reading the two columns into a projection.
+     */
+    @Benchmark
+    public int listBindRowsProjection() {
+        int length = 0;
+        for ($RealmMessage realmMessage : realmFeed.getMessages()) {
+            Message.Row row = realmMessage.toRow();
+            length += row.getId().length() + row.getBody().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,22 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvModel;
+
+/**
+ * A model holding a binary blob.
+ */
+@AutoValue
+public abstract class Attachment implements AvModel<$RealmAttachment> {
+    public abstract String getName();
+
+    @SuppressWarnings("mutable")
+    public abstract byte[] getData();
+
+    @Override
+    public abstract $RealmAttachment toRealmObject();
+
+    public static Attachment create(String name, byte[] data) {
+        return new AutoValue_Attachment(name, data);
+    }
+}
@@ -0,0 +1,39 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvEmbedded;
+import com.remind101.auto.value.realm.AvModel;
+import com.remind101.auto.value.realm.AvPrimaryKey;
+
+/**
+ * Same as {@link PersistedState}, with the inner model stored in the columns of its parent.
+ */
+@AutoValue
+public abstract class EmbeddedState implements AvModel<$RealmEmbeddedState> {
+    @AvPrimaryKey
+    public abstract String getName();
+
+    public abstract int getNumAppLaunches();
+
+    @AvEmbedded
+    public abstract Info getInfo();
+
+    @Override
+    public abstract $RealmEmbeddedState toRealmObject();
+
+    public static EmbeddedState create(String name, int numAppLaunches, Info info) {
+        return new AutoValue_EmbeddedState(name, numAppLaunches, info);
+    }
+
+    @AutoValue
+    public abstract static class Info implements AvModel<$RealmEmbeddedState_Info> {
+        public abstract String getTitle();
+
+        @Override
+        public abstract $RealmEmbeddedState_Info toRealmObject();
+
+        public static Info create(String title) {
+            return new AutoValue_EmbeddedState_Info(title);
+        }
+    }
+}
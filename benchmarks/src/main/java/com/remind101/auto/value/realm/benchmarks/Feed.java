@@ -0,0 +1,28 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvBinary;
+import com.remind101.auto.value.realm.AvModel;
+import com.remind101.auto.value.realm.AvPrimaryKey;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A model with a one-to-many relationship to other AvModels.
+ */
+@AvBinary
+@AutoValue
+public abstract class Feed implements AvModel<$RealmFeed>, Serializable {
+    @AvPrimaryKey
+    public abstract String getName();
+
+    public abstract List<Message> getMessages();
+
+    @Override
+    public abstract $RealmFeed toRealmObject();
+
+    public static Feed create(String name, List<Message> messages) {
+        return new AutoValue_Feed(name, messages);
+    }
+}
@@ -0,0 +1,51 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvBinary;
+import com.remind101.auto.value.realm.AvIndex;
+import com.remind101.auto.value.realm.AvLive;
+import com.remind101.auto.value.realm.AvModel;
+import com.remind101.auto.value.realm.AvPrimaryKey;
+import com.remind101.auto.value.realm.AvProjection;
+
+import java.io.Serializable;
+
+/**
+ * A flat model made of primitives and strings.
+ */
+@AvBinary
+@AvLive
+@AutoValue
+public abstract class Message implements AvModel<$RealmMessage>, Serializable {
+    @AvPrimaryKey
+    public abstract String getId();
+
+    @AvIndex
+    public abstract long getTimestamp();
+
+    public abstract int getLikes();
+
+    public abstract double getScore();
+
+    public abstract boolean isRead();
+
+    public abstract String getBody();
+
+    @Override
+    public abstract $RealmMessage toRealmObject();
+
+    /**
+     * The two columns a row of a list binds.
+     */
+    @AvProjection
+    @AutoValue
+    public abstract static class Row {
+        public abstract String getId();
+
+        public abstract String getBody();
+    }
+
+    public static Message create(String id, long timestamp, int likes, double score, boolean read, String body) {
+        return new AutoValue_Message(id, timestamp, likes, score, read, body);
+    }
+}
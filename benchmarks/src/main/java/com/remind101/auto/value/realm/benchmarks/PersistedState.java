@@ -0,0 +1,37 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvModel;
+import com.remind101.auto.value.realm.AvPrimaryKey;
+
+/**
+ * A model linking to another AvModel declared as an inner class, like the one of the example app.
+ */
+@AutoValue
+public abstract class PersistedState implements AvModel<$RealmPersistedState> {
+    @AvPrimaryKey
+    public abstract String getName();
+
+    public abstract int getNumAppLaunches();
+
+    public abstract Info getInfo();
+
+    @Override
+    public abstract $RealmPersistedState toRealmObject();
+
+    public static PersistedState create(String name, int numAppLaunches, Info info) {
+        return new AutoValue_PersistedState(name, numAppLaunches, info);
+    }
+
+    @AutoValue
+    public abstract static class Info implements AvModel<$RealmPersistedState_Info> {
+        public abstract String getTitle();
+
+        @Override
+        public abstract $RealmPersistedState_Info toRealmObject();
+
+        public static Info create(String title) {
+            return new AutoValue_PersistedState_Info(title);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.remind101.auto.value.realm.benchmarks;
+
+import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvModel;
+import com.remind101.auto.value.realm.AvPrimaryKey;
+
+/**
+ * A model holding primitive arrays, packed into byte[] fields.
+ */
+@AutoValue
+public abstract class Timeseries implements AvModel<$RealmTimeseries> {
+    @AvPrimaryKey
+    public abstract String getName();
+
+    @SuppressWarnings("mutable")
+    public abstract long[] getTimestamps();
+
+    @SuppressWarnings("mutable")
+    public abstract double[] getValues();
+
+    @Override
+    public abstract $RealmTimeseries toRealmObject();
+
+    public static Timeseries create(String name, long[] timestamps, double[] values) {
+        return new AutoValue_Timeseries(name, timestamps, values);
+    }
+}
@@ -0,0 +1,16 @@
+package io.realm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Stands for an unmanaged RealmList, which is backed by an ArrayList presized by the varargs constructor.
+ */
+public class RealmList<E> extends ArrayList<E> {
+    public RealmList() {
+    }
+
+    public RealmList(E... objects) {
+        super(Arrays.asList(objects));
+    }
+}
@@ -0,0 +1,4 @@
+package io.realm.annotations;
+
+public @interface Index {
+}
@@ -21,6 +21,7 @@ public class HomeActivity extends Activity {
         } else {
             state = state.withNumAppLaunches(state.getNumAppLaunches() + 1);
         }
+        // Written in the background: the state saved here is shown directly rather than read back
         RealmDatastore.getInstance().savePersistedState(state);
         ((TextView) findViewById(R.id.counter)).setText(String.valueOf(state.getNumAppLaunches()));
         setTitle(state.getInfo().getTitle());
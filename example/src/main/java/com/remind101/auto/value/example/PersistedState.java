@@ -1,9 +1,14 @@
 package com.remind101.auto.value.example;
 
 import com.google.auto.value.AutoValue;
+import com.remind101.auto.value.realm.AvCached;
+import com.remind101.auto.value.realm.AvEmbedded;
 import com.remind101.auto.value.realm.AvModel;
 import com.remind101.auto.value.realm.AvPrimaryKey;
 
+import io.realm.Realm;
+
+@AvCached
 @AutoValue
 public abstract class PersistedState implements AvModel<$RealmPersistedState> {
     @AvPrimaryKey
@@ -11,11 +16,14 @@ public abstract class PersistedState implements AvModel<$RealmPersistedState> {
 
     public abstract int getNumAppLaunches();
 
+    @AvEmbedded
     public abstract Info getInfo();
 
     @Override
     public abstract $RealmPersistedState toRealmObject();
 
+    public abstract void applyTo(Realm realm, $RealmPersistedState target);
+
     public static Builder builder() {
         return new AutoValue_PersistedState.Builder();
     }
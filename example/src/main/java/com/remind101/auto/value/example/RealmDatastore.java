@@ -1,14 +1,28 @@
 package com.remind101.auto.value.example;
 
 import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.remind101.auto.value.realm.AvModel;
+import com.remind101.auto.value.realm.AvModelCache;
+import com.remind101.auto.value.realm.AvWriteQueue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.realm.Realm;
 import io.realm.RealmConfiguration;
-import io.realm.RealmResults;
 
 public class RealmDatastore {
+    private static final String TAG = "RealmDatastore";
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long WRITE_WINDOW_MILLIS = 500;
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
     private static RealmDatastore instance;
 
+    private final AvWriteQueue writeQueue;
+
     public static synchronized RealmDatastore getInstance() {
         if (instance == null) {
             instance = new RealmDatastore();
@@ -19,22 +33,78 @@ public class RealmDatastore {
     private RealmDatastore() {
         RealmConfiguration realmConfig = new RealmConfiguration.Builder(MyApp.getInstance()).deleteRealmIfMigrationNeeded().build();
         Realm.setDefaultConfiguration(realmConfig);
+        writeQueue = new AvWriteQueue(new AvWriteQueue.Writer() {
+            @Override
+            public void write(List<AvModel<?>> models) {
+                writeBatch(models);
+            }
+
+            @Override
+            public void onWriteFailed(List<AvModel<?>> models, RuntimeException e) {
+                Log.e(TAG, "Dropped " + models.size() + " states that could not be written", e);
+            }
+        }, MAX_BATCH_SIZE, WRITE_WINDOW_MILLIS);
     }
 
     @Nullable
     public PersistedState getSavedState(String name) {
         Realm realm = Realm.getDefaultInstance();
-        RealmResults<$RealmPersistedState> res = realm.where($RealmPersistedState.class).equalTo("name", name).findAll();
-        if (res.isEmpty()) {
-            return null;
-        }
-        return res.first().toModel();
+        return $RealmPersistedState.findModelByName(realm, name);
     }
 
+    /**
+     * Saves the state in the background. Saves of the same state made in a burst are coalesced into a single write.
+     * The write is eventually consistent: getSavedState() returns the previous state until the write is made, which is
+     * up to the write window later, so hold on to the saved state rather than reading it back right away, or call
+     * {@link #flush()} first.
+     */
     public void savePersistedState(PersistedState state) {
+        writeQueue.save(state);
+    }
+
+    /**
+     * Writes the pending states and waits for the write, so that getSavedState() returns them.
+     *
+     * @return false if the write failed or did not complete in time
+     */
+    public boolean flush() throws InterruptedException {
+        return writeQueue.flushAndWait(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a batch of the write queue in a single transaction, on the thread of the queue. A failed write cancels
+     * the transaction, so the Realm of the thread is not left in it, and the queue retries the batch.
+     */
+    private static void writeBatch(List<AvModel<?>> models) {
         Realm realm = Realm.getDefaultInstance();
-        realm.beginTransaction();
-        realm.copyToRealmOrUpdate(state.toRealmObject());
-        realm.commitTransaction();
+        try {
+            realm.beginTransaction();
+            try {
+                for (AvModel<?> model : models) {
+                    writePersistedState(realm, (PersistedState) model);
+                }
+                realm.commitTransaction();
+            } catch (RuntimeException e) {
+                realm.cancelTransaction();
+                throw e;
+            }
+        } finally {
+            realm.close();
+        }
+        // Only cached once committed, so that a read made in the meantime cannot cache the previous values over them
+        for (AvModel<?> model : models) {
+            PersistedState state = (PersistedState) model;
+            AvModelCache.getInstance().put(PersistedState.class, state.getName(), state);
+        }
+    }
+
+    private static void writePersistedState(Realm realm, PersistedState state) {
+        $RealmPersistedState existing = $RealmPersistedState.findByName(realm, state.getName());
+        if (existing != null) {
+            // Only writes the fields that changed
+            state.applyTo(realm, existing);
+        } else {
+            realm.copyToRealmOrUpdate(state.toRealmObject());
+        }
     }
 }